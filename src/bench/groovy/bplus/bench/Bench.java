@@ -0,0 +1,48 @@
+package bplus.bench;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+final class Bench {
+
+    static final int WARMUPS = 2;
+    static final int RUNS = 5;
+
+    private Bench() {}
+
+    //best nanoseconds per op over the timed runs, setup is rebuilt before every run and not timed
+    static <T> double time(final int ops, final Supplier<T> setup, final Op<T> op) {
+        double best = Double.MAX_VALUE;
+        for(int i = 0; i < WARMUPS + RUNS; ++i) {
+            final T state = setup.get();
+            final long start = System.nanoTime();
+            op.run(state);
+            final long elapsed = System.nanoTime() - start;
+            if(i >= WARMUPS) {
+                best = Math.min(best, (double) elapsed / ops);
+            }
+        }
+
+        return best;
+    }
+
+    static Integer[] shuffled(final int count) {
+        final List<Integer> list = new ArrayList<>(count);
+        for(int i = 0; i < count; ++i) {
+            list.add(i);
+        }
+
+        Collections.shuffle(list);
+        return list.toArray(new Integer[count]);
+    }
+
+    static int count(final String[] args, final int onEmpty) {
+        return args.length > 0 ? Integer.parseInt(args[0]) : onEmpty;
+    }
+
+    interface Op<T> {
+        void run(T state);
+    }
+}
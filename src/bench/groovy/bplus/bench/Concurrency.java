@@ -0,0 +1,175 @@
+package bplus.bench;
+
+import bplus.*;
+import bplus.impl.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class Concurrency {
+
+    private static final int OPS = 4_000_000;
+
+    //the tree behind one read write lock, what callers had to do before
+    private static final class Locked {
+        private final BplusTree<Integer,Integer> tree = new BplusTree<>(new ObjectArray<>(Integer.class, Integer.class, 64));
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        Integer get(final Integer k) {
+            lock.readLock().lock();
+            try {
+                return tree.get(k);
+            }
+            finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void put(final Integer k, final Integer v) {
+            lock.writeLock().lock();
+            try {
+                tree.put(k, v);
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(final Integer k) {
+            lock.writeLock().lock();
+            try {
+                tree.remove(k);
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private interface Ops {
+        void get(Integer k);
+        void put(Integer k, Integer v);
+        void remove(Integer k);
+    }
+
+    private static Ops ops(final Map<Integer,Integer> map) {
+        return new Ops() {
+            public void get(final Integer k) { map.get(k); }
+            public void put(final Integer k, final Integer v) { map.put(k, v); }
+            public void remove(final Integer k) { map.remove(k); }
+        };
+    }
+
+    private static Ops ops(final Locked locked) {
+        return new Ops() {
+            public void get(final Integer k) { locked.get(k); }
+            public void put(final Integer k, final Integer v) { locked.put(k, v); }
+            public void remove(final Integer k) { locked.remove(k); }
+        };
+    }
+
+    //million ops per second, the threads share the ops and writes percent of the ops are split between puts and removes
+    private static double run(final Ops ops, final int threads, final int keys, final int writes) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] workers = new Thread[threads];
+        for(int t = 0; t < threads; ++t) {
+            final SplittableRandom random = new SplittableRandom(t);
+            workers[t] = new Thread(() -> {
+                    try {
+                        start.await();
+                    }
+                    catch(InterruptedException e) {
+                        return;
+                    }
+
+                    for(int i = 0; i < OPS / threads; ++i) {
+                        final Integer k = random.nextInt(keys);
+                        final int op = random.nextInt(100);
+                        if(op >= writes) {
+                            ops.get(k);
+                        }
+                        else if((op & 1) == 0) {
+                            ops.put(k, k);
+                        }
+                        else {
+                            ops.remove(k);
+                        }
+                    }
+                });
+            workers[t].start();
+        }
+
+        final long begin = System.nanoTime();
+        start.countDown();
+        for(Thread worker : workers) {
+            worker.join();
+        }
+
+        return (double) (OPS / threads) * threads * 1000 / (System.nanoTime() - begin);
+    }
+
+    private static ConcurrentBplusTree<Integer,Integer> concurrent(final int keys, final boolean blink) {
+        final ObjectArray<Integer,Integer> store = new ObjectArray<>(Integer.class, Integer.class, 64);
+        store.setConcurrent(true);
+        final ConcurrentBplusTree<Integer,Integer> ret = new ConcurrentBplusTree<>(store);
+        ret.setBlinkMode(blink);
+        for(int i = 0; i < keys; i += 2) {
+            ret.put(i, i);
+        }
+
+        return ret;
+    }
+
+    //one shard per core, bounds from an even sample of the keys
+    private static ShardedBplusTree<Integer,Integer> sharded(final int keys, final int shards) {
+        final List<Integer> sample = new ArrayList<>();
+        for(int i = 0; i < keys; i += Math.max(keys / 1024, 1)) {
+            sample.add(i);
+        }
+
+        final ShardedBplusTree<Integer,Integer> ret = new ShardedBplusTree<>(() -> new ObjectArray<>(Integer.class, Integer.class, 64), shards, sample);
+        for(int i = 0; i < keys; i += 2) {
+            ret.put(i, i);
+        }
+
+        return ret;
+    }
+
+    private static ConcurrentSkipListMap<Integer,Integer> skipList(final int keys) {
+        final ConcurrentSkipListMap<Integer,Integer> ret = new ConcurrentSkipListMap<>();
+        for(int i = 0; i < keys; i += 2) {
+            ret.put(i, i);
+        }
+
+        return ret;
+    }
+
+    private static Locked locked(final int keys) {
+        final Locked ret = new Locked();
+        for(int i = 0; i < keys; i += 2) {
+            ret.put(i, i);
+        }
+
+        return ret;
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        final int keys = Bench.count(args, 1_000_000);
+        final int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println(String.format("%-12s %7s %7s %10s", "map", "threads", "writes%", "Mops/s"));
+        for(int writes : new int[] { 10, 50 }) {
+            for(int threads = 1; threads <= Math.max(16, cores); threads <<= 1) {
+                System.out.println(String.format("%-12s %7d %7d %10.2f", "concurrent", threads, writes, run(ops(concurrent(keys, false)), threads, keys, writes)));
+                System.out.println(String.format("%-12s %7d %7d %10.2f", "blink", threads, writes, run(ops(concurrent(keys, true)), threads, keys, writes)));
+                System.out.println(String.format("%-12s %7d %7d %10.2f", "sharded", threads, writes, run(ops(sharded(keys, cores)), threads, keys, writes)));
+                System.out.println(String.format("%-12s %7d %7d %10.2f", "skiplist", threads, writes, run(ops(skipList(keys)), threads, keys, writes)));
+                System.out.println(String.format("%-12s %7d %7d %10.2f", "rwlock", threads, writes, run(ops(locked(keys)), threads, keys, writes)));
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package bplus.bench;
+
+import bplus.*;
+import bplus.impl.*;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+public class Layouts {
+
+    private static void row(final String layout, final int order, final String op, final double nsPerOp) {
+        System.out.println(String.format("%-20s %6d %-8s %10.1f", layout, order, op, nsPerOp));
+    }
+
+    private static BplusTree<Integer,Integer> fill(final NodeStore<Integer,Integer> store, final Integer[] keys) {
+        final BplusTree<Integer,Integer> tree = new BplusTree<>(store);
+        for(Integer k : keys) {
+            tree.put(k, k);
+        }
+
+        return tree;
+    }
+
+    private static void run(final String layout, final IntFunction<NodeStore<Integer,Integer>> factory,
+                            final int order, final Integer[] keys) {
+        final int n = keys.length;
+        row(layout, order, "put", Bench.time(n, () -> new BplusTree<>(factory.apply(order)), (tree) -> {
+                    for(Integer k : keys) {
+                        tree.put(k, k);
+                    }
+                }));
+
+        final BplusTree<Integer,Integer> full = fill(factory.apply(order), keys);
+        row(layout, order, "get", Bench.time(n, () -> full, (tree) -> {
+                    long sum = 0;
+                    for(Integer k : keys) {
+                        sum += tree.get(k);
+                    }
+
+                    if(sum == 42) {
+                        System.out.println();
+                    }
+                }));
+
+        row(layout, order, "scan", Bench.time(n, () -> full, (tree) -> {
+                    long sum = 0;
+                    for(Map.Entry<Integer,Integer> e : tree.entrySet()) {
+                        sum += e.getValue();
+                    }
+
+                    if(sum == 42) {
+                        System.out.println();
+                    }
+                }));
+
+        row(layout, order, "remove", Bench.time(n, () -> fill(factory.apply(order), keys), (tree) -> {
+                    for(Integer k : keys) {
+                        tree.remove(k);
+                    }
+                }));
+    }
+
+    public static void main(final String[] args) {
+        final Integer[] keys = Bench.shuffled(Bench.count(args, 1_000_000));
+        System.out.println(String.format("%-20s %6s %-8s %10s", "layout", "order", "op", "ns/op"));
+        for(int order : new int[] { 8, 16, 32, 64, 128 }) {
+            run("interleaved", (o) -> new ObjectArray<>(Integer.class, Integer.class, o), order, keys);
+            run("columns", (o) -> new ObjectColumnArray<>(Integer.class, Integer.class, o), order, keys);
+            run("int columns", IntArray::new, order, keys);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package bplus.bench;
+
+import bplus.*;
+import bplus.impl.*;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Loading {
+
+    private static void row(final String method, final int order, final double nsPerOp) {
+        System.out.println(String.format("%-20s %6d %10.1f", method, order, nsPerOp));
+    }
+
+    private static BplusTree<Integer,Integer> appending(final int order) {
+        final BplusTree<Integer,Integer> tree = new BplusTree<>(new ObjectArray<>(Integer.class, Integer.class, order));
+        tree.setAppendMode(true);
+        return tree;
+    }
+
+    private static List<Map<Integer,Integer>> batches(final Integer[] keys) {
+        final List<Map<Integer,Integer>> ret = new ArrayList<>();
+        for(int i = 0; i < keys.length; i += 10_000) {
+            final Map<Integer,Integer> batch = new HashMap<>();
+            for(int j = i; j < Math.min(keys.length, i + 10_000); ++j) {
+                batch.put(keys[j], keys[j]);
+            }
+
+            ret.add(batch);
+        }
+
+        return ret;
+    }
+
+    private static void batches(final String name, final int order, final List<Map<Integer,Integer>> batches) {
+        final int n = batches.stream().mapToInt(Map::size).sum();
+        row(name + " put", order, Bench.time(n, () -> new BplusTree<>(new ObjectArray<>(Integer.class, Integer.class, order)), (tree) -> {
+                    for(Map<Integer,Integer> batch : batches) {
+                        for(Map.Entry<Integer,Integer> e : batch.entrySet()) {
+                            tree.put(e.getKey(), e.getValue());
+                        }
+                    }
+                }));
+
+        row(name + " putAll", order, Bench.time(n, () -> new BplusTree<>(new ObjectArray<>(Integer.class, Integer.class, order)), (tree) -> {
+                    for(Map<Integer,Integer> batch : batches) {
+                        tree.putAll(batch);
+                    }
+                }));
+    }
+
+    public static void main(final String[] args) {
+        final int n = Bench.count(args, 1_000_000);
+        final List<Map.Entry<Integer,Integer>> sorted = new ArrayList<>(n);
+        for(int i = 0; i < n; ++i) {
+            sorted.add(new SimpleImmutableEntry<>(i, i));
+        }
+
+        System.out.println(String.format("%-20s %6s %10s", "method", "order", "ns/op"));
+        for(int order : new int[] { 16, 64, 128 }) {
+            row("sorted put", order, Bench.time(n, () -> new BplusTree<>(new ObjectArray<>(Integer.class, Integer.class, order)), (tree) -> {
+                        for(Map.Entry<Integer,Integer> e : sorted) {
+                            tree.put(e.getKey(), e.getValue());
+                        }
+                    }));
+
+            row("append put", order, Bench.time(n, () -> appending(order), (tree) -> {
+                        for(Map.Entry<Integer,Integer> e : sorted) {
+                            tree.put(e.getKey(), e.getValue());
+                        }
+                    }));
+
+            row("bulk load", order, Bench.time(n, () -> new BplusTree<>(new ObjectArray<>(Integer.class, Integer.class, order)), (tree) -> {
+                        tree.bulkLoad(sorted.iterator(), 1d);
+                    }));
+        }
+
+        //10k batches into a growing tree, random keys or keys clustered by batch
+        final Integer[] keys = Bench.shuffled(n);
+        final Integer[] clustered = new Integer[n];
+        for(int i = 0; i < n; ++i) {
+            clustered[i] = (i / 10_000) * 10_000 + (keys[i] % 10_000);
+        }
+
+        for(int order : new int[] { 16, 64, 128 }) {
+            batches("random", order, batches(keys));
+            batches("clustered", order, batches(clustered));
+        }
+    }
+}
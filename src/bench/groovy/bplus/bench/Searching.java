@@ -0,0 +1,134 @@
+package bplus.bench;
+
+import bplus.*;
+import bplus.impl.*;
+
+public class Searching {
+
+    private static final SearchStrategy[] STRATEGIES = {
+        SearchStrategy.BINARY, SearchStrategy.LINEAR, SearchStrategy.BRANCHLESS, SearchStrategy.INTERPOLATION };
+
+    private static void row(final String keys, final int order, final String strategy, final double nsPerOp, final String mark) {
+        System.out.println(String.format("%-10s %6d %-14s %10.1f %s", keys, order, strategy, nsPerOp, mark));
+    }
+
+    private static double objects(final int order, final SearchStrategy strategy, final Integer[] keys) {
+        final ObjectArray<Integer,Integer> store = new ObjectArray<>(Integer.class, Integer.class, order);
+        store.setSearchStrategy(strategy);
+        final BplusTree<Integer,Integer> full = new BplusTree<>(store);
+        for(Integer k : keys) {
+            full.put(k, k);
+        }
+
+        return Bench.time(keys.length, () -> full, (tree) -> {
+                long sum = 0;
+                for(Integer k : keys) {
+                    sum += tree.get(k).intValue();
+                }
+
+                if(sum == 42) {
+                    System.out.println();
+                }
+            });
+    }
+
+    private static double ints(final int order, final SearchStrategy strategy, final int[] keys) {
+        final IntArray store = new IntArray(order);
+        store.setSearchStrategy(strategy);
+        final BplusTree<Integer,Integer> full = new BplusTree<>(store);
+        for(int k : keys) {
+            full.putInt(k, k);
+        }
+
+        return Bench.time(keys.length, () -> full, (tree) -> {
+                long sum = 0;
+                for(int k : keys) {
+                    sum += tree.getInt(k);
+                }
+
+                if(sum == 42) {
+                    System.out.println();
+                }
+            });
+    }
+
+    private static double longs(final int order, final SearchStrategy strategy, final long[] keys) {
+        final LongArray store = new LongArray(order);
+        store.setSearchStrategy(strategy);
+        final BplusTree<Long,Long> full = new BplusTree<>(store);
+        for(long k : keys) {
+            full.putLong(k, k);
+        }
+
+        return Bench.time(keys.length, () -> full, (tree) -> {
+                long sum = 0;
+                for(long k : keys) {
+                    sum += tree.getLong(k);
+                }
+
+                if(sum == 42) {
+                    System.out.println();
+                }
+            });
+    }
+
+    private static double doubles(final int order, final SearchStrategy strategy, final double[] keys) {
+        final DoubleArray store = new DoubleArray(order);
+        store.setSearchStrategy(strategy);
+        final BplusTree<Double,Double> full = new BplusTree<>(store);
+        for(double k : keys) {
+            full.putDouble(k, k);
+        }
+
+        return Bench.time(keys.length, () -> full, (tree) -> {
+                double sum = 0;
+                for(double k : keys) {
+                    sum += tree.getDouble(k);
+                }
+
+                if(sum == 42) {
+                    System.out.println();
+                }
+            });
+    }
+
+    //prints every strategy and marks the fastest for the order and key type
+    private static void pick(final String keys, final int order, final Timing timing) {
+        final double[] times = new double[STRATEGIES.length];
+        int best = 0;
+        for(int i = 0; i < STRATEGIES.length; ++i) {
+            times[i] = timing.time(order, STRATEGIES[i]);
+            if(times[i] < times[best]) {
+                best = i;
+            }
+        }
+
+        for(int i = 0; i < STRATEGIES.length; ++i) {
+            row(keys, order, STRATEGIES[i].name(), times[i], i == best ? "*" : "");
+        }
+    }
+
+    public static void main(final String[] args) {
+        final Integer[] boxed = Bench.shuffled(Bench.count(args, 1_000_000));
+        final int[] ints = new int[boxed.length];
+        final long[] longs = new long[boxed.length];
+        final double[] doubles = new double[boxed.length];
+        for(int i = 0; i < boxed.length; ++i) {
+            ints[i] = boxed[i];
+            longs[i] = boxed[i] * 7L;
+            doubles[i] = boxed[i] / 3d;
+        }
+
+        System.out.println(String.format("%-10s %6s %-14s %10s", "keys", "order", "strategy", "ns/get"));
+        for(int order : new int[] { 8, 16, 32, 64, 128 }) {
+            pick("Integer", order, (o, s) -> objects(o, s, boxed));
+            pick("int", order, (o, s) -> ints(o, s, ints));
+            pick("long", order, (o, s) -> longs(o, s, longs));
+            pick("double", order, (o, s) -> doubles(o, s, doubles));
+        }
+    }
+
+    interface Timing {
+        double time(int order, SearchStrategy strategy);
+    }
+}
@@ -1,6 +1,7 @@
 package bplus;
 
 import java.util.*;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -9,7 +10,28 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
 
     private class Working {
         private final List<Node<K,V>> done = new ArrayList<>(4);
+        private final Set<Node<K,V>> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Traversal.ArrayTraversal<K,V> path = Traversal.makeReusable();
+        private final Traversal.ArrayTraversal<K,V> update = Traversal.makeReusable();
+        private long updates = 0;
         private Node<K,V> orphan = null;
+
+        //the shared path is only good until the next traverse on this thread
+        Traversal<K,V> traverse(final K k) {
+            return traverse(k, false);
+        }
+
+        Traversal<K,V> traverse(final K k, final boolean after) {
+            descend(store.getRoot(), path.reset(), k, after);
+            return path;
+        }
+
+        //compute and friends, lookups made by their callbacks don't move it
+        Traversal<K,V> traverseUpdate(final K k) {
+            ++updates;
+            store.getRoot().traverse(update.reset(), k);
+            return update;
+        }
         
         void addDone(final Node<K,V> node) {
             done.add(node);
@@ -17,6 +39,61 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
 
         void disown(final Node<K,V> node) {
             this.orphan = node;
+            dirty(node);
+        }
+
+        //counted stores only, branches whose counts may be stale after the current operation
+        void dirty(final Node<K,V> node) {
+            if(store.isCounted() && node.isBranch()) {
+                dirty.add(node);
+            }
+        }
+
+        void dirty(final Traversal<K,V> traversal) {
+            for(int i = 0; i < traversal.level(); ++i) {
+                dirty(traversal.get(i).node());
+            }
+        }
+
+        void dirty(final Traversal.SiblingRelation<K,V> rel) {
+            if(rel != null) {
+                dirty(rel.getSibling());
+                dirty(rel.getParent().child(rel.getIndex()));
+            }
+        }
+
+        //every ancestor of a dirty branch is also dirty, so only dirty branches are visited
+        void refresh() {
+            if(!dirty.isEmpty()) {
+                final Node<K,V> root = store.getRoot();
+                if(root.isBranch()) {
+                    refresh(root.asBranch());
+                }
+
+                dirty.clear();
+            }
+        }
+
+        private long refresh(final Branch<K,V> branch) {
+            long total = 0;
+            for(int i = 0; i < branch.size(); ++i) {
+                final Node<K,V> child = branch.child(i);
+                final long count;
+                if(child.isLeaf()) {
+                    count = child.size();
+                }
+                else if(dirty.contains(child)) {
+                    count = refresh(child.asBranch());
+                }
+                else {
+                    count = branch.count(i);
+                }
+
+                branch.count(i, count);
+                total += count;
+            }
+
+            return total;
         }
 
         boolean hasOrphan() {
@@ -34,19 +111,309 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
                 throw new IllegalStateException();
             }
 
-            for(Node<K,V> node : done) {
-                node.done();
+            for(int i = 0; i < done.size(); ++i) {
+                retire(done.get(i));
             }
 
             done.clear();
+            reclaim();
         }
     }
     
     private final NodeStore<K,V> store;
+    private final Comparator<? super K> order;
     private final ThreadLocal<Working> tlWorking = ThreadLocal.withInitial(Working::new);
+
+    //append mode, root to rightmost leaf, rebuilt lazily so anything that restructures the tree just clears it
+    private final List<Node<K,V>> spine = new ArrayList<>();
+    private boolean appendMode = false;
+
+    //bumped by every insert and delete, cursors re-seek when it moved under them
+    private long mods = 0;
+
+    //repeated keys are kept in insertion order, separators can repeat when a run of them spans leaves
+    private boolean multimap = false;
+
+    //copy-on-write mode, writes change copies of the nodes they touch and published is the last finished
+    //version. owned holds the copies made since it was published, those are not shared with anything yet.
+    //buffer stores hand out a new node object per visit, so it goes by equality
+    private boolean copyOnWrite = false;
+    private final boolean frozen;
+    private volatile Frozen<K,V> published = null;
+    private final Set<Node<K,V>> owned = new HashSet<>();
+
+    //nodes that leave the tree are done at once, or once no pinned reader can still be on them
+    private Epochs epochs = null;
     
+    //the ordering comes from the store, its nodes do the searching
     public BplusTree(final NodeStore<K,V> store) {
         this.store = store;
+        this.order = Comparators.order(store.getKeyType(), store.getComparator());
+        this.frozen = (store instanceof Frozen);
+        if(frozen) {
+            copyOnWrite = true;
+            published = (Frozen<K,V>) store;
+        }
+    }
+
+    //one published version of a copy-on-write tree, nothing reachable from its root is changed again
+    private static final class Frozen<K extends Comparable<K>,V> implements NodeStore<K,V> {
+        private final NodeStore<K,V> live;
+        private final Node<K,V> root;
+        private volatile long entryCount;
+
+        private Frozen(final NodeStore<K,V> live) {
+            this.live = live;
+            this.root = live.getRoot();
+            this.entryCount = live.getEntryCount();
+        }
+
+        public Node<K,V> getRoot() { return root; }
+        public void setRoot(final Node<K,V> val) { throw new UnsupportedOperationException("snapshots are read only"); }
+        public Class<K> getKeyType() { return live.getKeyType(); }
+        public Class<V> getValueType() { return live.getValueType(); }
+
+        //an unknown count is filled in by whichever reader asks first, they all find the same one
+        public long getEntryCount() { return entryCount; }
+        public void setEntryCount(final long val) { entryCount = val; }
+
+        public boolean isCounted() { return live.isCounted(); }
+        public Comparator<? super K> getComparator() { return live.getComparator(); }
+        public SearchStrategy getSearchStrategy() { return live.getSearchStrategy(); }
+    }
+
+    public boolean isMultimap() {
+        return multimap;
+    }
+
+    public void setMultimap(final boolean val) {
+        if(!isEmpty()) {
+            throw new IllegalStateException("key mode can only change while the tree is empty");
+        }
+
+        multimap = val;
+    }
+
+    public Epochs getEpochs() {
+        return epochs;
+    }
+
+    //iterators pin the epochs for as long as they run, so retired nodes they may be on are not cleared under them
+    public void setEpochs(final Epochs val) {
+        epochs = val;
+    }
+
+    private void retire(final Node<K,V> node) {
+        if(epochs != null) {
+            epochs.retire(node);
+        }
+        else {
+            node.done();
+        }
+    }
+
+    private void reclaim() {
+        if(epochs != null) {
+            epochs.reclaim();
+        }
+    }
+
+    public boolean isCopyOnWrite() {
+        return copyOnWrite;
+    }
+
+    //replaced nodes are never retired since a snapshot may still hold them, buffer stores don't get their pages
+    //back. snapshots taken before copy-on-write is turned off see the writes made after it
+    public void setCopyOnWrite(final boolean val) {
+        checkFrozen();
+        if(val && appendMode) {
+            throw new IllegalStateException("append mode writes in place");
+        }
+
+        copyOnWrite = val;
+        published = null;
+        publish();
+    }
+
+    //the tree as of the last finished write, it never changes and any number of threads can read it without
+    //locking. its leaves may be linked to copies made later, so it steps between them by descent instead
+    public NavigableMap<K,V> snapshot() {
+        checkUnique();
+        final Frozen<K,V> version = published;
+        if(version == null) {
+            throw new IllegalStateException("snapshots need copy-on-write mode");
+        }
+
+        return frozen ? this : new BplusTree<>(version);
+    }
+
+    private void checkFrozen() {
+        if(frozen) {
+            throw new UnsupportedOperationException("snapshots are read only");
+        }
+    }
+
+    private void checkInPlace() {
+        if(copyOnWrite) {
+            throw new UnsupportedOperationException("not supported in copy-on-write mode");
+        }
+    }
+
+    //copies whatever the traversal went through that isn't owned yet, the copies take the place of the
+    //originals in the traversal, in their parents and in the leaf chain
+    private void own(final Traversal<K,V> tr) {
+        if(!copyOnWrite) {
+            return;
+        }
+
+        checkFrozen();
+        for(int i = 0; i < tr.size(); ++i) {
+            final Traversal.Step<K,V> step = tr.get(i);
+            if(owned.contains(step.node())) {
+                continue;
+            }
+
+            step.node(copy(step.node()));
+            if(i == 0) {
+                store.setRoot(step.node());
+            }
+            else {
+                final Traversal.Step<K,V> parent = tr.get(i - 1);
+                parent.node().asBranch().put(parent.index(), step.node());
+            }
+        }
+    }
+
+    //cursors find their place again after this, they may still be on the originals
+    private Node<K,V> copy(final Node<K,V> node) {
+        final Node<K,V> ret = node.isLeaf() ? node.newLeaf() : node.newBranch();
+        ret.size(node.size());
+        ret.copy(0, node, 0, node.size());
+        if(node.isLeaf()) {
+            final Leaf<K,V> leaf = node.asLeaf();
+            final Leaf<K,V> copy = ret.asLeaf();
+            copy.prev(leaf.prev());
+            copy.next(leaf.next());
+            if(leaf.prev() != null) {
+                leaf.prev().next(copy);
+            }
+
+            if(leaf.next() != null) {
+                leaf.next().prev(copy);
+            }
+        }
+
+        owned.add(ret);
+        ++mods;
+        return ret;
+    }
+
+    //borrowing and merging change a sibling as well, copy-on-write mode puts a copy of it in the owned parent
+    private Traversal.SiblingRelation<K,V> sibling(final Traversal<K,V> traversal, final boolean left) {
+        Traversal.SiblingRelation<K,V> ret = left ? traversal.getLeftSibling() : traversal.getRightSibling();
+        if(ret != null && copyOnWrite && !owned.contains(ret.getSibling())) {
+            ret.getParent().put(ret.getIndex(), copy(ret.getSibling()));
+            ret = left ? traversal.getLeftSibling() : traversal.getRightSibling();
+        }
+
+        tlWorking.get().dirty(ret);
+        return ret;
+    }
+
+    //the finished write becomes what snapshots see, every node it copied is shared from here on
+    private void publish() {
+        if(copyOnWrite && !frozen) {
+            owned.clear();
+            published = new Frozen<>(store);
+        }
+    }
+
+    private Leaf<K,V> nextLeaf(final Leaf<K,V> leaf) {
+        return frozen ? neighbor(leaf, true) : leaf.next();
+    }
+
+    private Leaf<K,V> prevLeaf(final Leaf<K,V> leaf) {
+        return frozen ? neighbor(leaf, false) : leaf.prev();
+    }
+
+    //the leaf beside one in a snapshot, found from the deepest branch on its path that has a child on that side
+    private Leaf<K,V> neighbor(final Leaf<K,V> leaf, final boolean after) {
+        if(leaf.size() == 0) {
+            return null;
+        }
+
+        final K k = after ? leaf.lastKey() : leaf.key(0);
+        Node<K,V> node = store.getRoot();
+        Node<K,V> turn = null;
+        while(node.isBranch()) {
+            final Branch<K,V> branch = node.asBranch();
+            final int index = branch.navigateIndex(k);
+            if(after ? index + 1 < branch.size() : index > 0) {
+                turn = branch.child(index + (after ? 1 : -1));
+            }
+
+            node = branch.child(index);
+        }
+
+        if(turn == null) {
+            return null;
+        }
+
+        while(turn.isBranch()) {
+            turn = turn.asBranch().child(after ? 0 : turn.lastIndex());
+        }
+
+        return turn.asLeaf();
+    }
+
+    //multimap mode lands on the first entry of k, or past the last one when after is set. a first
+    //entry that starts the next leaf is stepped onto so it is found as a match
+    private void descend(final Node<K,V> root, final Traversal<K,V> tr, final K k, final boolean after) {
+        if(!multimap) {
+            root.traverse(tr, k);
+            return;
+        }
+
+        Node<K,V> node = root;
+        while(node.isBranch()) {
+            final int index = Math.max(0, (after ? node.upperBound(k) : node.lowerBound(k)) - 1);
+            tr.add(node, index);
+            node = node.asBranch().child(index);
+        }
+
+        if(after) {
+            tr.add(node, Node.insertIndex(node.upperBound(k)));
+            return;
+        }
+
+        final int index = node.lowerBound(k);
+        tr.add(node, index);
+        if(index == node.size() && index > 0) {
+            tr.current().index(index - 1);
+            if(tr.hasForward()) {
+                tr.forward();
+            }
+            else {
+                tr.current().index(index);
+            }
+        }
+
+        if(!tr.isMatch() || tr.leaf().compare(tr.index(), k) != 0) {
+            tr.current().index(Node.insertIndex(tr.index()));
+        }
+    }
+
+    //a fresh traversal, after is only looked at in multimap mode
+    private Traversal<K,V> locate(final K k, final boolean after) {
+        final Traversal<K,V> tr = Traversal.makeMutable();
+        descend(store.getRoot(), tr, k, after);
+        return tr;
+    }
+
+    private void checkUnique() {
+        if(multimap) {
+            throw new UnsupportedOperationException("not supported for a multimap");
+        }
     }
 
     public int height() {
@@ -54,6 +421,16 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     public long longSize() {
+        long count = store.getEntryCount();
+        if(count < 0) {
+            count = countEntries();
+            store.setEntryCount(count);
+        }
+
+        return count;
+    }
+
+    private long countEntries() {
         final long[] ary = new long[1];
         
         depthFirst(store.getRoot(), (node) -> {
@@ -65,19 +442,80 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         return ary[0];
     }
 
+    //stores that lost track of their count stay unknown until the next size()
+    private void count(final long delta) {
+        ++mods;
+        final long count = store.getEntryCount();
+        if(count >= 0) {
+            store.setEntryCount(count + delta);
+        }
+    }
+
     public Optional<V> value(final K k) {
-        final Traversal<K,V> tr = store.getRoot().leafOnly(k);
-        return tr.index() >= 0 ? Optional.of(tr.value(null)) : Optional.empty();
+        if(multimap) {
+            final Traversal<K,V> tr = tlWorking.get().traverse(k);
+            return tr.isMatch() ? Optional.of(tr.value(null)) : Optional.empty();
+        }
+
+        final Leaf<K,V> leaf = leaf(k);
+        final int index = leaf.search(k);
+        return index >= 0 ? Optional.of(leaf.value(index)) : Optional.empty();
+    }
+
+    //point lookups only need the leaf, no traversal is built
+    private Leaf<K,V> leaf(final K k) {
+        Node<K,V> node = store.getRoot();
+        while(node.isBranch()) {
+            final Branch<K,V> branch = node.asBranch();
+            node = branch.child(branch.navigateIndex(k));
+        }
+
+        return node.asLeaf();
     }
 
+    //a multimap adds k after any entries it already has and always returns null
     public V put(final K k, final V v) {
-        final Traversal<K,V> traversal = store.getRoot().traverse(k);
-        V ret = null;
-        
+        if(appendMode && append(k, v)) {
+            return null;
+        }
+
+        return put(tlWorking.get().traverse(k, true), k, v);
+    }
+
+    //every value of k in insertion order, empty if there are none
+    public List<V> getAll(final K k) {
+        final List<V> ret = new ArrayList<>();
+        final Traversal<K,V> tr = tlWorking.get().traverse(k);
+        if(!tr.isMatch()) {
+            return ret;
+        }
+
+        Leaf<K,V> leaf = tr.leaf();
+        int index = tr.index();
+        while(leaf != null && leaf.compare(index, k) == 0) {
+            ret.add(leaf.value(index));
+            if(++index == leaf.size()) {
+                leaf = leaf.next();
+                index = 0;
+            }
+        }
+
+        return ret;
+    }
+
+    //a ConcurrentBplusTree restructures through these after latching whatever they may touch
+    V put(final Traversal<K,V> traversal, final K k, final V v) {
+        own(traversal);
         if(traversal.index() >= 0) {
-            ret = traversal.value(null);
+            final V ret = traversal.value(null);
+            traversal.leaf().put(traversal.index(), k, v);
+            publish();
+            return ret;
         }
         
+        count(1);
+        spine.clear();
+        tlWorking.get().dirty(traversal);
         while(traversal.level() >= 0) {
             final Node<K,V> current = traversal.current().node();
 
@@ -91,7 +529,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
                 traversal.pop();
             }
             else {
-                return ret;
+                break;
             }
         }
 
@@ -105,16 +543,169 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
             store.setRoot(newRoot);
         }
 
-        return ret;
+        tlWorking.get().refresh();
+        publish();
+        return null;
+    }
+
+    public boolean isAppendMode() {
+        return appendMode;
+    }
+
+    //leaving append mode brings the right spine back up to the minimum fill
+    public void setAppendMode(final boolean val) {
+        if(val) {
+            checkInPlace();
+        }
+
+        if(appendMode && !val) {
+            sealSpine();
+        }
+
+        appendMode = val;
+    }
+
+    private void loadSpine() {
+        Node<K,V> node = store.getRoot();
+        spine.add(node);
+        while(node.isBranch()) {
+            node = node.asBranch().child(node.size() - 1);
+            spine.add(node);
+        }
+    }
+
+    //returns false when k is not past the last key, the caller then does a normal put.
+    //a full rightmost node is not split, the new key opens a fresh node to its right so the full
+    //node stays full. fresh branches take the last child of their full neighbor along with the new
+    //node, every spine node then has a sibling in the same branch for deletes to borrow from or merge with.
+    private boolean append(final K k, final V v) {
+        if(spine.isEmpty()) {
+            loadSpine();
+        }
+
+        final int leafLevel = spine.size() - 1;
+        final Leaf<K,V> leaf = spine.get(leafLevel).asLeaf();
+        if(leaf.size() > 0 && order.compare(leaf.lastKey(), k) >= (multimap ? 1 : 0)) {
+            return false;
+        }
+
+        count(1);
+        if(!leaf.isFull()) {
+            leaf.sizeUp(1);
+            leaf.put(leaf.lastIndex(), k, v);
+            if(store.isCounted()) {
+                for(int level = 0; level < leafLevel; ++level) {
+                    final Branch<K,V> branch = spine.get(level).asBranch();
+                    branch.count(branch.lastIndex(), branch.count(branch.lastIndex()) + 1);
+                }
+            }
+
+            return true;
+        }
+
+        final Leaf<K,V> fresh = leaf.newLeaf();
+        fresh.sizeUp(1);
+        fresh.put(0, k, v);
+        leaf.linkNext(fresh);
+        spine.set(leafLevel, fresh);
+
+        Node<K,V> orphan = fresh;
+        for(int level = leafLevel - 1; level >= 0 && orphan != null; --level) {
+            final Branch<K,V> branch = spine.get(level).asBranch();
+            if(!branch.isFull()) {
+                branch.sizeUp(1);
+                branch.put(branch.lastIndex(), orphan);
+                orphan = null;
+            }
+            else {
+                final Branch<K,V> right = branch.newBranch();
+                right.sizeUp(2);
+                right.put(0, branch.child(branch.lastIndex()));
+                right.put(1, orphan);
+                branch.sizeDown(1);
+                spine.set(level, right);
+                orphan = right;
+            }
+        }
+
+        if(orphan != null) {
+            final Branch<K,V> newRoot = orphan.newBranch();
+            newRoot.sizeUp(2);
+            newRoot.put(0, store.getRoot());
+            newRoot.put(1, orphan);
+            store.setRoot(newRoot);
+            spine.add(0, newRoot);
+        }
+
+        if(store.isCounted()) {
+            refreshSpine();
+        }
+
+        return true;
+    }
+
+    //only the last two children of a spine branch can change when the spine grows or is sealed
+    private void refreshSpine() {
+        for(int level = spine.size() - 2; level >= 0; --level) {
+            final Branch<K,V> branch = spine.get(level).asBranch();
+            for(int i = Math.max(0, branch.size() - 2); i < branch.size(); ++i) {
+                branch.count(i, Branch.total(branch.child(i)));
+            }
+        }
+    }
+
+    private void sealSpine() {
+        if(spine.isEmpty()) {
+            loadSpine();
+        }
+
+        for(int level = spine.size() - 1; level > 0; --level) {
+            final Branch<K,V> parent = spine.get(level - 1).asBranch();
+            if(parent.size() < 2) {
+                continue;
+            }
+
+            final Node<K,V> node = spine.get(level);
+            if(rebalance(parent.child(parent.size() - 2), node)) {
+                parent.resetKey(parent.lastIndex());
+            }
+            else {
+                parent.sizeDown(1);
+            }
+        }
+
+        Node<K,V> root = store.getRoot();
+        while(root.isBranch() && root.size() == 1) {
+            final Node<K,V> child = root.asBranch().child(0);
+            retire(root);
+            root = child;
+        }
+
+        store.setRoot(root);
+        reclaim();
+        spine.clear();
+        if(store.isCounted()) {
+            recount(root);
+        }
     }
 
     public V delete(final K k) {
+        return delete(tlWorking.get().traverse(k));
+    }
+
+    V delete(final Traversal<K,V> traversal) {
+        final int index = traversal.index();
+        if(index >= 0) {
+            own(traversal);
+        }
+
         final Node<K,V> root = store.getRoot();
-        final Traversal<K,V> traversal = store.getRoot().traverse(k);
         final Leaf<K,V> leaf = traversal.leaf();
-        final int index = traversal.index();
         final V ret = (index >= 0) ? leaf.value(index) : null;
         if(index >= 0) {
+            count(-1);
+            spine.clear();
+            tlWorking.get().dirty(traversal);
             while(traversal.level() >= 0) {
                 final Node<K,V> current = traversal.current().node();
                 
@@ -136,18 +727,22 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
                 store.setRoot(root.asBranch().child(0));
             }
 
+            tlWorking.get().refresh();
             tlWorking.get().done();
+            publish();
         }
         
         return ret;
     }
     
+    //inserts go by position, the traversal already found where k belongs
     private void putLeaf(final Traversal<K,V> traversal, final K k, final V v) {
         final Leaf<K,V> leaf = traversal.leaf();
+        final int at = Node.insertIndex(traversal.index());
 
         //case: can insert in current leaf
         if(!leaf.isFull()) {
-            if(leaf.insert(k, v) == 0) {
+            if(leaf.insert(at, k, v) == 0) {
                 traversal.resetAncestorKeys();
             }
             
@@ -155,32 +750,35 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
 
         //case: can borrow space in left sibling
-        final Traversal.SiblingRelation<K,V> leftRel = traversal.getLeftSibling();
+        final Traversal.SiblingRelation<K,V> leftRel = sibling(traversal, true);
         if(leftRel != null && !leftRel.getSibling().isFull()) {
             final Leaf<K,V> sibling = leftRel.getSibling().asLeaf();
             sibling.sizeUp(1);
-            sibling.put(sibling.lastIndex(), leaf.key(0), leaf.value(0));
-            leaf.shiftLeft(1, 1).sizeDown(1);
-            leaf.insert(k, v);
-            traversal.resetAncestorKeys();
+            if(at == 0) {
+                sibling.put(sibling.lastIndex(), k, v);
+            }
+            else {
+                sibling.put(sibling.lastIndex(), leaf.key(0), leaf.value(0));
+                leaf.shiftLeft(1, 1).sizeDown(1);
+                leaf.insert(at - 1, k, v);
+                traversal.resetAncestorKeys();
+            }
+
             return;
         }
 
         //case: can borrow space in right sibling
-        final Traversal.SiblingRelation<K,V> rightRel = traversal.getRightSibling();
+        final Traversal.SiblingRelation<K,V> rightRel = sibling(traversal, false);
         if(rightRel != null && !rightRel.getSibling().isFull()) {
             final Leaf<K,V> sibling = rightRel.getSibling().asLeaf();
             sibling.sizeUp(1).shiftRight(0, 1);
-            
-            final int searchIndex = leaf.search(k);
-            final int insertIndex = searchIndex >= 0 ? searchIndex : Node.insertIndex(searchIndex);
-            if(insertIndex == leaf.size()) {
+            if(at == leaf.size()) {
                 sibling.put(0, k, v);
             }
             else {
                 sibling.put(0, leaf.lastKey(), leaf.lastValue());
                 leaf.sizeDown(1);
-                if(leaf.insert(k, v) == 0) {
+                if(leaf.insert(at, k, v) == 0) {
                     traversal.resetAncestorKeys();
                 }
             }
@@ -190,53 +788,47 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
 
         //case: split node
-        final Leaf<K,V> newRightSibling = leaf.split(k, v);
+        final Leaf<K,V> newRightSibling = leaf.split(at, k, v);
         tlWorking.get().disown(newRightSibling);
         traversal.resetAncestorKeys();
     }
 
+    //the orphan was split off the child the traversal went through, it goes right after it
     private void putBranch(final Traversal<K,V> traversal) {
         final Branch<K,V> current = traversal.branch();
         final Node<K,V> orphan = tlWorking.get().adoptOrphan();
+        final int at = traversal.index() + 1;
 
         //case: current node is not full
         if(!current.isFull()) {
-            final int nodeIndex = current.insert(orphan);
-            if(nodeIndex == 0) {
-                traversal.resetAncestorKeys();
-            }
-
+            current.insert(at, orphan);
             return;
         }
 
         //case: share space with left sibling
-        final Traversal.SiblingRelation<K,V> leftRel = traversal.getLeftSibling();
+        final Traversal.SiblingRelation<K,V> leftRel = sibling(traversal, true);
         if(leftRel != null && !leftRel.getSibling().isFull()) {
             final Branch<K,V> sibling = leftRel.getSibling().asBranch();
             sibling.sizeUp(1);
             sibling.put(sibling.lastIndex(), current.child(0));
             current.shiftLeft(1, 1).sizeDown(1);
-            current.insert(orphan);
+            current.insert(at - 1, orphan);
             traversal.resetAncestorKeys();
             return;
         }
 
         //case: share space with right sibling
-        final Traversal.SiblingRelation<K,V> rightRel = traversal.getRightSibling();
+        final Traversal.SiblingRelation<K,V> rightRel = sibling(traversal, false);
         if(rightRel != null && !rightRel.getSibling().isFull()) {
             final Branch<K,V> sibling = rightRel.getSibling().asBranch();
             sibling.sizeUp(1).shiftRight(0, 1);
-            final int searchIndex = current.search(orphan.key(0));
-            final int insertIndex = searchIndex >= 0 ? searchIndex : Node.insertIndex(searchIndex);
-            if(insertIndex == current.size()) {
+            if(at == current.size()) {
                 sibling.put(0, orphan);
             }
             else {
                 sibling.put(0, current.child(current.lastIndex()));
                 current.sizeDown(1);
-                if(current.insert(orphan) == 0) {
-                    traversal.resetAncestorKeys();
-                }
+                current.insert(at, orphan);
             }
 
             rightRel.resetAncestorKeys();
@@ -244,7 +836,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
 
         //case: split branch
-        final Node<K,V> newRight = current.split(orphan);
+        final Node<K,V> newRight = current.split(at, orphan);
         tlWorking.get().disown(newRight);
         traversal.resetAncestorKeys();
     }
@@ -263,7 +855,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
             return;
         }
 
-        final Traversal.SiblingRelation<K,V> leftRel = traversal.getLeftSibling();
+        final Traversal.SiblingRelation<K,V> leftRel = sibling(traversal, true);
         if(leftRel != null) {
             final Leaf<K,V> sibling = leftRel.getSibling().asLeaf();
             if(sibling.isAboveMinLimit()) {
@@ -287,13 +879,14 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
                     traversal.resetAncestorKeys();
                 }
                 
+                current.unlink();
                 tlWorking.get().addDone(current);
             }
 
             return;
         }
 
-        final Traversal.SiblingRelation<K,V> rightRel = traversal.getRightSibling();
+        final Traversal.SiblingRelation<K,V> rightRel = sibling(traversal, false);
         if(rightRel != null) {
             final Leaf<K,V> sibling = rightRel.getSibling().asLeaf();
             if(sibling.isAboveMinLimit()) {
@@ -318,6 +911,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
                     traversal.resetAncestorKeys();
                 }
                 
+                current.unlink();
                 tlWorking.get().addDone(current);
             }
         }
@@ -327,7 +921,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         //current is below limit, child was already removed previously
         final Branch<K,V> current = traversal.branch();
 
-        final Traversal.SiblingRelation<K,V> leftRel = traversal.getLeftSibling();
+        final Traversal.SiblingRelation<K,V> leftRel = sibling(traversal, true);
         if(leftRel != null) {
             final Branch<K,V> sibling = leftRel.getSibling().asBranch();
             if(sibling.isAboveMinLimit()) {
@@ -356,7 +950,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
             return;
         }
 
-        final Traversal.SiblingRelation<K,V> rightRel = traversal.getRightSibling();
+        final Traversal.SiblingRelation<K,V> rightRel = sibling(traversal, false);
         if(rightRel != null) {
             final Branch<K,V> sibling = rightRel.getSibling().asBranch();
             if(sibling.isAboveMinLimit()) {
@@ -375,31 +969,1164 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
                 sibling.copy(0, current, 0, current.size());
                 rightRel.resetAncestorKeys();
 
-                final Traversal.Step<K,V> parentEntry = traversal.parent();
-                final Branch<K,V> parent = parentEntry.node().asBranch();
-                parent.remove(parentEntry.index());
-                if(parentEntry.index() == 0) {
-                    traversal.resetAncestorKeys();
-                }
+                final Traversal.Step<K,V> parentEntry = traversal.parent();
+                final Branch<K,V> parent = parentEntry.node().asBranch();
+                parent.remove(parentEntry.index());
+                if(parentEntry.index() == 0) {
+                    traversal.resetAncestorKeys();
+                }
+
+                tlWorking.get().addDone(current);
+            }
+        }
+    }
+
+    //batch insert, entries must be in ascending key order, later duplicates win unless this is a multimap
+    //each leaf is filled with every entry that belongs to it after a single descent
+    public void putAllSorted(final Iterator<? extends Map.Entry<? extends K,? extends V>> sorted) {
+        Map.Entry<? extends K,? extends V> entry = sorted.hasNext() ? sorted.next() : null;
+        K last = null;
+
+        while(entry != null) {
+            final Traversal<K,V> traversal = tlWorking.get().traverse(entry.getKey(), true);
+            own(traversal);
+            final Leaf<K,V> leaf = traversal.leaf();
+            final K bound = upperBound(traversal);
+            boolean resetKeys = false;
+            boolean full = false;
+
+            while(entry != null) {
+                final K k = entry.getKey();
+                if(last != null && order.compare(last, k) > 0) {
+                    throw new IllegalArgumentException("entries are not in ascending key order at " + k);
+                }
+
+                if(bound != null && order.compare(bound, k) <= 0) {
+                    break;
+                }
+
+                final int searchIndex = multimap ? Node.insertIndex(leaf.upperBound(k)) : leaf.search(k);
+                if(searchIndex >= 0) {
+                    leaf.put(searchIndex, k, entry.getValue());
+                }
+                else if(leaf.isFull()) {
+                    traversal.current().index(searchIndex);
+                    full = true;
+                    break;
+                }
+                else {
+                    resetKeys |= (leaf.insert(Node.insertIndex(searchIndex), k, entry.getValue()) == 0);
+                    count(1);
+                }
+
+                last = k;
+                entry = sorted.hasNext() ? sorted.next() : null;
+            }
+
+            if(resetKeys) {
+                traversal.resetAncestorKeys();
+            }
+
+            tlWorking.get().dirty(traversal);
+            tlWorking.get().refresh();
+
+            //the path is still valid for this key, let put() borrow or split from it
+            if(full) {
+                put(traversal, entry.getKey(), entry.getValue());
+                last = entry.getKey();
+                entry = sorted.hasNext() ? sorted.next() : null;
+            }
+        }
+
+        publish();
+    }
+
+    //first key of the next leaf, null if the traversal is on the rightmost leaf
+    private K upperBound(final Traversal<K,V> traversal) {
+        for(int i = traversal.level() - 1; i >= 0; --i) {
+            final Traversal.Step<K,V> step = traversal.get(i);
+            if(step.hasForward()) {
+                return step.node().key(step.index() + 1);
+            }
+        }
+
+        return null;
+    }
+
+    //bulk loading, replaces the contents of the tree with entries given in strictly ascending key order,
+    //or just ascending for a multimap
+    public void bulkLoad(final Iterator<? extends Map.Entry<K,V>> sorted) {
+        bulkLoad(sorted, 1d);
+    }
+
+    public void bulkLoad(final Iterator<? extends Map.Entry<K,V>> sorted, final double fillFactor) {
+        if(!(fillFactor > 0d && fillFactor <= 1d)) {
+            throw new IllegalArgumentException("fill factor must be in (0, 1]");
+        }
+
+        clear();
+        final BulkLoader loader = new BulkLoader(store.getRoot().asLeaf(), fillFactor);
+        while(sorted.hasNext()) {
+            final Map.Entry<K,V> entry = sorted.next();
+            if(!loader.add(entry.getKey(), entry.getValue())) {
+                //install what was built so clear() can retire it
+                store.setRoot(loader.finish());
+                clear();
+                throw new IllegalArgumentException("keys are not in ascending order at " + entry.getKey());
+            }
+        }
+
+        store.setRoot(loader.finish());
+        store.setEntryCount(loader.count);
+        if(store.isCounted()) {
+            recount(store.getRoot());
+        }
+
+        publish();
+    }
+
+    private long recount(final Node<K,V> node) {
+        if(node.isLeaf()) {
+            return node.size();
+        }
+
+        final Branch<K,V> branch = node.asBranch();
+        long total = 0;
+        for(int i = 0; i < branch.size(); ++i) {
+            final long count = recount(branch.child(i));
+            branch.count(i, count);
+            total += count;
+        }
+
+        return total;
+    }
+
+    //order statistics, counted stores only
+    private void checkCounted() {
+        if(!store.isCounted()) {
+            throw new UnsupportedOperationException("store does not keep counts");
+        }
+    }
+
+    //number of keys strictly less than k
+    public long rank(final K k) {
+        checkCounted();
+        final Traversal<K,V> tr = locate(k, false);
+        final int index = tr.index();
+        return rank(tr.level(), tr) + (index >= 0 ? index : Node.insertIndex(index));
+    }
+
+    //entries before the node at level, summed over the branches of the traversal
+    private long rank(final int level, final Traversal<K,V> tr) {
+        long ret = 0;
+        for(int i = 0; i < level; ++i) {
+            final Traversal.Step<K,V> step = tr.get(i);
+            final Branch<K,V> branch = step.node().asBranch();
+            for(int j = 0; j < step.index(); ++j) {
+                ret += branch.count(j);
+            }
+        }
+
+        return ret;
+    }
+
+    //position of the entry the traversal points at, ranks of neighboring positions differ by one
+    private long rank(final Traversal<K,V> tr) {
+        return rank(tr.level(), tr) + tr.index();
+    }
+
+    public Map.Entry<K,V> select(final long index) {
+        checkCounted();
+        if(index < 0 || index >= longSize()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + longSize());
+        }
+
+        long remaining = index;
+        Node<K,V> node = store.getRoot();
+        while(node.isBranch()) {
+            final Branch<K,V> branch = node.asBranch();
+            int i = 0;
+            while(remaining >= branch.count(i)) {
+                remaining -= branch.count(i++);
+            }
+
+            node = branch.child(i);
+        }
+
+        return node.asLeaf().entry((int) remaining);
+    }
+
+    //fixes an underfull rightmost node against its left neighbor, returns false if node was merged into prev and retired.
+    //only the tail of prev moves, so its key in the parent stays valid
+    private boolean rebalance(final Node<K,V> prev, final Node<K,V> node) {
+        if(prev == null || !node.isBelowLimit()) {
+            return true;
+        }
+
+        return fuse(prev, node);
+    }
+
+    //neighbors of the same height, right is merged into left and retired if they fit in one node (returns false),
+    //otherwise entries move towards the smaller one until both hold at least half of the total
+    private boolean fuse(final Node<K,V> left, final Node<K,V> right) {
+        final int total = left.size() + right.size();
+        if(total <= left.order()) {
+            final int at = left.size();
+            left.sizeUp(right.size());
+            left.copy(0, right, at, right.size());
+            if(right.isLeaf()) {
+                right.asLeaf().unlink();
+            }
+
+            retire(right);
+            return false;
+        }
+
+        final int move = (total >>> 1) - right.size();
+        if(move > 0) {
+            right.sizeUp(move);
+            right.shiftRight(0, move);
+            right.copy(left.size() - move, left, 0, move);
+            left.sizeDown(move);
+        }
+        else if(move < 0) {
+            final int at = left.size();
+            left.sizeUp(-move);
+            left.copy(0, right, at, -move);
+            right.shiftLeft(-move, -move);
+            right.sizeDown(-move);
+        }
+
+        return true;
+    }
+
+    //range removal, split and join
+    //a subtree cut loose from the tree, only its root may be below the minimum fill. leaves have height 1
+    private class Piece {
+        private final Node<K,V> node;
+        private final int height;
+
+        Piece(final Node<K,V> node, final int height) {
+            this.node = node;
+            this.height = height;
+        }
+
+        Leaf<K,V> first() {
+            Node<K,V> ret = node;
+            while(ret.isBranch()) {
+                ret = ret.asBranch().child(0);
+            }
+
+            return ret.asLeaf();
+        }
+
+        Leaf<K,V> last() {
+            Node<K,V> ret = node;
+            while(ret.isBranch()) {
+                ret = ret.asBranch().child(ret.size() - 1);
+            }
+
+            return ret.asLeaf();
+        }
+    }
+
+    private class Halves {
+        private final Piece left;
+        private final Piece right;
+
+        Halves(final Piece left, final Piece right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    //null for nothing left, a branch with only one child gives way to the child
+    private Piece piece(final Node<K,V> argNode, final int argHeight) {
+        Node<K,V> node = argNode;
+        int height = argHeight;
+        while(node.isBranch() && node.size() == 1) {
+            final Node<K,V> child = node.asBranch().child(0);
+            retire(node);
+            node = child;
+            --height;
+        }
+
+        if(node.size() == 0) {
+            retire(node);
+            return null;
+        }
+
+        return new Piece(node, height);
+    }
+
+    //cuts the tree below tr into the entries before cut in the leaf and everything from there on.
+    //going up, the part of each branch left of the path joins the left piece, the part right of it the right piece.
+    //only the leaf links at the cut are severed, everything joined back on each side was already next to each other
+    private Halves split(final Traversal<K,V> tr, final int cut) {
+        final Leaf<K,V> leaf = tr.leaf();
+        Piece left = null;
+        Piece right = null;
+        if(cut == 0) {
+            if(leaf.prev() != null) {
+                leaf.prev().next(null);
+                leaf.prev(null);
+            }
+
+            right = new Piece(leaf, 1);
+        }
+        else if(cut == leaf.size()) {
+            if(leaf.next() != null) {
+                leaf.next().prev(null);
+                leaf.next(null);
+            }
+
+            left = new Piece(leaf, 1);
+        }
+        else {
+            final Leaf<K,V> tail = leaf.newLeaf();
+            tail.size(leaf.size() - cut);
+            tail.copy(cut, leaf, 0, tail.size());
+            leaf.size(cut);
+            tail.next(leaf.next());
+            if(leaf.next() != null) {
+                leaf.next().prev(tail);
+            }
+
+            leaf.next(null);
+            left = new Piece(leaf, 1);
+            right = new Piece(tail, 1);
+        }
+
+        for(int level = tr.level() - 1; level >= 0; --level) {
+            final Branch<K,V> branch = tr.get(level).node().asBranch();
+            final int index = tr.get(level).index();
+            final int height = tr.level() - level + 1;
+            final Branch<K,V> tail = branch.newBranch();
+            tail.size(branch.size() - index - 1);
+            tail.copy(index + 1, branch, 0, tail.size());
+            branch.size(index);
+            left = join(piece(branch, height), left);
+            right = join(right, piece(tail, height));
+        }
+
+        return new Halves(left, right);
+    }
+
+    //all keys of a are before all keys of b, the taller piece takes the shorter one along its facing spine.
+    //the leaves at the seam have to be linked already
+    private Piece join(final Piece a, final Piece b) {
+        if(a == null) {
+            return b;
+        }
+        else if(b == null) {
+            return a;
+        }
+
+        if(a.height == b.height) {
+            if(!fuse(a.node, b.node)) {
+                return a;
+            }
+
+            return new Piece(newRoot(a.node, b.node), a.height + 1);
+        }
+        else if(a.height > b.height) {
+            return joinRight(a, b);
+        }
+        else {
+            return joinLeft(a, b);
+        }
+    }
+
+    private void link(final Piece a, final Piece b) {
+        if(a != null && b != null) {
+            final Leaf<K,V> last = a.last();
+            final Leaf<K,V> first = b.first();
+            last.next(first);
+            first.prev(last);
+        }
+    }
+
+    private Branch<K,V> newRoot(final Node<K,V> left, final Node<K,V> right) {
+        final Branch<K,V> root = left.newBranch();
+        root.sizeUp(2);
+        root.put(0, left);
+        root.put(1, right);
+        return root;
+    }
+
+    //b goes next to the last node of a at its height, full branches above split evenly
+    private Piece joinRight(final Piece a, final Piece b) {
+        final List<Branch<K,V>> path = new ArrayList<>();
+        Node<K,V> node = a.node;
+        for(int height = a.height; height > b.height; --height) {
+            path.add(node.asBranch());
+            node = node.asBranch().child(node.size() - 1);
+        }
+
+        Node<K,V> carry = fuse(node, b.node) ? b.node : null;
+        for(int i = path.size() - 1; i >= 0; --i) {
+            final Branch<K,V> branch = path.get(i);
+            if(carry == null) {
+                recount(branch, branch.size() - 2, branch.size());
+            }
+            else if(!branch.isFull()) {
+                branch.sizeUp(1);
+                branch.put(branch.lastIndex(), carry);
+                recount(branch, branch.size() - 2, branch.size());
+                carry = null;
+            }
+            else {
+                final int keep = (branch.size() + 1) >>> 1;
+                final Branch<K,V> right = branch.newBranch();
+                right.size(branch.size() + 1 - keep);
+                right.copy(keep, branch, 0, branch.size() - keep);
+                right.put(right.lastIndex(), carry);
+                branch.size(keep);
+                recount(branch, branch.size() - 2, branch.size());
+                recount(right, right.size() - 2, right.size());
+                carry = right;
+            }
+        }
+
+        return (carry == null) ? a : new Piece(newRoot(a.node, carry), a.height + 1);
+    }
+
+    //a goes before the first node of b at its height, full branches above split evenly
+    private Piece joinLeft(final Piece a, final Piece b) {
+        final List<Branch<K,V>> path = new ArrayList<>();
+        Node<K,V> node = b.node;
+        for(int height = b.height; height > a.height; --height) {
+            path.add(node.asBranch());
+            node = node.asBranch().child(0);
+        }
+
+        Node<K,V> carry = a.node;
+        if(!fuse(a.node, node)) {
+            path.get(path.size() - 1).put(0, a.node);
+            carry = null;
+        }
+
+        //the first key changes all the way up, child 0 is final by the time its parent is reached
+        for(int i = path.size() - 1; i >= 0; --i) {
+            final Branch<K,V> branch = path.get(i);
+            branch.resetKey(0);
+            if(carry == null) {
+                recount(branch, 0, 2);
+            }
+            else if(!branch.isFull()) {
+                branch.sizeUp(1);
+                branch.shiftRight(0, 1);
+                branch.put(0, carry);
+                recount(branch, 0, 2);
+                carry = null;
+            }
+            else {
+                final int move = ((branch.size() + 1) >>> 1) - 1;
+                final Branch<K,V> left = branch.newBranch();
+                left.size(move + 1);
+                left.put(0, carry);
+                left.copy(0, branch, 1, move);
+                branch.shiftLeft(move, move);
+                branch.sizeDown(move);
+                recount(left, 0, 2);
+                recount(branch, 0, 2);
+                carry = left;
+            }
+        }
+
+        return (carry == null) ? b : new Piece(newRoot(carry, b.node), b.height + 1);
+    }
+
+    //counted stores, pieces keep exact counts, a join only changes the two children on each side of the seam
+    private void recount(final Branch<K,V> branch, final int from, final int to) {
+        if(store.isCounted()) {
+            for(int i = Math.max(0, from); i < Math.min(to, branch.size()); ++i) {
+                branch.count(i, Branch.total(branch.child(i)));
+            }
+        }
+    }
+
+    private static <K extends Comparable<K>,V> int lowerCut(final Traversal<K,V> tr, final boolean inclusive) {
+        final int index = tr.index();
+        if(index < 0) {
+            return Node.insertIndex(index);
+        }
+
+        return inclusive ? index : index + 1;
+    }
+
+    private static <K extends Comparable<K>,V> int upperCut(final Traversal<K,V> tr, final boolean inclusive) {
+        return lowerCut(tr, !inclusive);
+    }
+
+    //detaches everything in the range in one piece, the covered subtrees are retired without any rebalancing
+    //and the two remaining pieces are joined along the cut
+    public void removeRange(final K from, final boolean fromInclusive, final K to, final boolean toInclusive) {
+        checkInPlace();
+        checkRange(from, to);
+        if(isEmpty()) {
+            return;
+        }
+
+        final Node<K,V> root = store.getRoot();
+        final Traversal<K,V> lower = tlWorking.get().traverse(from, !fromInclusive);
+        final Halves head = split(lower, lowerCut(lower, fromInclusive));
+        Halves tail = new Halves(null, null);
+        if(head.right != null) {
+            final Traversal<K,V> upper = tlWorking.get().path.reset();
+            descend(head.right.node, upper, to, toInclusive);
+            tail = split(upper, upperCut(upper, toInclusive));
+        }
+
+        link(head.left, tail.right);
+        final Piece rest = join(head.left, tail.right);
+        store.setRoot((rest != null) ? rest.node : root.newLeaf());
+
+        final long[] removed = new long[1];
+        if(tail.left != null) {
+            depthFirst(tail.left.node, (node) -> {
+                    if(node.isLeaf()) {
+                        removed[0] += node.size();
+                    }
+
+                    retire(node);
+                });
+        }
+
+        spine.clear();
+        count(-removed[0]);
+        reclaim();
+    }
+
+    //moves every entry from k on into a new tree over a fork of the store, this tree keeps the entries before k
+    public BplusTree<K,V> splitAt(final K k) {
+        checkInPlace();
+        final BplusTree<K,V> ret = new BplusTree<>(store.fork());
+        ret.multimap = multimap;
+        if(isEmpty()) {
+            return ret;
+        }
+
+        final Traversal<K,V> tr = tlWorking.get().traverse(k);
+        final Halves halves = split(tr, lowerCut(tr, true));
+        if(halves.right != null) {
+            ret.store.setRoot(halves.right.node);
+        }
+
+        store.setRoot((halves.left != null) ? halves.left.node : halves.right.node.newLeaf());
+        spine.clear();
+        ++mods;
+        if(store.isCounted()) {
+            store.setEntryCount(Branch.total(store.getRoot()));
+            ret.store.setEntryCount(Branch.total(ret.store.getRoot()));
+        }
+        else {
+            //whichever side is asked first walks its leaves, the other can't be known any cheaper
+            store.setEntryCount(-1);
+            ret.store.setEntryCount(-1);
+        }
+
+        return ret;
+    }
+
+    //takes over every node of right, whose keys all have to come after the keys of this tree. right is left empty
+    public void concat(final BplusTree<K,V> right) {
+        checkInPlace();
+        right.checkInPlace();
+        if(right == this || store.owner() != right.store.owner()) {
+            throw new IllegalArgumentException("trees do not share a store");
+        }
+        else if(multimap != right.multimap) {
+            throw new IllegalArgumentException("trees do not use the same key mode");
+        }
+
+        if(right.isEmpty()) {
+            return;
+        }
+        else if(!isEmpty() && order.compare(lastKey(), right.firstKey()) >= (multimap ? 1 : 0)) {
+            throw new IllegalArgumentException("key ranges overlap at " + right.firstKey());
+        }
+
+        final long leftCount = store.getEntryCount();
+        final long rightCount = right.store.getEntryCount();
+        final Piece a = piece(store.getRoot(), height());
+        final Piece b = new Piece(right.store.getRoot(), right.height());
+        link(a, b);
+        store.setRoot(join(a, b).node);
+        right.store.setRoot(store.getRoot().newLeaf());
+        right.store.setEntryCount(0);
+        right.spine.clear();
+        ++right.mods;
+
+        spine.clear();
+        ++mods;
+        store.setEntryCount((leftCount >= 0 && rightCount >= 0) ? leftCount + rightCount : -1);
+    }
+
+    //keeps the open (rightmost) node for each level, level 0 is the leaf level
+    private class BulkLoader {
+        private final double fillFactor;
+        private final List<Node<K,V>> open = new ArrayList<>();
+        private final List<Node<K,V>> previous = new ArrayList<>();
+        private K lastKey = null;
+        private long count = 0;
+
+        BulkLoader(final Leaf<K,V> first, final double fillFactor) {
+            this.fillFactor = fillFactor;
+            open.add(first);
+            previous.add(null);
+        }
+
+        private int target(final Node<K,V> node) {
+            final int filled = (int) Math.ceil(node.order() * fillFactor);
+            return Math.max(node.getMinLimit(), Math.min(node.order(), filled));
+        }
+
+        boolean add(final K k, final V v) {
+            if(lastKey != null && order.compare(lastKey, k) >= (multimap ? 1 : 0)) {
+                return false;
+            }
+
+            Leaf<K,V> leaf = open.get(0).asLeaf();
+            if(leaf.size() >= target(leaf)) {
+                roll(0);
+                leaf = open.get(0).asLeaf();
+            }
+
+            leaf.sizeUp(1);
+            leaf.put(leaf.lastIndex(), k, v);
+            lastKey = k;
+            ++count;
+            return true;
+        }
+
+        //closes the open node at level, hands it to the level above and opens a new one
+        private void roll(final int level) {
+            final Node<K,V> node = open.get(level);
+            append(level + 1, node);
+            previous.set(level, node);
+            if(node.isLeaf()) {
+                final Leaf<K,V> leaf = node.newLeaf();
+                node.asLeaf().linkNext(leaf);
+                open.set(level, leaf);
+            }
+            else {
+                open.set(level, node.newBranch());
+            }
+        }
+
+        private void append(final int level, final Node<K,V> child) {
+            if(level == open.size()) {
+                open.add(child.newBranch());
+                previous.add(null);
+            }
+
+            Branch<K,V> branch = open.get(level).asBranch();
+            if(branch.size() >= target(branch)) {
+                roll(level);
+                branch = open.get(level).asBranch();
+            }
+
+            branch.sizeUp(1);
+            branch.put(branch.lastIndex(), child);
+        }
+
+        //the open nodes form the right spine, fix any that are underfull against their left neighbor
+        Node<K,V> finish() {
+            for(int level = 0; level < open.size() - 1; ++level) {
+                final Node<K,V> node = open.get(level);
+                if(rebalance(previous.get(level), node)) {
+                    append(level + 1, node);
+                }
+            }
+
+            Node<K,V> root = open.get(open.size() - 1);
+            while(root.isBranch() && root.size() == 1) {
+                final Node<K,V> child = root.asBranch().child(0);
+                root.done();
+                root = child;
+            }
+
+            return root;
+        }
+    }
+
+    //cursors find their place again by key, which a multimap can't do
+    public Cursor<K,V> cursor() {
+        checkUnique();
+        return new TreeCursor();
+    }
+
+    //keeps its own path so seeks climb only as far as the target key needs, the cursor
+    //key is kept to find the position again if the tree changed through something else
+    private class TreeCursor implements Cursor<K,V> {
+        private final Traversal.ArrayTraversal<K,V> path = Traversal.makeReusable();
+        private long expected = mods;
+        private K at = null;
+
+        private void sync() {
+            if(expected != mods) {
+                path.reset();
+                if(at != null) {
+                    store.getRoot().traverse(path, at);
+                    settle();
+                }
+
+                expected = mods;
+            }
+        }
+
+        //lowest level whose node covers k, a bound decided at a level holds for every node above it
+        private int climb(final K k) {
+            int level = path.level();
+            boolean lowerOk = false;
+            boolean upperOk = false;
+            for(int i = path.level() - 1; i >= 0 && !(lowerOk && upperOk); --i) {
+                final Traversal.Step<K,V> step = path.get(i);
+                final Branch<K,V> branch = step.node().asBranch();
+                final int index = step.index();
+                if(!lowerOk && index > 0) {
+                    if(order.compare(branch.key(index), k) <= 0) {
+                        lowerOk = true;
+                    }
+                    else {
+                        level = i;
+                    }
+                }
+
+                if(!upperOk && index + 1 < branch.size()) {
+                    if(order.compare(k, branch.key(index + 1)) < 0) {
+                        upperOk = true;
+                    }
+                    else {
+                        level = i;
+                    }
+                }
+            }
+
+            return level;
+        }
+
+        //leaves the path on the leaf for k with the raw search index
+        private void locate(final K k) {
+            sync();
+            if(path.isEmpty()) {
+                store.getRoot().traverse(path, k);
+                return;
+            }
+
+            final int level = climb(k);
+            while(path.level() > level) {
+                path.pop();
+            }
+
+            final Node<K,V> node = path.pop().node();
+            node.traverse(path, k);
+        }
+
+        //moves from a raw search index to the entry at or after it
+        private boolean settle() {
+            final int index = path.index();
+            if(index >= 0) {
+                at = path.leaf().key(index);
+                return true;
+            }
+
+            path.positionInsert();
+            if(path.index() < path.leaf().size()) {
+                at = path.leaf().key(path.index());
+            }
+            else if(nextLeaf(path.leaf()) != null) {
+                path.forward();
+                at = path.leaf().key(path.index());
+            }
+            else {
+                at = null;
+            }
+
+            return false;
+        }
+
+        public boolean seek(final K k) {
+            locate(k);
+            return settle();
+        }
+
+        public boolean first() {
+            sync();
+            path.reset();
+            store.getRoot().leftTraverse(path);
+            path.current().index(0);
+            at = path.leaf().size() > 0 ? path.leaf().key(0) : null;
+            return at != null;
+        }
+
+        public boolean last() {
+            sync();
+            path.reset();
+            store.getRoot().rightTraverse(path);
+            path.current().index(path.leaf().size() - 1);
+            at = path.leaf().size() > 0 ? path.leaf().lastKey() : null;
+            return at != null;
+        }
+
+        public boolean isValid() {
+            sync();
+            return at != null;
+        }
+
+        private void check() {
+            if(!isValid()) {
+                throw new NoSuchElementException("cursor is not on an entry");
+            }
+        }
+
+        public K key() {
+            check();
+            return at;
+        }
+
+        public V value() {
+            check();
+            return path.leaf().value(path.index());
+        }
+
+        public boolean next() {
+            sync();
+            if(at == null) {
+                return false;
+            }
+
+            final Leaf<K,V> leaf = path.leaf();
+            if(path.index() + 1 < leaf.size()) {
+                path.current().index(path.index() + 1);
+            }
+            else if(nextLeaf(leaf) != null) {
+                path.forward();
+            }
+            else {
+                at = null;
+                return false;
+            }
+
+            at = path.leaf().key(path.index());
+            return true;
+        }
+
+        public boolean prev() {
+            sync();
+            if(at == null) {
+                return false;
+            }
+
+            final Leaf<K,V> leaf = path.leaf();
+            if(path.index() > 0) {
+                path.current().index(path.index() - 1);
+            }
+            else if(prevLeaf(leaf) != null) {
+                path.previous();
+            }
+            else {
+                at = null;
+                return false;
+            }
+
+            at = path.leaf().key(path.index());
+            return true;
+        }
+
+        //when only the leaf level was touched the path above it is intact and just the leaf is put back
+        public V put(final K k, final V v) {
+            locate(k);
+            own(path);
+            expected = mods;
+            final Leaf<K,V> leaf = path.leaf();
+            if(path.index() >= 0) {
+                final V ret = leaf.value(path.index());
+                leaf.put(path.index(), k, v);
+                publish();
+                at = k;
+                return ret;
+            }
+
+            final int ancestors = path.level();
+            final boolean inPlace = !leaf.isFull();
+            BplusTree.this.put(path, k, v);
+            if(inPlace && path.size() == ancestors) {
+                path.add(leaf, leaf.search(k));
+            }
+            else {
+                store.getRoot().traverse(path.reset(), k);
+            }
+
+            at = k;
+            expected = mods;
+            return null;
+        }
+
+        //removes the entry under the cursor and moves to the entry after it
+        public V remove() {
+            check();
+            own(path);
+            expected = mods;
+            final Leaf<K,V> leaf = path.leaf();
+            final int index = path.index();
+            final int ancestors = path.level();
+            final boolean inPlace = leaf == store.getRoot() || leaf.isAboveMinLimit();
+            final K after;
+            if(index + 1 < leaf.size()) {
+                after = leaf.key(index + 1);
+            }
+            else {
+                after = leaf.next() != null ? leaf.next().key(0) : null;
+            }
+
+            final V ret = delete(path);
+            expected = mods;
+            if(inPlace && path.size() == ancestors) {
+                path.add(leaf, index);
+                if(index == leaf.size()) {
+                    path.current().index(Node.insertIndex(index));
+                }
+
+                settle();
+            }
+            else if(after != null) {
+                path.reset();
+                store.getRoot().traverse(path, after);
+                settle();
+            }
+            else {
+                path.reset();
+                at = null;
+            }
+
+            return ret;
+        }
+    }
+
+    //primitive specializations, only for stores whose nodes implement the matching primitive interfaces
+    private LongLeaf longLeaf(final long k) {
+        Node<K,V> node = store.getRoot();
+        while(node.isBranch()) {
+            node = node.asBranch().child(((LongNode) node).navigateLong(k));
+        }
+
+        return (LongLeaf) node;
+    }
+
+    //a multimap goes through value() for the first entry of k
+    public long getLong(final long k) {
+        if(multimap) {
+            final Optional<V> v = value(store.getKeyType().cast(k));
+            return ((Number) v.orElseThrow(() -> new NoSuchElementException("key not found"))).longValue();
+        }
+
+        final LongLeaf leaf = longLeaf(k);
+        final int index = leaf.searchLong(k);
+        if(index < 0) {
+            throw new NoSuchElementException("key not found");
+        }
+
+        return leaf.longValue(index);
+    }
+
+    public long getLong(final long k, final long onEmpty) {
+        if(multimap) {
+            final Optional<V> v = value(store.getKeyType().cast(k));
+            return v.isPresent() ? ((Number) v.get()).longValue() : onEmpty;
+        }
+
+        final LongLeaf leaf = longLeaf(k);
+        final int index = leaf.searchLong(k);
+        return index >= 0 ? leaf.longValue(index) : onEmpty;
+    }
+
+    public boolean containsLong(final long k) {
+        return longLeaf(k).searchLong(k) >= 0;
+    }
+
+    public void putLong(final long k, final long v) {
+        if(multimap || copyOnWrite) {
+            put(store.getKeyType().cast(k), store.getValueType().cast(v));
+            return;
+        }
+
+        final LongLeaf leaf = longLeaf(k);
+        final int searchIndex = leaf.searchLong(k);
+        if(searchIndex >= 0) {
+            leaf.longValue(searchIndex, v);
+            return;
+        }
+
+        //only simple inserts stay primitive, anything touching ancestors or counts goes through put()
+        final Node<?,?> node = (Node<?,?>) leaf;
+        final int index = Node.insertIndex(searchIndex);
+        if(index > 0 && !node.isFull() && !store.isCounted()) {
+            node.sizeUp(1).shiftRight(index, 1);
+            leaf.putLong(index, k, v);
+            count(1);
+            return;
+        }
+
+        put(store.getKeyType().cast(k), store.getValueType().cast(v));
+    }
+
+    private IntLeaf intLeaf(final int k) {
+        Node<K,V> node = store.getRoot();
+        while(node.isBranch()) {
+            node = node.asBranch().child(((IntNode) node).navigateInt(k));
+        }
+
+        return (IntLeaf) node;
+    }
+
+    //a multimap goes through value() for the first entry of k
+    public int getInt(final int k) {
+        if(multimap) {
+            final Optional<V> v = value(store.getKeyType().cast(k));
+            return ((Number) v.orElseThrow(() -> new NoSuchElementException("key not found"))).intValue();
+        }
+
+        final IntLeaf leaf = intLeaf(k);
+        final int index = leaf.searchInt(k);
+        if(index < 0) {
+            throw new NoSuchElementException("key not found");
+        }
+
+        return leaf.intValue(index);
+    }
+
+    public int getInt(final int k, final int onEmpty) {
+        if(multimap) {
+            final Optional<V> v = value(store.getKeyType().cast(k));
+            return v.isPresent() ? ((Number) v.get()).intValue() : onEmpty;
+        }
+
+        final IntLeaf leaf = intLeaf(k);
+        final int index = leaf.searchInt(k);
+        return index >= 0 ? leaf.intValue(index) : onEmpty;
+    }
+
+    public boolean containsInt(final int k) {
+        return intLeaf(k).searchInt(k) >= 0;
+    }
+
+    public void putInt(final int k, final int v) {
+        if(multimap || copyOnWrite) {
+            put(store.getKeyType().cast(k), store.getValueType().cast(v));
+            return;
+        }
+
+        final IntLeaf leaf = intLeaf(k);
+        final int searchIndex = leaf.searchInt(k);
+        if(searchIndex >= 0) {
+            leaf.intValue(searchIndex, v);
+            return;
+        }
+
+        //only simple inserts stay primitive, anything touching ancestors or counts goes through put()
+        final Node<?,?> node = (Node<?,?>) leaf;
+        final int index = Node.insertIndex(searchIndex);
+        if(index > 0 && !node.isFull() && !store.isCounted()) {
+            node.sizeUp(1).shiftRight(index, 1);
+            leaf.putInt(index, k, v);
+            count(1);
+            return;
+        }
+
+        put(store.getKeyType().cast(k), store.getValueType().cast(v));
+    }
+
+    private DoubleLeaf doubleLeaf(final double k) {
+        Node<K,V> node = store.getRoot();
+        while(node.isBranch()) {
+            node = node.asBranch().child(((DoubleNode) node).navigateDouble(k));
+        }
+
+        return (DoubleLeaf) node;
+    }
+
+    //a multimap goes through value() for the first entry of k
+    public double getDouble(final double k) {
+        if(multimap) {
+            final Optional<V> v = value(store.getKeyType().cast(k));
+            return ((Number) v.orElseThrow(() -> new NoSuchElementException("key not found"))).doubleValue();
+        }
+
+        final DoubleLeaf leaf = doubleLeaf(k);
+        final int index = leaf.searchDouble(k);
+        if(index < 0) {
+            throw new NoSuchElementException("key not found");
+        }
+
+        return leaf.doubleValue(index);
+    }
 
-                tlWorking.get().addDone(current);
-            }
+    public double getDouble(final double k, final double onEmpty) {
+        if(multimap) {
+            final Optional<V> v = value(store.getKeyType().cast(k));
+            return v.isPresent() ? ((Number) v.get()).doubleValue() : onEmpty;
+        }
+
+        final DoubleLeaf leaf = doubleLeaf(k);
+        final int index = leaf.searchDouble(k);
+        return index >= 0 ? leaf.doubleValue(index) : onEmpty;
+    }
+
+    public boolean containsDouble(final double k) {
+        return doubleLeaf(k).searchDouble(k) >= 0;
+    }
+
+    public void putDouble(final double k, final double v) {
+        if(multimap || copyOnWrite) {
+            put(store.getKeyType().cast(k), store.getValueType().cast(v));
+            return;
         }
+
+        final DoubleLeaf leaf = doubleLeaf(k);
+        final int searchIndex = leaf.searchDouble(k);
+        if(searchIndex >= 0) {
+            leaf.doubleValue(searchIndex, v);
+            return;
+        }
+
+        //only simple inserts stay primitive, anything touching ancestors or counts goes through put()
+        final Node<?,?> node = (Node<?,?>) leaf;
+        final int index = Node.insertIndex(searchIndex);
+        if(index > 0 && !node.isFull() && !store.isCounted()) {
+            node.sizeUp(1).shiftRight(index, 1);
+            leaf.putDouble(index, k, v);
+            count(1);
+            return;
+        }
+
+        put(store.getKeyType().cast(k), store.getValueType().cast(v));
     }
 
     //jdk interface methods
     public void clear() {
-        depthFirst(store.getRoot(), Node<K,V>::done);
-        store.setRoot(store.getRoot().newLeaf());
+        checkFrozen();
+        ++mods;
+        spine.clear();
+        final Node<K,V> root = store.getRoot();
+        store.setRoot(root.newLeaf());
+        store.setEntryCount(0);
+        if(!copyOnWrite) {
+            depthFirst(root, this::retire);
+            reclaim();
+        }
+
+        publish();
     }
 
     public Comparator<? super K> comparator() {
-        return null;
+        return store.getComparator();
     }
 
     public boolean containsKey(final Object o) {
         final K k = store.getKeyType().cast(o);
-        return store.getRoot().traverse(k).isMatch();
+        return leaf(k).search(k) >= 0;
     }
 
     public boolean containsValue(final Object val) {
@@ -413,14 +2140,26 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         return false;
     }
 
+    //the first value of k in a multimap
     public V get(final Object o) {
-        final Optional<V> opt = value(store.getKeyType().cast(o));
-        return opt.isPresent() ? opt.get() : null;
+        final K k = store.getKeyType().cast(o);
+        if(multimap) {
+            return value(k).orElse(null);
+        }
+
+        final Leaf<K,V> leaf = leaf(k);
+        final int index = leaf.search(k);
+        return index >= 0 ? leaf.value(index) : null;
     }
 
     public void putAll(final Map<? extends K, ? extends V> map) {
-        for(Map.Entry<? extends K,? extends V> entry : map.entrySet()) {
-            put(entry.getKey(), entry.getValue());
+        if(map instanceof SortedMap && Objects.equals(((SortedMap<?,?>) map).comparator(), comparator())) {
+            putAllSorted(map.entrySet().iterator());
+        }
+        else {
+            final List<Map.Entry<? extends K,? extends V>> entries = new ArrayList<>(map.entrySet());
+            entries.sort((lhs, rhs) -> order.compare(lhs.getKey(), rhs.getKey()));
+            putAllSorted(entries.iterator());
         }
     }
 
@@ -428,6 +2167,146 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         return delete(store.getKeyType().cast(o));
     }
 
+    //the first entry of k holding val, the only one outside of a multimap
+    public boolean remove(final Object o, final Object val) {
+        final K k = store.getKeyType().cast(o);
+        final Traversal<K,V> tr = tlWorking.get().traverse(k);
+        while(tr.isMatch() && tr.leaf().compare(tr.index(), k) == 0) {
+            if(Objects.equals(tr.value(null), val)) {
+                delete(tr);
+                return true;
+            }
+            else if(!tr.hasForward()) {
+                break;
+            }
+
+            tr.forward();
+        }
+
+        return false;
+    }
+
+    //read-modify-write in one descent, values are replaced in the leaf and only new keys go through the insert path.
+    //callbacks run between the read and the write, they may read the tree but not change it.
+    //a multimap has no single value to update, these all throw for one
+    public V compute(final K k, final BiFunction<? super K,? super V,? extends V> f) {
+        checkUnique();
+        final Working working = tlWorking.get();
+        final Traversal<K,V> tr = working.traverseUpdate(k);
+        final long seen = mods;
+        final long updates = working.updates;
+        final V old = (tr.index() >= 0) ? tr.value(null) : null;
+        return write(tr, seen, updates, k, f.apply(k, old));
+    }
+
+    public V computeIfAbsent(final K k, final Function<? super K,? extends V> f) {
+        checkUnique();
+        final Working working = tlWorking.get();
+        final Traversal<K,V> tr = working.traverseUpdate(k);
+        final V old = (tr.index() >= 0) ? tr.value(null) : null;
+        if(old != null) {
+            return old;
+        }
+
+        final long seen = mods;
+        final long updates = working.updates;
+        final V v = f.apply(k);
+        return (v == null) ? null : write(tr, seen, updates, k, v);
+    }
+
+    public V computeIfPresent(final K k, final BiFunction<? super K,? super V,? extends V> f) {
+        checkUnique();
+        final Working working = tlWorking.get();
+        final Traversal<K,V> tr = working.traverseUpdate(k);
+        final V old = (tr.index() >= 0) ? tr.value(null) : null;
+        if(old == null) {
+            return null;
+        }
+
+        final long seen = mods;
+        final long updates = working.updates;
+        return write(tr, seen, updates, k, f.apply(k, old));
+    }
+
+    public V merge(final K k, final V v, final BiFunction<? super V,? super V,? extends V> f) {
+        checkUnique();
+        Objects.requireNonNull(v);
+        final Working working = tlWorking.get();
+        final Traversal<K,V> tr = working.traverseUpdate(k);
+        final V old = (tr.index() >= 0) ? tr.value(null) : null;
+        if(old == null) {
+            return write(tr, mods, working.updates, k, v);
+        }
+
+        final long seen = mods;
+        final long updates = working.updates;
+        return write(tr, seen, updates, k, f.apply(old, v));
+    }
+
+    public V putIfAbsent(final K k, final V v) {
+        checkUnique();
+        final Working working = tlWorking.get();
+        final Traversal<K,V> tr = working.traverseUpdate(k);
+        final V old = (tr.index() >= 0) ? tr.value(null) : null;
+        if(old == null) {
+            write(tr, mods, working.updates, k, v);
+        }
+
+        return old;
+    }
+
+    public V replace(final K k, final V v) {
+        checkUnique();
+        final Traversal<K,V> tr = tlWorking.get().traverseUpdate(k);
+        if(tr.index() < 0) {
+            return null;
+        }
+
+        final V old = tr.value(null);
+        own(tr);
+        tr.leaf().put(tr.index(), k, v);
+        publish();
+        return old;
+    }
+
+    public boolean replace(final K k, final V oldValue, final V newValue) {
+        checkUnique();
+        final Traversal<K,V> tr = tlWorking.get().traverseUpdate(k);
+        if(tr.index() < 0 || !Objects.equals(tr.value(null), oldValue)) {
+            return false;
+        }
+
+        own(tr);
+        tr.leaf().put(tr.index(), k, newValue);
+        publish();
+        return true;
+    }
+
+    //a null value removes k. a nested update on this thread only moved the position, so it is looked up again
+    private V write(final Traversal<K,V> tr, final long seen, final long updates, final K k, final V v) {
+        if(mods != seen) {
+            throw new ConcurrentModificationException("tree changed while computing a value for " + k);
+        }
+
+        final Working working = tlWorking.get();
+        final Traversal<K,V> at = (working.updates == updates) ? tr : working.traverseUpdate(k);
+        if(at.index() >= 0) {
+            if(v == null) {
+                delete(at);
+            }
+            else {
+                own(at);
+                at.leaf().put(at.index(), k, v);
+                publish();
+            }
+        }
+        else if(v != null && !(appendMode && append(k, v))) {
+            put(at, k, v);
+        }
+
+        return v;
+    }
+
     public int size() {
         return (int) longSize();
     }
@@ -449,13 +2328,19 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     private Traversal<K,V> _ceiling(final K k) {
-        final Traversal<K,V> traversal = store.getRoot().traverse(k);
+        final Traversal<K,V> traversal = locate(k, false);
         if(traversal.isMatch()) {
             return traversal;
         }
 
+        return _next(traversal);
+    }
+
+    //the entry at the insert position, which is the first entry of the next leaf when k goes at the end of its leaf
+    private Traversal<K,V> _next(final Traversal<K,V> traversal) {
         traversal.positionInsert();
-        return traversal.isMatch() ? traversal : traversal.empty();
+        traversal.current().previous();
+        return traversal.hasForward() ? traversal.forward() : traversal.empty();
     }
     
     public K ceilingKey(final K k) {
@@ -467,11 +2352,12 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     public NavigableSet<K> descendingKeySet() {
-        throw new UnsupportedOperationException();
+        return descendingMap().navigableKeySet();
     }
 
+    //live like the key set, it reads the tree again on every call
     public NavigableMap<K,V> descendingMap() {
-        throw new UnsupportedOperationException();
+        return new DescendingMap(this);
     }
 
     public K firstKey() {
@@ -487,7 +2373,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     private Traversal<K,V> _floor(final K k) {
-        final Traversal<K,V> traversal = store.getRoot().traverse(k);
+        final Traversal<K,V> traversal = locate(k, true);
         if(traversal.isMatch()) {
             return traversal;
         }
@@ -505,14 +2391,13 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     private Traversal<K,V> _higher(final K k) {
-        final Traversal<K,V> traversal = store.getRoot().traverse(k);
+        final Traversal<K,V> traversal = locate(k, true);
 
         if(traversal.isMatch()) {
             return traversal.hasForward() ? traversal.forward() : traversal.empty();
         }
 
-        traversal.positionInsert();
-        return traversal.isMatch() ? traversal : traversal.empty();
+        return _next(traversal);
     }
 
     public K higherKey(final K k) {
@@ -524,16 +2409,16 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     public SortedMap<K,V> headMap(final K toKey) {
-        return boundMap(store.getRoot().leftTraverse(), store.getRoot().traverse(toKey)); 
+        return boundMap(store.getRoot().leftTraverse(), locate(toKey, false));
     }
 
     public NavigableMap<K,V> headMap(final K toKey, final boolean inclusive) {
         return boundMap(store.getRoot().leftTraverse(), true,
-                        store.getRoot().traverse(toKey), inclusive);
+                        locate(toKey, inclusive), inclusive);
     }
 
     private Traversal<K,V> _lower(final K k) {
-        final Traversal<K,V> traversal = store.getRoot().traverse(k);
+        final Traversal<K,V> traversal = locate(k, false);
         if(traversal.isMatch()) {
             return traversal.hasPrevious() ? traversal.previous() : traversal.empty();
         }
@@ -551,23 +2436,23 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     public SortedMap<K,V> tailMap(final K fromKey) {
-        return boundMap(store.getRoot().traverse(fromKey), store.getRoot().rightTraverse());
+        return boundMap(locate(fromKey, false), store.getRoot().rightTraverse());
     }
 
     public NavigableMap<K,V> tailMap(final K fromKey, final boolean inclusive) {
-        return boundMap(store.getRoot().traverse(fromKey), inclusive,
+        return boundMap(locate(fromKey, !inclusive), inclusive,
                         store.getRoot().rightTraverse(), true);
     }
 
     public SortedMap<K,V> subMap(final K fromKey, final K toKey) {
         checkRange(fromKey, toKey);
-        return boundMap(store.getRoot().traverse(fromKey), store.getRoot().traverse(toKey));
+        return boundMap(locate(fromKey, false), locate(toKey, false));
     }
 
     public NavigableMap<K,V> subMap(final K fromKey, final boolean fromInclusive,
                                     final K toKey, final boolean toInclusive) {
-        return boundMap(store.getRoot().traverse(fromKey), fromInclusive,
-                        store.getRoot().traverse(toKey), toInclusive);
+        return boundMap(locate(fromKey, !fromInclusive), fromInclusive,
+                        locate(toKey, toInclusive), toInclusive);
     }
     
     private Traversal<K,V> _last() {
@@ -587,7 +2472,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     public NavigableSet<K> navigableKeySet() {
-        throw new UnsupportedOperationException();
+        return new NavigableKeys(this);
     }
 
     public Map.Entry<K,V> pollFirstEntry() {
@@ -595,8 +2480,10 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
             return null;
         }
 
-        final Map.Entry<K,V> e = store.getRoot().leftTraverse().forward().entry(null);
-        delete(e.getKey());
+        final Traversal<K,V> tr = tlWorking.get().path.reset();
+        store.getRoot().leftTraverse(tr);
+        final Map.Entry<K,V> e = tr.forward().entry(null);
+        delete(tr);
         return e;
     }
 
@@ -605,8 +2492,10 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
             return null;
         }
 
-        final Map.Entry<K,V> e = store.getRoot().rightTraverse().positionInsert().previous().entry(null);
-        delete(e.getKey());
+        final Traversal<K,V> tr = tlWorking.get().path.reset();
+        store.getRoot().rightTraverse(tr);
+        final Map.Entry<K,V> e = tr.positionInsert().previous().entry(null);
+        delete(tr);
         return e;
     }
 
@@ -636,21 +2525,133 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     private void checkRange(final K fromKey, final K toKey) {
-        if(fromKey.compareTo(toKey) > 0) {
+        if(order.compare(fromKey, toKey) > 0) {
             throw new IllegalArgumentException("fromKey is greater than toKey");
         }
     }
 
     //views
-    private class KeysIterator implements Iterator<K> {
-        private final Traversal<K,V> traversal;
-        
-        KeysIterator() {
-            this.traversal = store.getRoot().leftTraverse();
+    //walks leaves by their sibling links, or by descent in a snapshot, optionally stopping after the entry at an upper position
+    private class LeafScan {
+        private Leaf<K,V> leaf;
+        private int index;
+        private final Leaf<K,V> lastLeaf;
+        private final int lastIndex;
+        private final Epochs.Pin pin = (epochs != null) ? epochs.pin() : null;
+
+        LeafScan() {
+            this.leaf = store.getRoot().leftTraverse().leaf();
+            this.index = -1;
+            this.lastLeaf = null;
+            this.lastIndex = -1;
+        }
+
+        LeafScan(final BoundMap map) {
+            this.leaf = map.lower.leaf();
+            this.index = map.lower.index();
+            this.lastLeaf = map.isEmpty() ? leaf : map.upper.leaf();
+            this.lastIndex = map.isEmpty() ? index : map.upper.index();
+        }
+
+        //the pin goes as soon as the scan runs out
+        boolean hasNext() {
+            final boolean ret = !(lastLeaf != null && index == lastIndex && leaf.equals(lastLeaf))
+                && (index + 1 < leaf.size() || nextLeaf(leaf) != null);
+            if(!ret && pin != null) {
+                pin.release();
+            }
+
+            return ret;
+        }
+
+        //every iterator's next comes through here
+        Leaf<K,V> forward() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if(index + 1 < leaf.size()) {
+                ++index;
+            }
+            else {
+                leaf = nextLeaf(leaf);
+                index = 0;
+            }
+
+            return leaf;
+        }
+
+        K key() { return forward().key(index); }
+        V value() { return forward().value(index); }
+        Map.Entry<K,V> entry() { return forward().entry(index); }
+    }
+
+    //the same walk backwards over the previous links, index is one past the entry returned next
+    private class ReverseScan {
+        private Leaf<K,V> leaf;
+        private int index;
+        private final Leaf<K,V> firstLeaf;
+        private final int firstIndex;
+        private final Epochs.Pin pin = (epochs != null) ? epochs.pin() : null;
+
+        ReverseScan() {
+            this.leaf = store.getRoot().rightTraverse().leaf();
+            this.index = leaf.size();
+            this.firstLeaf = null;
+            this.firstIndex = -1;
+        }
+
+        //the lower bound is exclusive, nothing at or before it is returned
+        ReverseScan(final BoundMap map) {
+            this.leaf = map.upper.leaf();
+            this.index = map.upper.index() + 1;
+            this.firstLeaf = map.isEmpty() ? leaf : map.lower.leaf();
+            this.firstIndex = map.isEmpty() ? index - 1 : map.lower.index();
+        }
+
+        boolean hasNext() {
+            final boolean ret;
+            if(index > 0) {
+                ret = !(leaf.equals(firstLeaf) && index - 1 <= firstIndex);
+            }
+            else {
+                final Leaf<K,V> prev = prevLeaf(leaf);
+                ret = prev != null && !(prev.equals(firstLeaf) && prev.size() - 1 <= firstIndex);
+            }
+
+            if(!ret && pin != null) {
+                pin.release();
+            }
+
+            return ret;
+        }
+
+        Leaf<K,V> back() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if(index > 0) {
+                --index;
+            }
+            else {
+                leaf = prevLeaf(leaf);
+                index = leaf.size() - 1;
+            }
+
+            return leaf;
         }
 
-        public boolean hasNext() { return traversal.hasForward(); }
-        public K next() { return traversal.forward().key(null); }
+        K key() { return back().key(index); }
+        V value() { return back().value(index); }
+        Map.Entry<K,V> entry() { return back().entry(index); }
+    }
+
+    private class KeysIterator implements Iterator<K> {
+        private final LeafScan scan = new LeafScan();
+
+        public boolean hasNext() { return scan.hasNext(); }
+        public K next() { return scan.key(); }
     }
 
     private class KeysSet extends AbstractSet<K> {
@@ -665,14 +2666,10 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     private class ValuesIterator implements Iterator<V> {
-        private final Traversal<K,V> traversal;
-        
-        ValuesIterator() {
-            this.traversal = store.getRoot().leftTraverse();
-        }
+        private final LeafScan scan = new LeafScan();
 
-        public boolean hasNext() { return traversal.hasForward(); }
-        public V next() { return traversal.forward().value(null); }
+        public boolean hasNext() { return scan.hasNext(); }
+        public V next() { return scan.value(); }
     }
 
     private class ValuesCollection extends AbstractCollection<V> {
@@ -681,14 +2678,10 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     private class EntriesIterator implements Iterator<Map.Entry<K,V>> {
-        private final Traversal<K,V> traversal;
-
-        EntriesIterator() {
-            this.traversal = store.getRoot().leftTraverse();
-        }
+        private final LeafScan scan = new LeafScan();
 
-        public boolean hasNext() { return traversal.hasForward(); }
-        public Map.Entry<K,V> next() { return traversal.forward().entry(null); }
+        public boolean hasNext() { return scan.hasNext(); }
+        public Map.Entry<K,V> next() { return scan.entry(); }
     }
 
     private class EntriesSet extends AbstractSet<Map.Entry<K,V>> {
@@ -702,6 +2695,10 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
             }
 
             final Map.Entry entry = (Map.Entry) o;
+            if(multimap) {
+                return getAll(store.getKeyType().cast(entry.getKey())).contains(entry.getValue());
+            }
+
             final Optional<V> opt = value(store.getKeyType().cast(entry.getKey()));
             return (opt.isPresent() && opt.get().equals(entry.getValue()));
         }
@@ -713,16 +2710,14 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     private class BoundKeysIterator implements Iterator<K> {
-        private final Traversal<K,V> upper;
-        private final Traversal<K,V> tr;
+        private final LeafScan scan;
         
         BoundKeysIterator(final BoundMap map) {
-            this.upper = map.upper.immutable();
-            this.tr = map.lower.mutable();
+            this.scan = new LeafScan(map);
         }
 
-        public boolean hasNext() { return tr.hasForward() && tr.compareTo(upper) < 0; }
-        public K next() { return tr.forward().key(null); }
+        public boolean hasNext() { return scan.hasNext(); }
+        public K next() { return scan.key(); }
     }
 
     private class BoundKeysSet extends AbstractSet<K> {
@@ -732,8 +2727,11 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
             this.map = map;
         }
         
-        public int size() { return iteratorCount(iterator()); }
+        public int size() { return map.size(); }
         public Iterator<K> iterator() { return new BoundKeysIterator(map); }
+
+        @Override
+        public void clear() { map.clear(); }
         
         @Override
         public boolean contains(final Object o) {
@@ -747,16 +2745,14 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
     
     private class BoundValuesIterator implements Iterator<V> {
-        private final Traversal<K,V> upper;
-        private final Traversal<K,V> tr;
+        private final LeafScan scan;
         
         BoundValuesIterator(final BoundMap map) {
-            upper = map.upper.immutable();
-            tr = map.lower.mutable();
+            scan = new LeafScan(map);
         }
         
-        public boolean hasNext() { return tr.hasForward() && tr.compareTo(upper) < 0; }
-        public V next() { return tr.forward().value(null); }
+        public boolean hasNext() { return scan.hasNext(); }
+        public V next() { return scan.value(); }
     }
 
     private class BoundValuesCollection extends AbstractCollection<V> {
@@ -766,21 +2762,22 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
             this.map = map;
         }
 
-        public int size() { return iteratorCount(iterator()); }
+        public int size() { return map.size(); }
         public Iterator<V> iterator() { return new BoundValuesIterator(map); }
+
+        @Override
+        public void clear() { map.clear(); }
     }
 
     private class BoundEntriesIterator implements Iterator<Map.Entry<K,V>> {
-        private final Traversal<K,V> upper;
-        private final Traversal<K,V> tr;
+        private final LeafScan scan;
 
         BoundEntriesIterator(final BoundMap map) {
-            upper = map.upper.immutable();
-            tr = map.lower.mutable();
+            scan = new LeafScan(map);
         }
 
-        public boolean hasNext() { return tr.hasForward() && tr.compareTo(upper) < 0; }
-        public Map.Entry<K,V> next() { return tr.forward().entry(null); }
+        public boolean hasNext() { return scan.hasNext(); }
+        public Map.Entry<K,V> next() { return scan.entry(); }
     }
 
     private class BoundEntriesSet extends AbstractSet<Map.Entry<K,V>> {
@@ -791,13 +2788,18 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
         
         public int size() {
-            return iteratorCount(iterator());
+            return map.size();
         }
         
         public Iterator<Map.Entry<K,V>> iterator() {
             return new BoundEntriesIterator(map);
         }
 
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
         @Override
         public boolean contains(final Object o) {
             if(!(o instanceof Map.Entry)) {
@@ -822,11 +2824,9 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
 
     private Traversal<K,V> fixLowerBounds(final Traversal<K,V> lower, final boolean inclusive) {
         if(!lower.isMatch()) {
+            //the first entry past a missing key sits at the insert position either way
             lower.positionInsert();
-            if(inclusive) {
-                lower.current().previous();
-            }
-
+            lower.current().previous();
             return lower;
         }
         else if(inclusive) {
@@ -847,8 +2847,8 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
     }
 
     private class BoundMap implements Map<K,V>, SortedMap<K,V>, NavigableMap<K,V> {
-        private final Traversal<K,V> lower;
-        private final Traversal<K,V> upper;
+        private Traversal<K,V> lower;
+        private Traversal<K,V> upper;
 
         BoundMap(final Traversal<K,V> lower, final Traversal<K,V> upper) {
             this.lower = lower.immutable();
@@ -872,7 +2872,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
 
         private <R> R checkBounds(final K k, final Function<Traversal<K,V>, R> func) {
-            final Traversal<K,V> tr = store.getRoot().traverse(k);
+            final Traversal<K,V> tr = locate(k, false);
             if(lower.compareTo(tr) < 0 && tr.compareTo(upper) <= 0) {
                 return func.apply(tr);
             }
@@ -882,7 +2882,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
 
         private <R> R checkBounds(final K k, final R ret, final Function<Traversal<K,V>, R> func) {
-            final Traversal<K,V> tr = store.getRoot().traverse(k);
+            final Traversal<K,V> tr = locate(k, false);
             if(lower.compareTo(tr) < 0 && tr.compareTo(upper) <= 0) {
                 return func.apply(tr);
             }
@@ -892,15 +2892,62 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
 
         public Comparator<? super K> comparator() {
-            return null;
+            return BplusTree.this.comparator();
         }
         
+        //the bounds are positions in the old tree, they are rebuilt around the gap the range left behind
         public void clear() {
-            throw new UnsupportedOperationException();
+            if(isEmpty()) {
+                return;
+            }
+
+            final K first = firstKey();
+            final K last = lastKey();
+            removeRange(first, true, last, true);
+            rebound(first, last);
+        }
+
+        private void rebound(final K first, final K last) {
+            lower = fixLowerBounds(locate(first, false), true).immutable();
+            upper = fixUpperBounds(locate(last, true), true).immutable();
+        }
+
+        //a narrower view, the new bounds have to stay inside these ones
+        private BoundMap narrow(final Traversal<K,V> newLower, final Traversal<K,V> newUpper) {
+            if(lower.compareTo(newLower) > 0 || newLower.compareTo(upper) > 0 ||
+               lower.compareTo(newUpper) > 0 || newUpper.compareTo(upper) > 0) {
+                throw new IllegalArgumentException("key not within bounds of map");
+            }
+
+            return new BoundMap(newLower, newUpper);
+        }
+
+        //positions found in the whole tree, moved inside the bounds or emptied
+        private Traversal<K,V> above(final Traversal<K,V> tr) {
+            if(tr.isEmpty() || isEmpty() || tr.compareTo(upper) > 0) {
+                return tr.empty();
+            }
+
+            return lower.compareTo(tr) < 0 ? tr : _first();
+        }
+
+        private Traversal<K,V> below(final Traversal<K,V> tr) {
+            if(tr.isEmpty() || isEmpty() || lower.compareTo(tr) >= 0) {
+                return tr.empty();
+            }
+
+            return tr.compareTo(upper) <= 0 ? tr : upper;
+        }
+
+        //the shared path if k is inside the bounds, null otherwise
+        private Traversal<K,V> within(final K k) {
+            final Traversal<K,V> tr = tlWorking.get().traverse(k);
+            return (lower.compareTo(tr) < 0 && tr.compareTo(upper) <= 0) ? tr : null;
         }
 
         public boolean containsKey(final Object o) {
-            return checkBounds(store.getKeyType().cast(o), false, (tr) -> tr.isMatch());
+            final Traversal<K,V> tr = within(store.getKeyType().cast(o));
+            return tr != null && tr.isMatch();
         }
 
         public boolean containsValue(final Object o) {
@@ -937,8 +2984,8 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
         
         public V get(final Object o) {
-            final Optional<V> opt = value(store.getKeyType().cast(o));
-            return opt.isPresent() ? opt.get() : null;
+            final Traversal<K,V> tr = within(store.getKeyType().cast(o));
+            return (tr != null && tr.isMatch()) ? tr.value(null) : null;
         }
 
         @Override
@@ -951,19 +2998,19 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
 
         public K ceilingKey(final K k) {
-            throw new UnsupportedOperationException();
+            return above(_ceiling(k)).key(null);
         }
         
         public Map.Entry<K,V> ceilingEntry(final K k) {
-            throw new UnsupportedOperationException();
+            return above(_ceiling(k)).entry(null);
         }
         
         public NavigableSet<K> descendingKeySet() {
-            throw new UnsupportedOperationException();
+            return descendingMap().navigableKeySet();
         }
         
         public NavigableMap<K,V> descendingMap() {
-            throw new UnsupportedOperationException();
+            return new DescendingMap(this);
         }
         
         private Traversal<K,V> _first() {
@@ -983,19 +3030,19 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
 
         public K floorKey(final K k) {
-            throw new UnsupportedOperationException();
+            return below(_floor(k)).key(null);
         }
         
         public Map.Entry<K,V> floorEntry(final K k) {
-            throw new UnsupportedOperationException();
+            return below(_floor(k)).entry(null);
         }
 
         public K higherKey(final K k) {
-            throw new UnsupportedOperationException();
+            return above(_higher(k)).key(null);
         }
         
         public Map.Entry<K,V> higherEntry(final K k) {
-            throw new UnsupportedOperationException();
+            return above(_higher(k)).entry(null);
         }
 
         public boolean isEmpty() {
@@ -1007,7 +3054,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
 
         public NavigableMap<K,V> headMap(final K toKey, final boolean inclusive) {
-            throw new UnsupportedOperationException();
+            return narrow(lower, fixUpperBounds(locate(toKey, inclusive), inclusive));
         }
 
         public Set<K> keySet() {
@@ -1031,23 +3078,40 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
 
         public K lowerKey(final K k) {
-            throw new UnsupportedOperationException();
+            return below(_lower(k)).key(null);
         }
         
         public Map.Entry<K,V> lowerEntry(final K k) {
-            throw new UnsupportedOperationException();
+            return below(_lower(k)).entry(null);
         }
         
         public NavigableSet<K> navigableKeySet() {
-            throw new UnsupportedOperationException();
+            return new NavigableKeys(this);
         }
 
+        //the removal moves positions around, the bounds are found again by key
         public Map.Entry<K,V> pollFirstEntry() {
-            throw new UnsupportedOperationException();
+            if(isEmpty()) {
+                return null;
+            }
+
+            final Map.Entry<K,V> e = firstEntry();
+            final K last = lastKey();
+            delete(_first());
+            rebound(e.getKey(), last);
+            return e;
         }
         
         public Map.Entry<K,V> pollLastEntry() {
-            throw new UnsupportedOperationException();
+            if(isEmpty()) {
+                return null;
+            }
+
+            final Map.Entry<K,V> e = lastEntry();
+            final K first = firstKey();
+            delete(upper.mutable());
+            rebound(first, e.getKey());
+            return e;
         }
 
         public V put(final K k, final V v) {
@@ -1066,17 +3130,23 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
 
         public int size() {
-            return keySet().size();
+            if(!store.isCounted()) {
+                return iteratorCount(new BoundKeysIterator(this));
+            }
+
+            return isEmpty() ? 0 : (int) (rank(upper) - rank(lower));
         }
 
         public BoundMap subMap(final K fromKey, final K toKey) {
             checkRange(fromKey, toKey);
-            return checkBounds(fromKey, (tr1) -> { return checkBounds(toKey, (tr2) -> { return new BoundMap(tr1, tr2); }); });
+            return checkBounds(fromKey, (tr1) -> { return checkBounds(toKey, (tr2) -> { return boundMap(tr1, tr2); }); });
         }
 
         public NavigableMap<K,V> subMap(final K fromKey, final boolean fromInclusive,
                                         final K toKey, final boolean toInclusive) {
-            throw new UnsupportedOperationException();
+            checkRange(fromKey, toKey);
+            return narrow(fixLowerBounds(locate(fromKey, !fromInclusive), fromInclusive),
+                          fixUpperBounds(locate(toKey, toInclusive), toInclusive));
         }
 
         public BoundMap tailMap(final K k) {
@@ -1084,7 +3154,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
 
         public NavigableMap<K,V> tailMap(final K fromKey, final boolean inclusive) {
-            throw new UnsupportedOperationException();
+            return narrow(fixLowerBounds(locate(fromKey, !inclusive), inclusive), upper);
         }
         
         public Collection<V> values() {
@@ -1092,6 +3162,193 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
     }
 
+    private class DescendingKeysIterator implements Iterator<K> {
+        private final ReverseScan scan;
+
+        DescendingKeysIterator(final ReverseScan scan) {
+            this.scan = scan;
+        }
+
+        public boolean hasNext() { return scan.hasNext(); }
+        public K next() { return scan.key(); }
+    }
+
+    private class DescendingValuesIterator implements Iterator<V> {
+        private final ReverseScan scan;
+
+        DescendingValuesIterator(final ReverseScan scan) {
+            this.scan = scan;
+        }
+
+        public boolean hasNext() { return scan.hasNext(); }
+        public V next() { return scan.value(); }
+    }
+
+    private class DescendingEntriesIterator implements Iterator<Map.Entry<K,V>> {
+        private final ReverseScan scan;
+
+        DescendingEntriesIterator(final ReverseScan scan) {
+            this.scan = scan;
+        }
+
+        public boolean hasNext() { return scan.hasNext(); }
+        public Map.Entry<K,V> next() { return scan.entry(); }
+    }
+
+    //the tree or a bound map seen backwards, navigation swaps directions and iteration walks the previous links
+    private class DescendingMap extends AbstractMap<K,V> implements NavigableMap<K,V> {
+        private final NavigableMap<K,V> map;
+
+        DescendingMap(final NavigableMap<K,V> map) {
+            this.map = map;
+        }
+
+        private ReverseScan scan() {
+            return (map instanceof BplusTree.BoundMap) ? new ReverseScan((BoundMap) map) : new ReverseScan();
+        }
+
+        Iterator<K> keysIterator() {
+            return new DescendingKeysIterator(scan());
+        }
+
+        public Comparator<? super K> comparator() {
+            return Collections.reverseOrder(map.comparator());
+        }
+
+        public int size() { return map.size(); }
+        public boolean isEmpty() { return map.isEmpty(); }
+        public boolean containsKey(final Object o) { return map.containsKey(o); }
+        public V get(final Object o) { return map.get(o); }
+        public V put(final K k, final V v) { return map.put(k, v); }
+        public V remove(final Object o) { return map.remove(o); }
+        public void clear() { map.clear(); }
+
+        public K firstKey() { return map.lastKey(); }
+        public K lastKey() { return map.firstKey(); }
+        public Map.Entry<K,V> firstEntry() { return map.lastEntry(); }
+        public Map.Entry<K,V> lastEntry() { return map.firstEntry(); }
+        public Map.Entry<K,V> pollFirstEntry() { return map.pollLastEntry(); }
+        public Map.Entry<K,V> pollLastEntry() { return map.pollFirstEntry(); }
+
+        public K lowerKey(final K k) { return map.higherKey(k); }
+        public Map.Entry<K,V> lowerEntry(final K k) { return map.higherEntry(k); }
+        public K floorKey(final K k) { return map.ceilingKey(k); }
+        public Map.Entry<K,V> floorEntry(final K k) { return map.ceilingEntry(k); }
+        public K ceilingKey(final K k) { return map.floorKey(k); }
+        public Map.Entry<K,V> ceilingEntry(final K k) { return map.floorEntry(k); }
+        public K higherKey(final K k) { return map.lowerKey(k); }
+        public Map.Entry<K,V> higherEntry(final K k) { return map.lowerEntry(k); }
+
+        public NavigableMap<K,V> descendingMap() { return map; }
+        public NavigableSet<K> navigableKeySet() { return new NavigableKeys(this); }
+        public NavigableSet<K> descendingKeySet() { return map.navigableKeySet(); }
+        public Set<K> keySet() { return navigableKeySet(); }
+
+        public NavigableMap<K,V> subMap(final K fromKey, final boolean fromInclusive,
+                                        final K toKey, final boolean toInclusive) {
+            return new DescendingMap(map.subMap(toKey, toInclusive, fromKey, fromInclusive));
+        }
+
+        public NavigableMap<K,V> headMap(final K toKey, final boolean inclusive) {
+            return new DescendingMap(map.tailMap(toKey, inclusive));
+        }
+
+        public NavigableMap<K,V> tailMap(final K fromKey, final boolean inclusive) {
+            return new DescendingMap(map.headMap(fromKey, inclusive));
+        }
+
+        public SortedMap<K,V> subMap(final K fromKey, final K toKey) { return subMap(fromKey, true, toKey, false); }
+        public SortedMap<K,V> headMap(final K toKey) { return headMap(toKey, false); }
+        public SortedMap<K,V> tailMap(final K fromKey) { return tailMap(fromKey, true); }
+
+        public Collection<V> values() {
+            return new AbstractCollection<V>() {
+                public int size() { return map.size(); }
+                public Iterator<V> iterator() { return new DescendingValuesIterator(scan()); }
+                public void clear() { map.clear(); }
+            };
+        }
+
+        public Set<Map.Entry<K,V>> entrySet() {
+            return new AbstractSet<Map.Entry<K,V>>() {
+                public int size() { return map.size(); }
+                public Iterator<Map.Entry<K,V>> iterator() { return new DescendingEntriesIterator(scan()); }
+                public boolean contains(final Object o) { return map.entrySet().contains(o); }
+                public void clear() { map.clear(); }
+            };
+        }
+    }
+
+    //keys of the tree, a bound map or a descending map, everything but iteration is asked of the map
+    private class NavigableKeys extends AbstractSet<K> implements NavigableSet<K> {
+        private final NavigableMap<K,V> map;
+
+        NavigableKeys(final NavigableMap<K,V> map) {
+            this.map = map;
+        }
+
+        public Iterator<K> iterator() {
+            return (map instanceof BplusTree.DescendingMap) ? ((DescendingMap) map).keysIterator() : map.keySet().iterator();
+        }
+
+        public Iterator<K> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        public int size() { return map.size(); }
+        public boolean isEmpty() { return map.isEmpty(); }
+        public boolean contains(final Object o) { return map.containsKey(o); }
+        public void clear() { map.clear(); }
+
+        @Override
+        public boolean remove(final Object o) {
+            if(!map.containsKey(o)) {
+                return false;
+            }
+
+            map.remove(o);
+            return true;
+        }
+
+        public Comparator<? super K> comparator() { return map.comparator(); }
+        public K first() { return map.firstKey(); }
+        public K last() { return map.lastKey(); }
+        public K lower(final K k) { return map.lowerKey(k); }
+        public K floor(final K k) { return map.floorKey(k); }
+        public K ceiling(final K k) { return map.ceilingKey(k); }
+        public K higher(final K k) { return map.higherKey(k); }
+
+        public K pollFirst() {
+            final Map.Entry<K,V> e = map.pollFirstEntry();
+            return (e != null) ? e.getKey() : null;
+        }
+
+        public K pollLast() {
+            final Map.Entry<K,V> e = map.pollLastEntry();
+            return (e != null) ? e.getKey() : null;
+        }
+
+        public NavigableSet<K> descendingSet() {
+            return new NavigableKeys(map.descendingMap());
+        }
+
+        public NavigableSet<K> subSet(final K fromKey, final boolean fromInclusive, final K toKey, final boolean toInclusive) {
+            return new NavigableKeys(map.subMap(fromKey, fromInclusive, toKey, toInclusive));
+        }
+
+        public NavigableSet<K> headSet(final K toKey, final boolean inclusive) {
+            return new NavigableKeys(map.headMap(toKey, inclusive));
+        }
+
+        public NavigableSet<K> tailSet(final K fromKey, final boolean inclusive) {
+            return new NavigableKeys(map.tailMap(fromKey, inclusive));
+        }
+
+        public SortedSet<K> subSet(final K fromKey, final K toKey) { return subSet(fromKey, true, toKey, false); }
+        public SortedSet<K> headSet(final K toKey) { return headSet(toKey, false); }
+        public SortedSet<K> tailSet(final K fromKey) { return tailSet(fromKey, true); }
+    }
+
     public boolean assertOrders() {
         final Node<K,V> root = store.getRoot();
         if(root.isLeaf()) {
@@ -1132,7 +3389,7 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
 
         final Branch<K,V> branch = node.asBranch();
         for(int i = 0; i < branch.size(); ++i) {
-            if(branch.key(i).compareTo(branch.child(i).key(0)) != 0) {
+            if(order.compare(branch.key(i), branch.child(i).key(0)) != 0) {
                 String msg = String.format("messed up parent: %s, child: %s",
                                            branch.key(i), branch.child(i).key(0));
                 throw new RuntimeException(msg);
@@ -1140,6 +3397,36 @@ public class BplusTree<K extends Comparable<K>,V> implements Map<K,V>, SortedMap
         }
     }
     
+    public boolean assertCounts() {
+        if(store.isCounted()) {
+            depthFirst(store.getRoot(), this::assertCounts);
+        }
+
+        return true;
+    }
+
+    private void assertCounts(final Node<K,V> node) {
+        if(!node.isBranch()) {
+            return;
+        }
+
+        final Branch<K,V> branch = node.asBranch();
+        for(int i = 0; i < branch.size(); ++i) {
+            final long[] actual = new long[1];
+            depthFirst(branch.child(i), (n) -> {
+                    if(n.isLeaf()) {
+                        actual[0] += n.size();
+                    }
+                });
+
+            if(branch.count(i) != actual[0]) {
+                String msg = String.format("bad count for child with min value %s: %d, actual: %d",
+                                           branch.child(i).key(0), branch.count(i), actual[0]);
+                throw new RuntimeException(msg);
+            }
+        }
+    }
+
     private void depthFirst(final Node<K,V> root, final Consumer<Node<K,V>> consumer) {
         if(root.isBranch()) {
             final Branch<K,V> branch = root.asBranch();
@@ -7,6 +7,54 @@ public interface Branch<K extends Comparable<K>,V> extends Node<K,V> {
     Branch<K,V> put(int index, Node<K,V> child);
     Node<K,V> child(int index);
     void resetKey(int indexx);
+
+    //entries below child(index), only kept by counted stores
+    default long count(final int index) {
+        throw new UnsupportedOperationException("store does not keep counts");
+    }
+
+    default void count(final int index, final long val) {
+        throw new UnsupportedOperationException("store does not keep counts");
+    }
+
+    //b-link mode, the next branch on the same level
+    default Branch<K,V> right() {
+        return null;
+    }
+
+    default void right(final Branch<K,V> branch) {
+        throw new UnsupportedOperationException("store has no right links");
+    }
+
+    //b-link separators are given rather than read from the child, another writer may hold the child
+    default Branch<K,V> put(final int index, final K k, final Node<K,V> child) {
+        throw new UnsupportedOperationException("store takes separators from the child");
+    }
+
+    default int insert(final int index, final K k, final Node<K,V> child) {
+        if(isFull()) {
+            throw new RuntimeException("branch is full");
+        }
+
+        sizeUp(1);
+        shiftRight(index, 1);
+        put(index, k, child);
+        return index;
+    }
+
+    static <K extends Comparable<K>,V> long total(final Node<K,V> node) {
+        if(node.isLeaf()) {
+            return node.size();
+        }
+
+        final Branch<K,V> branch = node.asBranch();
+        long ret = 0;
+        for(int i = 0; i < branch.size(); ++i) {
+            ret += branch.count(i);
+        }
+
+        return ret;
+    }
     
     default Branch<K,V> asBranch() {
         return this;
@@ -26,19 +74,20 @@ public interface Branch<K extends Comparable<K>,V> extends Node<K,V> {
     }
     
     default int insert(final Node<K,V> node) {
-        if(isFull()) {
-            throw new RuntimeException("branch is full");
-        }
-        
-        final K nodeMinKey = node.key(0);
-        final int searchPoint = search(nodeMinKey);
-
+        final int searchPoint = search(node.key(0));
         if(searchPoint >= 0) {
             throw new RuntimeException("duplicate key violation");
         }
 
-        final int index = insertIndex(searchPoint);
-        final int currentSize = size();
+        return insert(insertIndex(searchPoint), node);
+    }
+
+    //positional insert, separators may repeat when keys do
+    default int insert(final int index, final Node<K,V> node) {
+        if(isFull()) {
+            throw new RuntimeException("branch is full");
+        }
+        
         sizeUp(1);
         shiftRight(index, 1);
         put(index, node);
@@ -51,11 +100,14 @@ public interface Branch<K extends Comparable<K>,V> extends Node<K,V> {
             throw new RuntimeException("duplicate key violation");
         }
 
+        return split(insertIndex(searchPoint), node);
+    }
+
+    default Branch<K,V> split(final int index, final Node<K,V> node) {
         if(!isFull()) {
             throw new RuntimeException("branch is not full");
         }
 
-        final int index = Node.insertIndex(searchPoint);
         final Branch<K,V> newRight = newBranch();
         final int totalElements = size() + 1;
         final int leftSize = (totalElements) >>> 1; //+1 to include new element
@@ -65,12 +117,12 @@ public interface Branch<K extends Comparable<K>,V> extends Node<K,V> {
             newRight.size(rightSize);
             newRight.copy(leftSize - 1, this, 0, rightSize);
             size(leftSize - 1);
-            insert(node);
+            insert(index, node);
         }
         else {
             newRight.size(rightSize - 1);
             newRight.copy(leftSize, this, 0, rightSize - 1);
-            newRight.insert(node);
+            newRight.insert(index - leftSize, node);
             size(leftSize);
         }
 
@@ -0,0 +1,49 @@
+package bplus;
+
+import java.util.Comparator;
+
+public final class Comparators {
+
+    private Comparators() {}
+
+    //stateless singletons, the numeric ones compare the unboxed values directly
+    public static final Comparator<Integer> INTEGER = (lhs, rhs) -> Integer.compare(lhs.intValue(), rhs.intValue());
+    public static final Comparator<Long> LONG = (lhs, rhs) -> Long.compare(lhs.longValue(), rhs.longValue());
+    public static final Comparator<Double> DOUBLE = (lhs, rhs) -> Double.compare(lhs.doubleValue(), rhs.doubleValue());
+    public static final Comparator<String> STRING = (lhs, rhs) -> lhs.compareTo(rhs);
+    public static final Comparator<String> CASE_INSENSITIVE = (lhs, rhs) -> lhs.compareToIgnoreCase(rhs);
+
+    public static final Comparator<Integer> INTEGER_DESCENDING = (lhs, rhs) -> Integer.compare(rhs.intValue(), lhs.intValue());
+    public static final Comparator<Long> LONG_DESCENDING = (lhs, rhs) -> Long.compare(rhs.longValue(), lhs.longValue());
+    public static final Comparator<String> STRING_DESCENDING = (lhs, rhs) -> rhs.compareTo(lhs);
+
+    //specialized natural ordering for the common key types, null for anything else
+    @SuppressWarnings("unchecked")
+    public static <K> Comparator<K> natural(final Class<K> type) {
+        if(type == Integer.class) {
+            return (Comparator<K>) INTEGER;
+        }
+        else if(type == Long.class) {
+            return (Comparator<K>) LONG;
+        }
+        else if(type == Double.class) {
+            return (Comparator<K>) DOUBLE;
+        }
+        else if(type == String.class) {
+            return (Comparator<K>) STRING;
+        }
+        else {
+            return null;
+        }
+    }
+
+    //the ordering a store actually searches with, never null
+    public static <K extends Comparable<K>> Comparator<? super K> order(final Class<K> type, final Comparator<? super K> comparator) {
+        if(comparator != null) {
+            return comparator;
+        }
+
+        final Comparator<K> natural = natural(type);
+        return natural != null ? natural : Comparator.<K>naturalOrder();
+    }
+}
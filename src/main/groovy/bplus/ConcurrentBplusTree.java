@@ -0,0 +1,1342 @@
+package bplus;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+//thread safe tree over a concurrent store. readers never lock, they descend on optimistic stamps and validate each
+//parent after stamping the child it led to. writes that stay inside one leaf latch only that leaf, anything that
+//splits, borrows, merges or moves a separator runs the single threaded algorithm after latching the nodes it changes
+public class ConcurrentBplusTree<K extends Comparable<K>,V> extends AbstractMap<K,V> implements ConcurrentNavigableMap<K,V> {
+
+    //what a write does with the value it finds
+    private static final int PUT = 0;
+    private static final int IF_ABSENT = 1;
+    private static final int IF_PRESENT = 2;
+    private static final int IF_EQUAL = 3;
+    private static final int REMOVE = 4;
+    private static final int REMOVE_IF_EQUAL = 5;
+
+    //what a scan hands out
+    private static final int KEYS = 0;
+    private static final int VALUES = 1;
+    private static final int ENTRIES = 2;
+
+    //a leaf reached by an optimistic descent, root when the leaf is the whole tree. b-link descents also keep
+    //the branch they went down through on every level and the clear they started after
+    private static final class Spot<K extends Comparable<K>,V> {
+        private Leaf<K,V> leaf;
+        private long stamp;
+        private boolean root;
+        private int depth;
+        private long clears = -1;
+        private List<Node<K,V>> path;
+
+        private void path(final int level, final Node<K,V> node) {
+            if(path == null) {
+                path = new ArrayList<>();
+            }
+
+            if(level < path.size()) {
+                path.set(level, node);
+            }
+            else {
+                path.add(node);
+            }
+        }
+    }
+
+    private final NodeStore<K,V> store;
+    private final BplusTree<K,V> tree;
+    private final Comparator<? super K> order;
+    private final LongAdder size = new LongAdder();
+
+    //restructures go one at a time, branches only ever change under this lock
+    private final ReentrantLock structure = new ReentrantLock();
+    private final List<Node<K,V>> latched = new ArrayList<>();
+
+    private final Range all = new Range(null, false, null, false, false);
+
+    //nodes merged away or cleared are only done once no scan can still be on them. point reads need no pin, a
+    //node handed out again fails their stamps like any other write
+    private final Epochs epochs = new Epochs();
+
+    //lehman-yao mode, nodes are never merged so a reader that lands left of where k went can always move right
+    private boolean blinkMode = false;
+    private volatile long clears = 0;
+
+    public ConcurrentBplusTree(final NodeStore<K,V> store) {
+        if(!store.isConcurrent()) {
+            throw new IllegalArgumentException("store is not concurrent");
+        }
+
+        this.store = store;
+        this.tree = new BplusTree<>(store);
+        this.tree.setEpochs(epochs);
+        this.order = Comparators.order(store.getKeyType(), store.getComparator());
+        this.size.add(tree.longSize());
+    }
+
+    public boolean isBlinkMode() {
+        return blinkMode;
+    }
+
+    //only while the tree is one empty leaf. branch counts would need whole paths latched
+    public void setBlinkMode(final boolean val) {
+        if(store.getRoot().isBranch() || store.getRoot().size() > 0) {
+            throw new IllegalStateException("b-link mode can only change while the tree is empty");
+        }
+
+        if(val && store.isCounted()) {
+            throw new IllegalStateException("b-link mode needs a store without counts");
+        }
+
+        blinkMode = val;
+    }
+
+    private K key(final Object o) {
+        return store.getKeyType().cast(Objects.requireNonNull(o));
+    }
+
+    //descends to the leaf of k, or the first or last leaf for a null k. a child is stamped before its parent is
+    //validated so the stamp is for a node the root led to, false when something moved underneath
+    private boolean seek(final K k, final boolean last, final Spot<K,V> spot) {
+        if(blinkMode) {
+            seekLinked(null, 0, k, last, spot);
+            return true;
+        }
+
+        Node<K,V> node = store.getRoot();
+        long stamp = node.latch().tryOptimisticRead();
+        if(stamp == 0 || node != store.getRoot()) {
+            return false;
+        }
+
+        spot.root = node.isLeaf();
+        try {
+            while(node.isBranch()) {
+                final Branch<K,V> branch = node.asBranch();
+                final Node<K,V> child = branch.child((k != null) ? branch.navigateIndex(k) : last ? branch.lastIndex() : 0);
+                final long childStamp = child.latch().tryOptimisticRead();
+                if(childStamp == 0 || !node.latch().validate(stamp)) {
+                    return false;
+                }
+
+                node = child;
+                stamp = childStamp;
+            }
+        }
+        catch(RuntimeException e) {
+            //torn reads are only errors when nothing changed
+            if(node.latch().validate(stamp)) {
+                throw e;
+            }
+
+            return false;
+        }
+
+        spot.leaf = node.asLeaf();
+        spot.stamp = stamp;
+        return true;
+    }
+
+    //b-link descent, a node that changed is read again and one that split is left through its right link. going
+    //on from a node other than the root only starts over when the tree was cleared since
+    private void seekLinked(final Node<K,V> start, final int startDepth, final K k, final boolean last, final Spot<K,V> spot) {
+        Node<K,V> node = start;
+        int depth = startDepth;
+        while(true) {
+            if(node == null || spot.clears != clears) {
+                spot.clears = clears;
+                node = store.getRoot();
+                depth = 0;
+            }
+
+            final StampedLock latch = node.latch();
+            final long stamp = latch.tryOptimisticRead();
+            if(stamp == 0 || spot.clears != clears) {
+                Thread.yield();
+                continue;
+            }
+
+            Node<K,V> next = null;
+            boolean right = false;
+            try {
+                final K high = node.highKey();
+                if(high != null && ((k != null) ? order.compare(k, high) >= 0 : last)) {
+                    next = node.isLeaf() ? node.asLeaf().next() : node.asBranch().right();
+                    right = true;
+                }
+                else if(node.isBranch()) {
+                    final Branch<K,V> branch = node.asBranch();
+                    next = branch.child((k != null) ? branch.navigateIndex(k) : last ? branch.lastIndex() : 0);
+                }
+            }
+            catch(RuntimeException e) {
+                if(latch.validate(stamp)) {
+                    throw e;
+                }
+
+                continue;
+            }
+
+            if(!latch.validate(stamp)) {
+                continue;
+            }
+
+            if(next == null) {
+                spot.leaf = node.asLeaf();
+                spot.stamp = stamp;
+                spot.depth = depth;
+                return;
+            }
+
+            if(!right) {
+                spot.path(depth++, node);
+            }
+
+            node = next;
+        }
+    }
+
+    //after a failed read, b-link mode carries on from the leaf
+    private boolean again(final K k, final boolean last, final Spot<K,V> spot) {
+        if(blinkMode) {
+            seekLinked(spot.leaf, spot.depth, k, last, spot);
+            return true;
+        }
+
+        Thread.yield();
+        return seek(k, last, spot);
+    }
+
+    //index of the first entry at or past k in the given direction, a null k starts at that end of the leaf
+    private static <K extends Comparable<K>,V> int start(final Leaf<K,V> leaf, final K k, final boolean after, final boolean inclusive) {
+        if(k == null) {
+            return after ? 0 : leaf.lastIndex();
+        }
+
+        final int search = leaf.search(k);
+        if(search >= 0) {
+            return inclusive ? search : search + (after ? 1 : -1);
+        }
+
+        return Node.insertIndex(search) - (after ? 0 : 1);
+    }
+
+    //nearest entry to k in key order, a null k gives the first or last entry
+    private Map.Entry<K,V> near(final K k, final boolean after, final boolean inclusive) {
+        final Spot<K,V> spot = new Spot<>();
+        retry:
+        while(true) {
+            if(!seek(k, !after, spot)) {
+                Thread.yield();
+                continue;
+            }
+
+            Leaf<K,V> leaf = spot.leaf;
+            long stamp = spot.stamp;
+            try {
+                int index = start(leaf, k, after, inclusive);
+                while(index < 0 || index >= leaf.size()) {
+                    final Leaf<K,V> next = after ? leaf.next() : leaf.prev();
+                    if(next == null) {
+                        if(leaf.latch().validate(stamp)) {
+                            return null;
+                        }
+
+                        continue retry;
+                    }
+
+                    final long nextStamp = next.latch().tryOptimisticRead();
+                    if(nextStamp == 0 || !leaf.latch().validate(stamp)) {
+                        continue retry;
+                    }
+
+                    leaf = next;
+                    stamp = nextStamp;
+                    index = after ? 0 : leaf.lastIndex();
+                }
+
+                final Map.Entry<K,V> ret = leaf.entry(index);
+                if(leaf.latch().validate(stamp)) {
+                    return ret;
+                }
+            }
+            catch(RuntimeException e) {
+                if(leaf.latch().validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public V get(final Object o) {
+        final K k = key(o);
+        final Spot<K,V> spot = new Spot<>();
+        boolean found = seek(k, false, spot);
+        while(true) {
+            if(found) {
+                final Leaf<K,V> leaf = spot.leaf;
+                try {
+                    final int index = leaf.search(k);
+                    final V ret = (index >= 0) ? leaf.value(index) : null;
+                    if(leaf.latch().validate(spot.stamp)) {
+                        return ret;
+                    }
+                }
+                catch(RuntimeException e) {
+                    if(leaf.latch().validate(spot.stamp)) {
+                        throw e;
+                    }
+                }
+            }
+
+            found = again(k, false, spot);
+        }
+    }
+
+    //returns the value k had, whether or not the mode let the write happen
+    private V write(final K k, final V v, final V expect, final int mode) {
+        if(blinkMode) {
+            return writeLinked(k, v, expect, mode);
+        }
+
+        final Spot<K,V> spot = new Spot<>();
+        while(true) {
+            if(!seek(k, false, spot)) {
+                Thread.yield();
+                continue;
+            }
+
+            final Leaf<K,V> leaf = spot.leaf;
+            final StampedLock latch = leaf.latch();
+            final int index;
+            final V prev;
+            try {
+                index = leaf.search(k);
+                prev = (index >= 0) ? leaf.value(index) : null;
+            }
+            catch(RuntimeException e) {
+                if(latch.validate(spot.stamp)) {
+                    throw e;
+                }
+
+                continue;
+            }
+
+            if(!latch.validate(spot.stamp)) {
+                continue;
+            }
+
+            if(!applies(mode, prev, expect)) {
+                return prev;
+            }
+
+            if(!inLeaf(spot, index, mode)) {
+                return restructure(k, v, expect, mode);
+            }
+
+            //fails if anything touched the leaf since it was read
+            final long stamp = latch.tryConvertToWriteLock(spot.stamp);
+            if(stamp == 0) {
+                continue;
+            }
+
+            try {
+                if(mode >= REMOVE) {
+                    leaf.remove(index);
+                    size.decrement();
+                }
+                else if(index >= 0) {
+                    leaf.put(index, k, v);
+                }
+                else {
+                    leaf.insert(Node.insertIndex(index), k, v);
+                    size.increment();
+                }
+            }
+            finally {
+                latch.unlockWrite(stamp);
+            }
+
+            return prev;
+        }
+    }
+
+    //b-link writes only ever hold their leaf, and the leaf after it while splitting. the separator of a split is
+    //posted to the parent afterwards, until then the new leaf is found through the right link
+    private V writeLinked(final K k, final V v, final V expect, final int mode) {
+        final Spot<K,V> spot = new Spot<>();
+        seekLinked(null, 0, k, false, spot);
+        while(true) {
+            final Leaf<K,V> leaf = spot.leaf;
+            final StampedLock latch = leaf.latch();
+            final int index;
+            final V prev;
+            try {
+                index = leaf.search(k);
+                prev = (index >= 0) ? leaf.value(index) : null;
+            }
+            catch(RuntimeException e) {
+                if(latch.validate(spot.stamp)) {
+                    throw e;
+                }
+
+                seekLinked(leaf, spot.depth, k, false, spot);
+                continue;
+            }
+
+            if(!latch.validate(spot.stamp)) {
+                seekLinked(leaf, spot.depth, k, false, spot);
+                continue;
+            }
+
+            if(!applies(mode, prev, expect)) {
+                return prev;
+            }
+
+            final long stamp = latch.tryConvertToWriteLock(spot.stamp);
+            if(stamp == 0) {
+                seekLinked(leaf, spot.depth, k, false, spot);
+                continue;
+            }
+
+            Leaf<K,V> right = null;
+            K low = null;
+            K sep = null;
+            try {
+                if(mode >= REMOVE) {
+                    leaf.remove(index);
+                    size.decrement();
+                }
+                else if(index >= 0) {
+                    leaf.put(index, k, v);
+                }
+                else if(!leaf.isFull()) {
+                    leaf.insert(Node.insertIndex(index), k, v);
+                    size.increment();
+                }
+                else {
+                    low = leaf.key(0);
+                    right = splitLeaf(leaf, Node.insertIndex(index), k, v);
+                    sep = right.key(0);
+                    size.increment();
+                }
+            }
+            finally {
+                latch.unlockWrite(stamp);
+            }
+
+            //the separator was read under the latch, the leaf can split again as soon as it is let go
+            if(right != null) {
+                link(spot, 0, leaf, low, sep, right);
+            }
+
+            return prev;
+        }
+    }
+
+    //the new leaf is complete before the old one's latch is let go, the leaf after it is latched for its prev link
+    private Leaf<K,V> splitLeaf(final Leaf<K,V> leaf, final int at, final K k, final V v) {
+        final Leaf<K,V> next = leaf.next();
+        final long nextStamp = (next != null) ? next.latch().writeLock() : 0;
+        try {
+            final Leaf<K,V> right = leaf.split(at, k, v);
+            right.highKey(leaf.highKey());
+            leaf.highKey(right.key(0));
+            return right;
+        }
+        finally {
+            if(next != null) {
+                next.latch().unlockWrite(nextStamp);
+            }
+        }
+    }
+
+    private Branch<K,V> splitBranch(final Branch<K,V> branch, final int at, final K sep, final Node<K,V> child) {
+        final Branch<K,V> right = branch.newBranch();
+        final int total = branch.size() + 1;
+        final int leftSize = total >>> 1;
+        final int rightSize = total - leftSize;
+        if(at < leftSize) {
+            right.size(rightSize);
+            right.copy(leftSize - 1, branch, 0, rightSize);
+            branch.size(leftSize - 1);
+            branch.insert(at, sep, child);
+        }
+        else {
+            right.size(rightSize - 1);
+            right.copy(leftSize, branch, 0, rightSize - 1);
+            right.insert(at - leftSize, sep, child);
+            branch.size(leftSize);
+        }
+
+        right.highKey(branch.highKey());
+        right.right(branch.right());
+        branch.highKey(right.key(0));
+        branch.right(right);
+        return right;
+    }
+
+    //posts the separator of a node split off at level. the branch the descent went through may have split too,
+    //then the separator belongs further right. latches are taken left to right and one level at a time. low is
+    //the first key of left when it split
+    private void link(final Spot<K,V> spot, final int level, final Node<K,V> left, final K low, final K sep, final Node<K,V> right) {
+        final int depth = spot.depth - level - 1;
+        Branch<K,V> parent = (depth >= 0) ? spot.path.get(depth).asBranch() : grow(spot, level, left, low, sep, right);
+        if(parent == null) {
+            return;
+        }
+
+        long stamp = parent.latch().writeLock();
+        while(parent.highKey() != null && order.compare(sep, parent.highKey()) >= 0) {
+            final Branch<K,V> next = parent.right();
+            final long nextStamp = next.latch().writeLock();
+            parent.latch().unlockWrite(stamp);
+            parent = next;
+            stamp = nextStamp;
+        }
+
+        Branch<K,V> split = null;
+        K parentLow = null;
+        K parentSep = null;
+        try {
+            final int search = parent.search(sep);
+            if(search > 0 || (search == 0 && parent.child(0) == right)) {
+                //already posted
+                return;
+            }
+
+            //only the first branch of a level can have a low key at or past a separator, it is the one its first
+            //child had when the level grew and that child has taken smaller keys since. right goes after left,
+            //which is that first child
+            int at = Node.insertIndex(search);
+            if(search == 0 || at == 0) {
+                parent.put(0, low, parent.child(0));
+                at = 1;
+            }
+
+            if(!parent.isFull()) {
+                parent.insert(at, sep, right);
+            }
+            else {
+                parentLow = parent.key(0);
+                split = splitBranch(parent, at, sep, right);
+                parentSep = split.key(0);
+            }
+        }
+        finally {
+            parent.latch().unlockWrite(stamp);
+        }
+
+        if(split != null) {
+            link(spot, level + 1, parent, parentLow, parentSep, split);
+        }
+    }
+
+    //the split node was the root when the descent went through it, null when there is nothing left to link. a
+    //node that was reached from the root through right links waits for whoever split the root to grow it
+    private Branch<K,V> grow(final Spot<K,V> spot, final int level, final Node<K,V> left, final K low, final K sep, final Node<K,V> right) {
+        while(true) {
+            structure.lock();
+            try {
+                if(spot.clears != clears) {
+                    return null;
+                }
+
+                if(store.getRoot() == left) {
+                    final Branch<K,V> root = left.newBranch();
+                    root.sizeUp(2);
+                    root.put(0, low, left);
+                    root.put(1, sep, right);
+                    store.setRoot(root);
+                    return null;
+                }
+            }
+            finally {
+                structure.unlock();
+            }
+
+            final Branch<K,V> ret = parentOf(level, sep);
+            if(ret != null) {
+                return ret;
+            }
+
+            Thread.yield();
+        }
+    }
+
+    //the branch one level above level on the way to k, read from the current root. a branch never gets a new
+    //first child in b-link mode so the height below a node can be read off its first children
+    private Branch<K,V> parentOf(final int level, final K k) {
+        Node<K,V> node = store.getRoot();
+        int at = 0;
+        for(Node<K,V> n = node; n.isBranch(); n = n.asBranch().child(0)) {
+            ++at;
+        }
+
+        while(at > level + 1) {
+            final StampedLock latch = node.latch();
+            final long stamp = latch.tryOptimisticRead();
+            if(stamp == 0) {
+                Thread.yield();
+                continue;
+            }
+
+            Node<K,V> next;
+            boolean right = false;
+            try {
+                final Branch<K,V> branch = node.asBranch();
+                final K high = branch.highKey();
+                if(high != null && order.compare(k, high) >= 0) {
+                    next = branch.right();
+                    right = true;
+                }
+                else {
+                    next = branch.child(branch.navigateIndex(k));
+                }
+            }
+            catch(RuntimeException e) {
+                if(latch.validate(stamp)) {
+                    throw e;
+                }
+
+                continue;
+            }
+
+            if(latch.validate(stamp)) {
+                node = next;
+                at -= right ? 0 : 1;
+            }
+        }
+
+        return (at == level + 1) ? node.asBranch() : null;
+    }
+
+    private static <V> boolean applies(final int mode, final V prev, final V expect) {
+        switch(mode) {
+            case IF_ABSENT:
+                return prev == null;
+            case IF_PRESENT:
+            case REMOVE:
+                return prev != null;
+            case IF_EQUAL:
+            case REMOVE_IF_EQUAL:
+                return prev != null && prev.equals(expect);
+            default:
+                return true;
+        }
+    }
+
+    //a write stays in its leaf unless it moves the first key, needs a sibling or changes branch counts
+    private boolean inLeaf(final Spot<K,V> spot, final int index, final int mode) {
+        final Leaf<K,V> leaf = spot.leaf;
+        if(mode >= REMOVE) {
+            return !store.isCounted() && (spot.root || (index > 0 && leaf.isAboveMinLimit()));
+        }
+        else if(index >= 0) {
+            return true;
+        }
+        else {
+            return !store.isCounted() && !leaf.isFull() && (spot.root || Node.insertIndex(index) > 0);
+        }
+    }
+
+    //branches can't change while the structure lock is held so the descent needs no stamps, leaves can until
+    //they are latched which is why the leaf is searched again
+    private V restructure(final K k, final V v, final V expect, final int mode) {
+        structure.lock();
+        try {
+            final Traversal<K,V> tr = Traversal.makeMutable();
+            Node<K,V> node = store.getRoot();
+            while(node.isBranch()) {
+                final Branch<K,V> branch = node.asBranch();
+                final int index = branch.navigateIndex(k);
+                tr.add(branch, index);
+                node = branch.child(index);
+            }
+
+            final Leaf<K,V> leaf = node.asLeaf();
+            latch(leaf);
+            final int index = leaf.search(k);
+            final V prev = (index >= 0) ? leaf.value(index) : null;
+            tr.add(leaf, index);
+            if(!applies(mode, prev, expect)) {
+                return prev;
+            }
+
+            if(mode >= REMOVE) {
+                latchPath(tr, true);
+                tree.delete(tr);
+                size.decrement();
+            }
+            else if(index >= 0) {
+                leaf.put(index, k, v);
+            }
+            else {
+                latchPath(tr, false);
+                tree.put(tr, k, v);
+                size.increment();
+            }
+
+            return prev;
+        }
+        finally {
+            unlatch();
+            structure.unlock();
+        }
+    }
+
+    //everything the single threaded algorithm may change. a node that splits, borrows or merges changes its
+    //siblings and parent, the parent passes it on when its own first key can change or counts are kept
+    private void latchPath(final Traversal<K,V> tr, final boolean removing) {
+        final int leafLevel = tr.level();
+        for(int level = leafLevel; level >= 0; --level) {
+            final Node<K,V> node = tr.get(level).node();
+            latch(node);
+            final boolean reshape = removing ? !node.isAboveMinLimit() : node.isFull();
+            if(reshape && level > 0) {
+                final Traversal.Step<K,V> parent = tr.get(level - 1);
+                final Branch<K,V> branch = parent.node().asBranch();
+                if(parent.index() > 0) {
+                    latch(branch.child(parent.index() - 1));
+                }
+
+                if(parent.index() + 1 < branch.size()) {
+                    latch(branch.child(parent.index() + 1));
+                }
+            }
+
+            //splits link a new leaf in, merges unlink one
+            if(reshape && level == leafLevel) {
+                final Leaf<K,V> leaf = node.asLeaf();
+                if(leaf.prev() != null) {
+                    latch(leaf.prev());
+                }
+
+                if(leaf.next() != null) {
+                    latch(leaf.next());
+                }
+            }
+
+            if(level < leafLevel && !reshape && !store.isCounted() && tr.get(level).index() > 0) {
+                break;
+            }
+        }
+    }
+
+    private void latch(final Node<K,V> node) {
+        for(int i = 0; i < latched.size(); ++i) {
+            if(latched.get(i) == node) {
+                return;
+            }
+        }
+
+        node.latch().writeLock();
+        latched.add(node);
+    }
+
+    private void unlatch() {
+        for(int i = 0; i < latched.size(); ++i) {
+            latched.get(i).latch().tryUnlockWrite();
+        }
+
+        latched.clear();
+    }
+
+    //writers still inside the old tree find their leaf latched and start over on the new root. b-link splits
+    //allocate outside the structure lock, so there the old nodes are left to the collector rather than a pool
+    public void clear() {
+        structure.lock();
+        try {
+            final Node<K,V> root = store.getRoot();
+            final long removed = latchAll(root);
+            store.setRoot(root.newLeaf());
+            store.setEntryCount(0);
+            size.add(-removed);
+            ++clears;
+            if(!blinkMode) {
+                for(Node<K,V> node : latched) {
+                    epochs.retire(node);
+                }
+
+                epochs.reclaim();
+            }
+        }
+        finally {
+            unlatch();
+            structure.unlock();
+        }
+    }
+
+    //every node is latched, a descent that stamped any of them fails its next validate and starts over
+    private long latchAll(final Node<K,V> node) {
+        if(blinkMode) {
+            return latchLinked(node);
+        }
+
+        node.latch().writeLock();
+        latched.add(node);
+        if(node.isLeaf()) {
+            return node.size();
+        }
+
+        long ret = 0;
+        for(int i = 0; i < node.size(); ++i) {
+            ret += latchAll(node.asBranch().child(i));
+        }
+
+        return ret;
+    }
+
+    //a level at a time from the top, left to right like every other b-link writer. the right links also reach
+    //nodes whose separator is not posted in their parent yet
+    private long latchLinked(final Node<K,V> root) {
+        long ret = 0;
+        for(Node<K,V> first = root; first != null; first = first.isBranch() ? first.asBranch().child(0) : null) {
+            for(Node<K,V> node = first; node != null; node = node.isBranch() ? node.asBranch().right() : node.asLeaf().next()) {
+                node.latch().writeLock();
+                latched.add(node);
+                if(node.isLeaf()) {
+                    ret += node.size();
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    public V put(final K k, final V v) {
+        return write(key(k), Objects.requireNonNull(v), null, PUT);
+    }
+
+    public V putIfAbsent(final K k, final V v) {
+        return write(key(k), Objects.requireNonNull(v), null, IF_ABSENT);
+    }
+
+    public V replace(final K k, final V v) {
+        return write(key(k), Objects.requireNonNull(v), null, IF_PRESENT);
+    }
+
+    public boolean replace(final K k, final V oldValue, final V newValue) {
+        final V prev = write(key(k), Objects.requireNonNull(newValue), Objects.requireNonNull(oldValue), IF_EQUAL);
+        return prev != null && prev.equals(oldValue);
+    }
+
+    public V remove(final Object o) {
+        return write(key(o), null, null, REMOVE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public boolean remove(final Object o, final Object value) {
+        final K k = key(o);
+        if(value == null) {
+            return false;
+        }
+
+        final V prev = write(k, null, (V) value, REMOVE_IF_EQUAL);
+        return prev != null && prev.equals(value);
+    }
+
+    public boolean containsKey(final Object o) {
+        return get(o) != null;
+    }
+
+    //exact once writers are done, a moving target while they run
+    public long longSize() {
+        return size.sum();
+    }
+
+    public int size() {
+        return (int) Math.min(longSize(), Integer.MAX_VALUE);
+    }
+
+    public boolean isEmpty() {
+        return all.isEmpty();
+    }
+
+    public Comparator<? super K> comparator() { return all.comparator(); }
+    public K firstKey() { return all.firstKey(); }
+    public K lastKey() { return all.lastKey(); }
+    public Map.Entry<K,V> firstEntry() { return all.firstEntry(); }
+    public Map.Entry<K,V> lastEntry() { return all.lastEntry(); }
+    public Map.Entry<K,V> pollFirstEntry() { return all.pollFirstEntry(); }
+    public Map.Entry<K,V> pollLastEntry() { return all.pollLastEntry(); }
+    public Map.Entry<K,V> ceilingEntry(final K k) { return all.ceilingEntry(k); }
+    public Map.Entry<K,V> floorEntry(final K k) { return all.floorEntry(k); }
+    public Map.Entry<K,V> higherEntry(final K k) { return all.higherEntry(k); }
+    public Map.Entry<K,V> lowerEntry(final K k) { return all.lowerEntry(k); }
+    public K ceilingKey(final K k) { return all.ceilingKey(k); }
+    public K floorKey(final K k) { return all.floorKey(k); }
+    public K higherKey(final K k) { return all.higherKey(k); }
+    public K lowerKey(final K k) { return all.lowerKey(k); }
+
+    public ConcurrentNavigableMap<K,V> subMap(final K fromKey, final boolean fromInclusive, final K toKey, final boolean toInclusive) {
+        return all.subMap(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    public ConcurrentNavigableMap<K,V> headMap(final K toKey, final boolean inclusive) { return all.headMap(toKey, inclusive); }
+    public ConcurrentNavigableMap<K,V> tailMap(final K fromKey, final boolean inclusive) { return all.tailMap(fromKey, inclusive); }
+    public ConcurrentNavigableMap<K,V> subMap(final K fromKey, final K toKey) { return all.subMap(fromKey, toKey); }
+    public ConcurrentNavigableMap<K,V> headMap(final K toKey) { return all.headMap(toKey); }
+    public ConcurrentNavigableMap<K,V> tailMap(final K fromKey) { return all.tailMap(fromKey); }
+    public ConcurrentNavigableMap<K,V> descendingMap() { return all.descendingMap(); }
+
+    public NavigableSet<K> keySet() { return all.keySet(); }
+    public NavigableSet<K> navigableKeySet() { return all.navigableKeySet(); }
+    public NavigableSet<K> descendingKeySet() { return all.descendingKeySet(); }
+    public Collection<V> values() { return all.values(); }
+    public Set<Map.Entry<K,V>> entrySet() { return all.entrySet(); }
+
+    private static <K> K keyOf(final Map.Entry<K,?> entry) {
+        return (entry == null) ? null : entry.getKey();
+    }
+
+    //bounded by keys rather than positions so it stays valid while the tree changes, null bounds are open
+    private final class Range extends AbstractMap<K,V> implements ConcurrentNavigableMap<K,V> {
+        private final K lo;
+        private final boolean loInclusive;
+        private final K hi;
+        private final boolean hiInclusive;
+        private final boolean descending;
+
+        private Range(final K lo, final boolean loInclusive, final K hi, final boolean hiInclusive, final boolean descending) {
+            if(lo != null && hi != null && order.compare(lo, hi) > 0) {
+                throw new IllegalArgumentException("inconsistent range");
+            }
+
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        private boolean tooLow(final K k) {
+            if(lo == null) {
+                return false;
+            }
+
+            final int cmp = order.compare(k, lo);
+            return cmp < 0 || (cmp == 0 && !loInclusive);
+        }
+
+        private boolean tooHigh(final K k) {
+            if(hi == null) {
+                return false;
+            }
+
+            final int cmp = order.compare(k, hi);
+            return cmp > 0 || (cmp == 0 && !hiInclusive);
+        }
+
+        private boolean inRange(final K k) {
+            return !tooLow(k) && !tooHigh(k);
+        }
+
+        private boolean isWhole() {
+            return lo == null && hi == null;
+        }
+
+        private K check(final Object o) {
+            final K k = key(o);
+            if(!inRange(k)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+
+            return k;
+        }
+
+        //in key order whatever the direction of the view
+        private Map.Entry<K,V> lowest() {
+            final Map.Entry<K,V> ret = near(lo, true, loInclusive);
+            return (ret == null || tooHigh(ret.getKey())) ? null : ret;
+        }
+
+        private Map.Entry<K,V> highest() {
+            final Map.Entry<K,V> ret = near(hi, false, hiInclusive);
+            return (ret == null || tooLow(ret.getKey())) ? null : ret;
+        }
+
+        private Map.Entry<K,V> above(final K k, final boolean inclusive) {
+            if(tooLow(k)) {
+                return lowest();
+            }
+
+            final Map.Entry<K,V> ret = near(k, true, inclusive);
+            return (ret == null || tooHigh(ret.getKey())) ? null : ret;
+        }
+
+        private Map.Entry<K,V> below(final K k, final boolean inclusive) {
+            if(tooHigh(k)) {
+                return highest();
+            }
+
+            final Map.Entry<K,V> ret = near(k, false, inclusive);
+            return (ret == null || tooLow(ret.getKey())) ? null : ret;
+        }
+
+        public Map.Entry<K,V> firstEntry() { return descending ? highest() : lowest(); }
+        public Map.Entry<K,V> lastEntry() { return descending ? lowest() : highest(); }
+        public Map.Entry<K,V> ceilingEntry(final K k) { return descending ? below(key(k), true) : above(key(k), true); }
+        public Map.Entry<K,V> higherEntry(final K k) { return descending ? below(key(k), false) : above(key(k), false); }
+        public Map.Entry<K,V> floorEntry(final K k) { return descending ? above(key(k), true) : below(key(k), true); }
+        public Map.Entry<K,V> lowerEntry(final K k) { return descending ? above(key(k), false) : below(key(k), false); }
+        public K ceilingKey(final K k) { return keyOf(ceilingEntry(k)); }
+        public K higherKey(final K k) { return keyOf(higherEntry(k)); }
+        public K floorKey(final K k) { return keyOf(floorEntry(k)); }
+        public K lowerKey(final K k) { return keyOf(lowerEntry(k)); }
+
+        public K firstKey() {
+            final Map.Entry<K,V> entry = firstEntry();
+            if(entry == null) {
+                throw new NoSuchElementException();
+            }
+
+            return entry.getKey();
+        }
+
+        public K lastKey() {
+            final Map.Entry<K,V> entry = lastEntry();
+            if(entry == null) {
+                throw new NoSuchElementException();
+            }
+
+            return entry.getKey();
+        }
+
+        public Map.Entry<K,V> pollFirstEntry() { return poll(true); }
+        public Map.Entry<K,V> pollLastEntry() { return poll(false); }
+
+        //another thread can take or change the entry first, then the next one is tried
+        private Map.Entry<K,V> poll(final boolean first) {
+            while(true) {
+                final Map.Entry<K,V> entry = first ? firstEntry() : lastEntry();
+                if(entry == null || ConcurrentBplusTree.this.remove(entry.getKey(), entry.getValue())) {
+                    return entry;
+                }
+            }
+        }
+
+        public V get(final Object o) {
+            final K k = key(o);
+            return inRange(k) ? ConcurrentBplusTree.this.get(k) : null;
+        }
+
+        public boolean containsKey(final Object o) {
+            return get(o) != null;
+        }
+
+        public V put(final K k, final V v) { return ConcurrentBplusTree.this.put(check(k), v); }
+        public V putIfAbsent(final K k, final V v) { return ConcurrentBplusTree.this.putIfAbsent(check(k), v); }
+        public V replace(final K k, final V v) { return inRange(key(k)) ? ConcurrentBplusTree.this.replace(k, v) : null; }
+
+        public boolean replace(final K k, final V oldValue, final V newValue) {
+            return inRange(key(k)) && ConcurrentBplusTree.this.replace(k, oldValue, newValue);
+        }
+
+        public V remove(final Object o) {
+            final K k = key(o);
+            return inRange(k) ? ConcurrentBplusTree.this.remove(k) : null;
+        }
+
+        public boolean remove(final Object o, final Object value) {
+            final K k = key(o);
+            return inRange(k) && ConcurrentBplusTree.this.remove(k, value);
+        }
+
+        public int size() {
+            if(isWhole()) {
+                return ConcurrentBplusTree.this.size();
+            }
+
+            long count = 0;
+            for(final Iterator<K> it = new Scan<>(KEYS); it.hasNext(); it.next()) {
+                ++count;
+            }
+
+            return (int) Math.min(count, Integer.MAX_VALUE);
+        }
+
+        public boolean isEmpty() {
+            return lowest() == null;
+        }
+
+        public void clear() {
+            if(isWhole()) {
+                ConcurrentBplusTree.this.clear();
+                return;
+            }
+
+            for(final Iterator<K> it = new Scan<>(KEYS); it.hasNext();) {
+                it.next();
+                it.remove();
+            }
+        }
+
+        public Comparator<? super K> comparator() {
+            return descending ? Collections.reverseOrder(store.getComparator()) : store.getComparator();
+        }
+
+        //narrower bounds in key order, a null bound keeps this view's
+        private Range narrow(final K fromKey, final boolean fromInclusive, final K toKey, final boolean toInclusive) {
+            K newLo = lo;
+            boolean newLoInclusive = loInclusive;
+            K newHi = hi;
+            boolean newHiInclusive = hiInclusive;
+            if(fromKey != null) {
+                if(lo != null) {
+                    final int cmp = order.compare(key(fromKey), lo);
+                    if(cmp < 0 || (cmp == 0 && !loInclusive && fromInclusive)) {
+                        throw new IllegalArgumentException("key out of range");
+                    }
+                }
+
+                newLo = key(fromKey);
+                newLoInclusive = fromInclusive;
+            }
+
+            if(toKey != null) {
+                if(hi != null) {
+                    final int cmp = order.compare(key(toKey), hi);
+                    if(cmp > 0 || (cmp == 0 && !hiInclusive && toInclusive)) {
+                        throw new IllegalArgumentException("key out of range");
+                    }
+                }
+
+                newHi = key(toKey);
+                newHiInclusive = toInclusive;
+            }
+
+            return new Range(newLo, newLoInclusive, newHi, newHiInclusive, descending);
+        }
+
+        public ConcurrentNavigableMap<K,V> subMap(final K fromKey, final boolean fromInclusive, final K toKey, final boolean toInclusive) {
+            key(fromKey);
+            key(toKey);
+            return descending ? narrow(toKey, toInclusive, fromKey, fromInclusive) : narrow(fromKey, fromInclusive, toKey, toInclusive);
+        }
+
+        public ConcurrentNavigableMap<K,V> headMap(final K toKey, final boolean inclusive) {
+            key(toKey);
+            return descending ? narrow(toKey, inclusive, null, false) : narrow(null, false, toKey, inclusive);
+        }
+
+        public ConcurrentNavigableMap<K,V> tailMap(final K fromKey, final boolean inclusive) {
+            key(fromKey);
+            return descending ? narrow(null, false, fromKey, inclusive) : narrow(fromKey, inclusive, null, false);
+        }
+
+        public ConcurrentNavigableMap<K,V> subMap(final K fromKey, final K toKey) { return subMap(fromKey, true, toKey, false); }
+        public ConcurrentNavigableMap<K,V> headMap(final K toKey) { return headMap(toKey, false); }
+        public ConcurrentNavigableMap<K,V> tailMap(final K fromKey) { return tailMap(fromKey, true); }
+
+        public ConcurrentNavigableMap<K,V> descendingMap() {
+            return new Range(lo, loInclusive, hi, hiInclusive, !descending);
+        }
+
+        public NavigableSet<K> keySet() { return new Keys(); }
+        public NavigableSet<K> navigableKeySet() { return new Keys(); }
+        public NavigableSet<K> descendingKeySet() { return descendingMap().navigableKeySet(); }
+        public Collection<V> values() { return new Values(); }
+        public Set<Map.Entry<K,V>> entrySet() { return new Entries(); }
+
+        //weakly consistent, copies out a leaf at a time. the next leaf is stamped while the current one is still
+        //valid so the scan only descends again when that leaf changed before it got there
+        private final class Scan<T> implements Iterator<T> {
+            private final int kind;
+            private Object[] keys = new Object[0];
+            private Object[] values = new Object[0];
+            private int count = 0;
+            private int pos = 0;
+            private boolean ended = false;
+            private K last = null;
+            private K returned = null;
+            private Leaf<K,V> leaf = null;
+            private long stamp = 0;
+            private final Epochs.Pin pin = epochs.pin();
+
+            private Scan(final int kind) {
+                this.kind = kind;
+            }
+
+            public boolean hasNext() {
+                if(pos == count && !ended) {
+                    advance();
+                }
+
+                if(pos == count) {
+                    pin.release();
+                }
+
+                return pos < count;
+            }
+
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                final K k = (K) keys[pos];
+                final V v = (V) values[pos];
+                ++pos;
+                returned = k;
+                return (T) ((kind == KEYS) ? k : (kind == VALUES) ? v : new SimpleImmutableEntry<>(k, v));
+            }
+
+            public void remove() {
+                if(returned == null) {
+                    throw new IllegalStateException();
+                }
+
+                ConcurrentBplusTree.this.remove(returned);
+                returned = null;
+            }
+
+            private void advance() {
+                final Spot<K,V> spot = new Spot<>();
+                pos = 0;
+                count = 0;
+                while(count == 0 && !ended) {
+                    if(leaf != null && copy(leaf, stamp)) {
+                        continue;
+                    }
+
+                    final K from = (last != null) ? last : descending ? hi : lo;
+                    if(!seek(from, descending, spot) || !copy(spot.leaf, spot.stamp)) {
+                        Thread.yield();
+                    }
+                }
+            }
+
+            //the entries of leaf past the last one copied, false if the leaf changed while it was read
+            private boolean copy(final Leaf<K,V> from, final long fromStamp) {
+                final StampedLock latch = from.latch();
+                int copied = 0;
+                boolean end = false;
+                Leaf<K,V> next = null;
+                long nextStamp = 0;
+                try {
+                    final int size = from.size();
+                    if(keys.length < size) {
+                        keys = new Object[Math.max(size, from.order())];
+                        values = new Object[keys.length];
+                    }
+
+                    final K bound = (last != null) ? last : descending ? hi : lo;
+                    final boolean inclusive = (last == null) && (descending ? hiInclusive : loInclusive);
+                    for(int i = start(from, bound, !descending, inclusive); i >= 0 && i < size; i += descending ? -1 : 1) {
+                        final K k = from.key(i);
+                        if(descending ? tooLow(k) : tooHigh(k)) {
+                            end = true;
+                            break;
+                        }
+
+                        keys[copied] = k;
+                        values[copied] = from.value(i);
+                        ++copied;
+                    }
+
+                    if(!end) {
+                        next = descending ? from.prev() : from.next();
+                        end = (next == null);
+                        nextStamp = end ? 0 : next.latch().tryOptimisticRead();
+                    }
+                }
+                catch(RuntimeException e) {
+                    if(latch.validate(fromStamp)) {
+                        throw e;
+                    }
+
+                    leaf = null;
+                    return false;
+                }
+
+                if(!latch.validate(fromStamp)) {
+                    leaf = null;
+                    return false;
+                }
+
+                count = copied;
+                if(copied > 0) {
+                    @SuppressWarnings("unchecked")
+                    final K k = (K) keys[copied - 1];
+                    last = k;
+                }
+
+                ended = end;
+                leaf = (nextStamp != 0) ? next : null;
+                stamp = nextStamp;
+                return true;
+            }
+        }
+
+        private final class Keys extends AbstractSet<K> implements NavigableSet<K> {
+            public Iterator<K> iterator() { return new Scan<>(KEYS); }
+            public Iterator<K> descendingIterator() { return descendingKeySet().iterator(); }
+            public int size() { return Range.this.size(); }
+            public boolean isEmpty() { return Range.this.isEmpty(); }
+            public boolean contains(final Object o) { return containsKey(o); }
+            public boolean remove(final Object o) { return Range.this.remove(o) != null; }
+            public void clear() { Range.this.clear(); }
+            public Comparator<? super K> comparator() { return Range.this.comparator(); }
+            public K first() { return firstKey(); }
+            public K last() { return lastKey(); }
+            public K lower(final K k) { return lowerKey(k); }
+            public K floor(final K k) { return floorKey(k); }
+            public K ceiling(final K k) { return ceilingKey(k); }
+            public K higher(final K k) { return higherKey(k); }
+            public K pollFirst() { return keyOf(pollFirstEntry()); }
+            public K pollLast() { return keyOf(pollLastEntry()); }
+            public NavigableSet<K> descendingSet() { return descendingKeySet(); }
+
+            public NavigableSet<K> subSet(final K fromKey, final boolean fromInclusive, final K toKey, final boolean toInclusive) {
+                return subMap(fromKey, fromInclusive, toKey, toInclusive).navigableKeySet();
+            }
+
+            public NavigableSet<K> headSet(final K toKey, final boolean inclusive) { return headMap(toKey, inclusive).navigableKeySet(); }
+            public NavigableSet<K> tailSet(final K fromKey, final boolean inclusive) { return tailMap(fromKey, inclusive).navigableKeySet(); }
+            public NavigableSet<K> subSet(final K fromKey, final K toKey) { return subSet(fromKey, true, toKey, false); }
+            public NavigableSet<K> headSet(final K toKey) { return headSet(toKey, false); }
+            public NavigableSet<K> tailSet(final K fromKey) { return tailSet(fromKey, true); }
+        }
+
+        private final class Values extends AbstractCollection<V> {
+            public Iterator<V> iterator() { return new Scan<>(VALUES); }
+            public int size() { return Range.this.size(); }
+            public boolean isEmpty() { return Range.this.isEmpty(); }
+            public boolean contains(final Object o) { return containsValue(o); }
+            public void clear() { Range.this.clear(); }
+        }
+
+        private final class Entries extends AbstractSet<Map.Entry<K,V>> {
+            public Iterator<Map.Entry<K,V>> iterator() { return new Scan<>(ENTRIES); }
+            public int size() { return Range.this.size(); }
+            public boolean isEmpty() { return Range.this.isEmpty(); }
+            public void clear() { Range.this.clear(); }
+
+            public boolean contains(final Object o) {
+                if(!(o instanceof Map.Entry) || ((Map.Entry<?,?>) o).getKey() == null) {
+                    return false;
+                }
+
+                final Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+                final V v = get(entry.getKey());
+                return v != null && v.equals(entry.getValue());
+            }
+
+            public boolean remove(final Object o) {
+                if(!(o instanceof Map.Entry) || ((Map.Entry<?,?>) o).getKey() == null) {
+                    return false;
+                }
+
+                final Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+                return Range.this.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package bplus;
+
+//a position in a tree, seeks start from the current position instead of the root
+public interface Cursor<K,V> {
+    //true if k is in the tree, otherwise the cursor moves to the first entry after k
+    boolean seek(K k);
+    boolean first();
+    boolean last();
+    boolean next();
+    boolean prev();
+
+    //false once the cursor ran off either end or the tree is empty
+    boolean isValid();
+    K key();
+    V value();
+
+    //the cursor ends up on k
+    V put(K k, V v);
+
+    //the cursor ends up on the entry after the removed one
+    V remove();
+}
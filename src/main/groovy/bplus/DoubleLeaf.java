@@ -0,0 +1,7 @@
+package bplus;
+
+public interface DoubleLeaf extends DoubleNode {
+    double doubleValue(int index);
+    void doubleValue(int index, double v);
+    void putDouble(int index, double k, double v);
+}
@@ -0,0 +1,38 @@
+package bplus;
+
+public interface DoubleNode {
+    int size();
+    double doubleKey(int index);
+
+    default int searchDouble(final double lookFor) {
+        int low = 0;
+        int high = size() - 1;
+
+        while(low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = Double.compare(doubleKey(mid), lookFor);
+
+            if(cmp < 0) {
+                low = mid + 1;
+            }
+            else if(cmp > 0) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+
+        return Node.insertIndex(low);
+    }
+
+    default int navigateDouble(final double k) {
+        final int searchIndex = searchDouble(k);
+        if(searchIndex >= 0) {
+            return searchIndex;
+        }
+
+        final int _index = Node.insertIndex(searchIndex);
+        return _index == 0 ? 0 : _index - 1;
+    }
+}
@@ -0,0 +1,142 @@
+package bplus;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+//epoch based reclamation. a node that leaves the tree is retired with the epoch it left in and is only done, which
+//clears it and may hand it to a pool, once every reader pinned at that epoch or before has let go. pins are weakly
+//held so a reader that is dropped without finishing stops holding nodes back once it is collected
+public final class Epochs {
+
+    private static final long IDLE = Long.MAX_VALUE;
+
+    //one reader, the referent is the thread or the pin it belongs to
+    private static final class Slot extends WeakReference<Object> {
+        private volatile long pinned = IDLE;
+        private int depth = 0;
+        private final boolean once;
+
+        private Slot(final Object holder, final boolean once) {
+            super(holder);
+            this.once = once;
+        }
+    }
+
+    private static final class Retired {
+        private final Node<?,?> node;
+        private final long epoch;
+
+        private Retired(final Node<?,?> node, final long epoch) {
+            this.node = node;
+            this.epoch = epoch;
+        }
+    }
+
+    //a pin for a reader that lives across calls, the iterator of a scan
+    public final class Pin {
+        private final Slot slot;
+
+        private Pin() {
+            this.slot = register(this, true);
+            enter(slot);
+        }
+
+        public void release() {
+            slot.pinned = IDLE;
+        }
+    }
+
+    private final AtomicLong epoch = new AtomicLong();
+    private final Queue<Slot> slots = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Slot> threads = ThreadLocal.withInitial(() -> register(Thread.currentThread(), false));
+
+    //oldest first, retires come from whoever holds the tree's write side
+    private final ArrayDeque<Retired> limbo = new ArrayDeque<>();
+
+    private Slot register(final Object holder, final boolean once) {
+        final Slot ret = new Slot(holder, once);
+        slots.add(ret);
+        return ret;
+    }
+
+    //the epoch is read again after it is published, a retire that raced the first read is then seen
+    private void enter(final Slot slot) {
+        long at;
+        do {
+            at = epoch.get();
+            slot.pinned = at;
+        } while(epoch.get() != at);
+    }
+
+    //pins the calling thread until the matching exit, nested calls share the outer pin
+    public void enter() {
+        final Slot slot = threads.get();
+        if(slot.depth++ == 0) {
+            enter(slot);
+        }
+    }
+
+    public void exit() {
+        final Slot slot = threads.get();
+        if(--slot.depth == 0) {
+            slot.pinned = IDLE;
+        }
+    }
+
+    public Pin pin() {
+        return new Pin();
+    }
+
+    //the node has to be out of the tree already, readers that pin from here on can't reach it
+    public void retire(final Node<?,?> node) {
+        synchronized(limbo) {
+            limbo.addLast(new Retired(node, epoch.getAndIncrement()));
+        }
+    }
+
+    //does every retired node no pin can reach any more, the rest waits for a later call
+    public void reclaim() {
+        synchronized(limbo) {
+            if(limbo.isEmpty()) {
+                return;
+            }
+
+            final long oldest = oldest();
+            while(!limbo.isEmpty() && limbo.peekFirst().epoch < oldest) {
+                limbo.pollFirst().node.done();
+            }
+        }
+    }
+
+    //pins that are released for good or whose holder was collected are dropped on the way
+    private long oldest() {
+        long ret = IDLE;
+        for(Iterator<Slot> iter = slots.iterator(); iter.hasNext();) {
+            final Slot slot = iter.next();
+            final long pinned = slot.pinned;
+            if(slot.get() == null || (slot.once && pinned == IDLE)) {
+                iter.remove();
+            }
+            else {
+                ret = Math.min(ret, pinned);
+            }
+        }
+
+        return ret;
+    }
+
+    public long epoch() {
+        return epoch.get();
+    }
+
+    //nodes retired but not done yet
+    public int pending() {
+        synchronized(limbo) {
+            return limbo.size();
+        }
+    }
+}
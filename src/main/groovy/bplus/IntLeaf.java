@@ -0,0 +1,7 @@
+package bplus;
+
+public interface IntLeaf extends IntNode {
+    int intValue(int index);
+    void intValue(int index, int v);
+    void putInt(int index, int k, int v);
+}
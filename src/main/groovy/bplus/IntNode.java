@@ -0,0 +1,38 @@
+package bplus;
+
+public interface IntNode {
+    int size();
+    int intKey(int index);
+
+    default int searchInt(final int lookFor) {
+        int low = 0;
+        int high = size() - 1;
+
+        while(low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int key = intKey(mid);
+
+            if(key < lookFor) {
+                low = mid + 1;
+            }
+            else if(key > lookFor) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+
+        return Node.insertIndex(low);
+    }
+
+    default int navigateInt(final int k) {
+        final int searchIndex = searchInt(k);
+        if(searchIndex >= 0) {
+            return searchIndex;
+        }
+
+        final int _index = Node.insertIndex(searchIndex);
+        return _index == 0 ? 0 : _index - 1;
+    }
+}
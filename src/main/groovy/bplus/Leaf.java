@@ -10,6 +10,36 @@ import static bplus.Node.insertIndex;
 public interface Leaf<K extends Comparable<K>,V> extends Node<K,V> {
     V value(int index);
     Leaf<K,V> put(int index, K k, V v);
+
+    //sibling links, null at either end of the tree
+    Leaf<K,V> next();
+    void next(Leaf<K,V> leaf);
+    Leaf<K,V> prev();
+    void prev(Leaf<K,V> leaf);
+
+    default void linkNext(final Leaf<K,V> leaf) {
+        final Leaf<K,V> oldNext = next();
+        leaf.prev(this);
+        leaf.next(oldNext);
+        if(oldNext != null) {
+            oldNext.prev(leaf);
+        }
+
+        next(leaf);
+    }
+
+    //the leaf keeps its own links, a reader still on it walks on into the chain. done() or reuse clears them
+    default void unlink() {
+        final Leaf<K,V> p = prev();
+        final Leaf<K,V> n = next();
+        if(p != null) {
+            p.next(n);
+        }
+
+        if(n != null) {
+            n.prev(p);
+        }
+    }
     
     default void remove(final int index) {
         final int shiftIndex = index + 1;
@@ -46,11 +76,15 @@ public interface Leaf<K extends Comparable<K>,V> extends Node<K,V> {
             throw new RuntimeException("duplicate key violation");
         }
 
+        return insert(insertIndex(searchPoint), k, v);
+    }
+
+    //positional insert, the caller keeps the keys in order
+    default int insert(final int index, final K k, final V v) {
         if(isFull()) {
             throw new RuntimeException("leaf is full");
         }
         
-        final int index = insertIndex(searchPoint);
         sizeUp(1);
         if(index + 1 == size()) {
             put(index, k, v);
@@ -69,11 +103,14 @@ public interface Leaf<K extends Comparable<K>,V> extends Node<K,V> {
             throw new RuntimeException("duplicate key violation");
         }
 
+        return split(insertIndex(searchPoint), k, v);
+    }
+
+    default Leaf<K,V> split(final int index, final K k, final V v) {
         if(!isFull()) {
             throw new RuntimeException("leaf is not full");
         }
 
-        final int index = insertIndex(searchPoint);
         final Leaf<K,V> newRight = newLeaf();
         final int totalElements = size() + 1;
         final int leftSize = totalElements >>> 1; //+1 to include new element
@@ -83,15 +120,16 @@ public interface Leaf<K extends Comparable<K>,V> extends Node<K,V> {
             newRight.size(rightSize);
             newRight.copy(leftSize - 1, this, 0, rightSize);
             size(leftSize - 1);
-            insert(k, v);
+            insert(index, k, v);
         }
         else {
             newRight.size(rightSize - 1);
             newRight.copy(leftSize, this, 0, rightSize - 1);
-            newRight.insert(k, v);
+            newRight.insert(index - leftSize, k, v);
             size(leftSize);
         }
 
+        linkNext(newRight);
         return newRight;
     }
     
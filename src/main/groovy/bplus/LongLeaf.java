@@ -0,0 +1,7 @@
+package bplus;
+
+public interface LongLeaf extends LongNode {
+    long longValue(int index);
+    void longValue(int index, long v);
+    void putLong(int index, long k, long v);
+}
@@ -0,0 +1,38 @@
+package bplus;
+
+public interface LongNode {
+    int size();
+    long longKey(int index);
+
+    default int searchLong(final long lookFor) {
+        int low = 0;
+        int high = size() - 1;
+
+        while(low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long key = longKey(mid);
+
+            if(key < lookFor) {
+                low = mid + 1;
+            }
+            else if(key > lookFor) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+
+        return Node.insertIndex(low);
+    }
+
+    default int navigateLong(final long k) {
+        final int searchIndex = searchLong(k);
+        if(searchIndex >= 0) {
+            return searchIndex;
+        }
+
+        final int _index = Node.insertIndex(searchIndex);
+        return _index == 0 ? 0 : _index - 1;
+    }
+}
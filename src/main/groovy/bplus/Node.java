@@ -2,6 +2,7 @@ package bplus;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.locks.StampedLock;
 
 public interface Node<K extends Comparable<K>,V> {
     int size();
@@ -20,6 +21,20 @@ public interface Node<K extends Comparable<K>,V> {
     void leftTraverse(Traversal<K,V> traversal);
     void rightTraverse(Traversal<K,V> traversal);
     
+    //only nodes of a concurrent store have one, readers validate its stamps and writers hold it while they change the node
+    default StampedLock latch() {
+        return null;
+    }
+
+    //b-link mode, keys from here on belong to the nodes to the right, null for the last node of a level
+    default K highKey() {
+        return null;
+    }
+
+    default void highKey(final K k) {
+        throw new UnsupportedOperationException("store has no high keys");
+    }
+
     default int lastIndex() {
         return size() - 1;
     }
@@ -74,6 +89,40 @@ public interface Node<K extends Comparable<K>,V> {
         return insertIndex(low);
     }
 
+    //first index whose key is not less than k, size() if there is none
+    default int lowerBound(final K k) {
+        int low = 0;
+        int high = size();
+        while(low < high) {
+            final int mid = (low + high) >>> 1;
+            if(compare(mid, k) < 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    //first index whose key is greater than k, size() if there is none
+    default int upperBound(final K k) {
+        int low = 0;
+        int high = size();
+        while(low < high) {
+            final int mid = (low + high) >>> 1;
+            if(compare(mid, k) <= 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
     default Node<K,V> sizeUp(final int by) {
         size(size() + by);
         return this;
@@ -1,5 +1,6 @@
 package bplus;
 
+import java.util.Comparator;
 import java.util.function.Consumer;
 
 public interface NodeStore<K extends Comparable<K>,V> {
@@ -7,4 +8,37 @@ public interface NodeStore<K extends Comparable<K>,V> {
     void setRoot(Node<K,V> val);
     Class<K> getKeyType();
     Class<V> getValueType();
+
+    //number of entries in the tree, negative when unknown
+    long getEntryCount();
+    void setEntryCount(long val);
+
+    //counted stores keep per child entry counts in branches
+    default boolean isCounted() {
+        return false;
+    }
+
+    //concurrent stores give every node a latch, a ConcurrentBplusTree needs one
+    default boolean isConcurrent() {
+        return false;
+    }
+
+    //ordering used by the nodes, null for natural ordering
+    default Comparator<? super K> getComparator() {
+        return null;
+    }
+
+    default SearchStrategy getSearchStrategy() {
+        return SearchStrategy.BINARY;
+    }
+
+    //a store for another tree built from this store's nodes, only the root and the entry count are its own.
+    //trees can only hand nodes to each other when their stores have the same owner
+    default NodeStore<K,V> fork() {
+        throw new UnsupportedOperationException("store can not share its nodes with another tree");
+    }
+
+    default NodeStore<K,V> owner() {
+        return this;
+    }
 }
@@ -0,0 +1,327 @@
+package bplus;
+
+//in node searches, all return the index of the key or Node.insertIndex(insertion point)
+public interface SearchStrategy {
+    String name();
+    <K extends Comparable<K>> int search(Node<K,?> node, K lookFor);
+    int search(long[] keys, int size, long lookFor);
+    int search(int[] keys, int size, int lookFor);
+    int search(double[] keys, int size, double lookFor);
+
+    SearchStrategy BINARY = new SearchStrategy() {
+            public String name() { return "binary"; }
+
+            public <K extends Comparable<K>> int search(final Node<K,?> node, final K lookFor) {
+                int low = 0;
+                int high = node.size() - 1;
+
+                while(low <= high) {
+                    final int mid = (low + high) >>> 1;
+                    final int cmp = node.compare(mid, lookFor);
+
+                    if(cmp < 0) {
+                        low = mid + 1;
+                    }
+                    else if(cmp > 0) {
+                        high = mid - 1;
+                    }
+                    else {
+                        return mid;
+                    }
+                }
+
+                return Node.insertIndex(low);
+            }
+
+            public int search(final long[] keys, final int size, final long lookFor) {
+                int low = 0;
+                int high = size - 1;
+
+                while(low <= high) {
+                    final int mid = (low + high) >>> 1;
+                    final long key = keys[mid];
+
+                    if(key < lookFor) {
+                        low = mid + 1;
+                    }
+                    else if(key > lookFor) {
+                        high = mid - 1;
+                    }
+                    else {
+                        return mid;
+                    }
+                }
+
+                return Node.insertIndex(low);
+            }
+
+            public int search(final int[] keys, final int size, final int lookFor) {
+                int low = 0;
+                int high = size - 1;
+
+                while(low <= high) {
+                    final int mid = (low + high) >>> 1;
+                    final int key = keys[mid];
+
+                    if(key < lookFor) {
+                        low = mid + 1;
+                    }
+                    else if(key > lookFor) {
+                        high = mid - 1;
+                    }
+                    else {
+                        return mid;
+                    }
+                }
+
+                return Node.insertIndex(low);
+            }
+
+            public int search(final double[] keys, final int size, final double lookFor) {
+                int low = 0;
+                int high = size - 1;
+
+                while(low <= high) {
+                    final int mid = (low + high) >>> 1;
+                    final int cmp = Double.compare(keys[mid], lookFor);
+
+                    if(cmp < 0) {
+                        low = mid + 1;
+                    }
+                    else if(cmp > 0) {
+                        high = mid - 1;
+                    }
+                    else {
+                        return mid;
+                    }
+                }
+
+                return Node.insertIndex(low);
+            }
+        };
+
+    //front to back scan, no mispredicted jumps around the node for small orders
+    SearchStrategy LINEAR = new SearchStrategy() {
+            public String name() { return "linear"; }
+
+            public <K extends Comparable<K>> int search(final Node<K,?> node, final K lookFor) {
+                final int size = node.size();
+                for(int i = 0; i < size; ++i) {
+                    final int cmp = node.compare(i, lookFor);
+                    if(cmp >= 0) {
+                        return cmp == 0 ? i : Node.insertIndex(i);
+                    }
+                }
+
+                return Node.insertIndex(size);
+            }
+
+            public int search(final long[] keys, final int size, final long lookFor) {
+                int i = 0;
+                while(i < size && keys[i] < lookFor) {
+                    ++i;
+                }
+
+                return (i < size && keys[i] == lookFor) ? i : Node.insertIndex(i);
+            }
+
+            public int search(final int[] keys, final int size, final int lookFor) {
+                int i = 0;
+                while(i < size && keys[i] < lookFor) {
+                    ++i;
+                }
+
+                return (i < size && keys[i] == lookFor) ? i : Node.insertIndex(i);
+            }
+
+            public int search(final double[] keys, final int size, final double lookFor) {
+                int i = 0;
+                while(i < size && Double.compare(keys[i], lookFor) < 0) {
+                    ++i;
+                }
+
+                return (i < size && Double.compare(keys[i], lookFor) == 0) ? i : Node.insertIndex(i);
+            }
+        };
+
+    //lower bound over a shrinking window, the only data dependent choice is a conditional move
+    SearchStrategy BRANCHLESS = new SearchStrategy() {
+            public String name() { return "branchless"; }
+
+            public <K extends Comparable<K>> int search(final Node<K,?> node, final K lookFor) {
+                final int size = node.size();
+                if(size == 0) {
+                    return Node.insertIndex(0);
+                }
+
+                int base = 0;
+                int length = size;
+                while(length > 1) {
+                    final int half = length >>> 1;
+                    base = node.compare(base + half, lookFor) < 0 ? base + half : base;
+                    length -= half;
+                }
+
+                final int lower = node.compare(base, lookFor) < 0 ? base + 1 : base;
+                return (lower < size && node.compare(lower, lookFor) == 0) ? lower : Node.insertIndex(lower);
+            }
+
+            public int search(final long[] keys, final int size, final long lookFor) {
+                if(size == 0) {
+                    return Node.insertIndex(0);
+                }
+
+                int base = 0;
+                int length = size;
+                while(length > 1) {
+                    final int half = length >>> 1;
+                    base = keys[base + half] < lookFor ? base + half : base;
+                    length -= half;
+                }
+
+                final int lower = keys[base] < lookFor ? base + 1 : base;
+                return (lower < size && keys[lower] == lookFor) ? lower : Node.insertIndex(lower);
+            }
+
+            public int search(final int[] keys, final int size, final int lookFor) {
+                if(size == 0) {
+                    return Node.insertIndex(0);
+                }
+
+                int base = 0;
+                int length = size;
+                while(length > 1) {
+                    final int half = length >>> 1;
+                    base = keys[base + half] < lookFor ? base + half : base;
+                    length -= half;
+                }
+
+                final int lower = keys[base] < lookFor ? base + 1 : base;
+                return (lower < size && keys[lower] == lookFor) ? lower : Node.insertIndex(lower);
+            }
+
+            public int search(final double[] keys, final int size, final double lookFor) {
+                if(size == 0) {
+                    return Node.insertIndex(0);
+                }
+
+                int base = 0;
+                int length = size;
+                while(length > 1) {
+                    final int half = length >>> 1;
+                    base = Double.compare(keys[base + half], lookFor) < 0 ? base + half : base;
+                    length -= half;
+                }
+
+                final int lower = Double.compare(keys[base], lookFor) < 0 ? base + 1 : base;
+                return (lower < size && Double.compare(keys[lower], lookFor) == 0) ? lower : Node.insertIndex(lower);
+            }
+        };
+
+    //guesses the position from the key values, only numeric columns have values to guess from
+    SearchStrategy INTERPOLATION = new SearchStrategy() {
+            public String name() { return "interpolation"; }
+
+            public <K extends Comparable<K>> int search(final Node<K,?> node, final K lookFor) {
+                return BINARY.search(node, lookFor);
+            }
+
+            public int search(final long[] keys, final int size, final long lookFor) {
+                int low = 0;
+                int high = size - 1;
+
+                while(low <= high) {
+                    final long lo = keys[low];
+                    final long hi = keys[high];
+                    if(lookFor < lo) {
+                        return Node.insertIndex(low);
+                    }
+                    else if(lookFor > hi) {
+                        return Node.insertIndex(high + 1);
+                    }
+
+                    //doubles so the key distance can't overflow
+                    final int mid = (hi == lo) ? low :
+                        low + (int) (((double) lookFor - lo) / ((double) hi - lo) * (high - low));
+                    final long key = keys[mid];
+
+                    if(key < lookFor) {
+                        low = mid + 1;
+                    }
+                    else if(key > lookFor) {
+                        high = mid - 1;
+                    }
+                    else {
+                        return mid;
+                    }
+                }
+
+                return Node.insertIndex(low);
+            }
+
+            public int search(final int[] keys, final int size, final int lookFor) {
+                int low = 0;
+                int high = size - 1;
+
+                while(low <= high) {
+                    final int lo = keys[low];
+                    final int hi = keys[high];
+                    if(lookFor < lo) {
+                        return Node.insertIndex(low);
+                    }
+                    else if(lookFor > hi) {
+                        return Node.insertIndex(high + 1);
+                    }
+
+                    final int mid = (hi == lo) ? low :
+                        low + (int) (((long) lookFor - lo) * (high - low) / ((long) hi - lo));
+                    final int key = keys[mid];
+
+                    if(key < lookFor) {
+                        low = mid + 1;
+                    }
+                    else if(key > lookFor) {
+                        high = mid - 1;
+                    }
+                    else {
+                        return mid;
+                    }
+                }
+
+                return Node.insertIndex(low);
+            }
+
+            public int search(final double[] keys, final int size, final double lookFor) {
+                int low = 0;
+                int high = size - 1;
+
+                while(low <= high) {
+                    final double lo = keys[low];
+                    final double hi = keys[high];
+                    if(Double.compare(lookFor, lo) < 0) {
+                        return Node.insertIndex(low);
+                    }
+                    else if(Double.compare(lookFor, hi) > 0) {
+                        return Node.insertIndex(high + 1);
+                    }
+
+                    //nan, infinities and signed zeros give no usable fraction, bisect instead
+                    final double fraction = (lookFor - lo) / (hi - lo);
+                    final int mid = (fraction >= 0d && fraction <= 1d) ? low + (int) (fraction * (high - low)) : (low + high) >>> 1;
+                    final int cmp = Double.compare(keys[mid], lookFor);
+
+                    if(cmp < 0) {
+                        low = mid + 1;
+                    }
+                    else if(cmp > 0) {
+                        high = mid - 1;
+                    }
+                    else {
+                        return mid;
+                    }
+                }
+
+                return Node.insertIndex(low);
+            }
+        };
+}
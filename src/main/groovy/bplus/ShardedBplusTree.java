@@ -0,0 +1,913 @@
+package bplus;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+//range partitioned tree. every shard is a BplusTree over its own store behind its own lock, so writers on different
+//shards never meet. shard i holds the keys from bound i-1 up to bound i, rebalancing moves entries between
+//neighbors and the bound between them with both of them locked
+public class ShardedBplusTree<K extends Comparable<K>,V> extends AbstractMap<K,V> implements ConcurrentNavigableMap<K,V> {
+
+    //what a scan hands out
+    private static final int KEYS = 0;
+    private static final int VALUES = 1;
+    private static final int ENTRIES = 2;
+
+    //entries a scan copies out under one read lock
+    private static final int BATCH = 64;
+
+    //shards smaller than this are never worth moving entries for
+    private static final long MIN_REBALANCE = 1024;
+
+    private static final class Shard<K extends Comparable<K>,V> {
+        private final NodeStore<K,V> store;
+        private final BplusTree<K,V> tree;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        //keys from lo on up to hi, null is open. only changes with the write lock held
+        private K lo;
+        private K hi;
+
+        private Shard(final NodeStore<K,V> store, final K lo, final K hi) {
+            this.store = store;
+            this.tree = new BplusTree<>(store);
+            this.lo = lo;
+            this.hi = hi;
+        }
+    }
+
+    private final Shard<K,V>[] shards;
+    private final Class<K> keyType;
+    private final Comparator<? super K> comparator;
+    private final Comparator<? super K> order;
+    private final LongAdder size = new LongAdder();
+
+    //bound i is where shard i+1 starts, replaced whole while the two shards it is between are write locked
+    private volatile Object[] bounds;
+
+    //rebalances go one at a time, what they move is locked shard by shard
+    private final ReentrantLock rebalancing = new ReentrantLock();
+    private double skew = 0;
+
+    private final Range all = new Range(null, false, null, false, false);
+
+    //one shard per bound and one more, stores has to give a new empty store every time it is called
+    public ShardedBplusTree(final Supplier<? extends NodeStore<K,V>> stores, final List<? extends K> bounds) {
+        this(stores.get(), stores, bounds);
+    }
+
+    //the bounds are the quantiles of a sample of the keys, fewer shards when the sample has fewer distinct keys
+    public ShardedBplusTree(final Supplier<? extends NodeStore<K,V>> stores, final int count, final Collection<? extends K> sample) {
+        this(stores.get(), stores, count, sample);
+    }
+
+    private ShardedBplusTree(final NodeStore<K,V> first, final Supplier<? extends NodeStore<K,V>> stores, final int count,
+                             final Collection<? extends K> sample) {
+        this(first, stores, quantiles(Comparators.order(first.getKeyType(), first.getComparator()), count, sample));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ShardedBplusTree(final NodeStore<K,V> first, final Supplier<? extends NodeStore<K,V>> stores, final List<? extends K> bounds) {
+        this.keyType = first.getKeyType();
+        this.comparator = first.getComparator();
+        this.order = Comparators.order(keyType, comparator);
+        for(int i = 1; i < bounds.size(); ++i) {
+            if(order.compare(bounds.get(i - 1), bounds.get(i)) >= 0) {
+                throw new IllegalArgumentException("bounds must be strictly ascending");
+            }
+        }
+
+        this.shards = (Shard<K,V>[]) new Shard[bounds.size() + 1];
+        for(int i = 0; i < shards.length; ++i) {
+            final NodeStore<K,V> store = (i == 0) ? first : stores.get();
+            if(store.getRoot().isBranch() || store.getRoot().size() > 0) {
+                throw new IllegalArgumentException("shard stores must be empty");
+            }
+
+            for(int j = 0; j < i; ++j) {
+                if(shards[j].store.owner() == store.owner()) {
+                    throw new IllegalArgumentException("shards can't share a store");
+                }
+            }
+
+            shards[i] = new Shard<>(store, (i > 0) ? key(bounds.get(i - 1)) : null, (i < bounds.size()) ? key(bounds.get(i)) : null);
+        }
+
+        this.bounds = bounds.toArray();
+    }
+
+    private static <K> List<K> quantiles(final Comparator<? super K> order, final int count, final Collection<? extends K> sample) {
+        if(count < 1) {
+            throw new IllegalArgumentException("at least one shard");
+        }
+
+        final List<K> sorted = new ArrayList<>(sample);
+        sorted.sort(order);
+        final List<K> ret = new ArrayList<>();
+        for(int i = 1; i < count && !sorted.isEmpty(); ++i) {
+            final K bound = sorted.get((int) ((long) sorted.size() * i / count));
+            if(ret.isEmpty() || order.compare(ret.get(ret.size() - 1), bound) < 0) {
+                ret.add(bound);
+            }
+        }
+
+        return ret;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<K> getBounds() {
+        return Collections.unmodifiableList((List<K>) (List<?>) Arrays.asList(bounds.clone()));
+    }
+
+    public double getSkew() {
+        return skew;
+    }
+
+    //a write that leaves its shard with more than skew times its share of the entries rebalances, 0 leaves
+    //rebalancing to the caller
+    public void setSkew(final double val) {
+        if(val != 0 && val <= 1) {
+            throw new IllegalArgumentException("skew must be 0 or more than 1");
+        }
+
+        skew = val;
+    }
+
+    private K key(final Object o) {
+        return keyType.cast(Objects.requireNonNull(o));
+    }
+
+    //index of the shard for k, or for the keys just below k when strict
+    @SuppressWarnings("unchecked")
+    private int route(final K k, final boolean strict) {
+        final Object[] at = bounds;
+        int low = 0;
+        int high = at.length;
+        while(low < high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = order.compare((K) at[mid], k);
+            if(cmp < 0 || (cmp == 0 && !strict)) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    private boolean covers(final Shard<K,V> shard, final K k, final boolean strict) {
+        if(shard.lo != null) {
+            final int cmp = order.compare(shard.lo, k);
+            if(cmp > 0 || (cmp == 0 && strict)) {
+                return false;
+            }
+        }
+
+        if(shard.hi != null) {
+            final int cmp = order.compare(k, shard.hi);
+            return cmp < 0 || (cmp == 0 && strict);
+        }
+
+        return true;
+    }
+
+    //the shard for k locked, the bounds are read again whenever a rebalance moved k out of the shard meanwhile. a
+    //null k is the first or last shard, which can't move
+    private Shard<K,V> lock(final K k, final boolean strict, final boolean last, final boolean write) {
+        while(true) {
+            final Shard<K,V> shard = shards[(k != null) ? route(k, strict) : last ? shards.length - 1 : 0];
+            final Lock lock = write ? shard.lock.writeLock() : shard.lock.readLock();
+            lock.lock();
+            if(k == null || covers(shard, k, strict)) {
+                return shard;
+            }
+
+            lock.unlock();
+        }
+    }
+
+    private <T> T read(final K k, final Function<BplusTree<K,V>,T> op) {
+        final Shard<K,V> shard = lock(k, false, false, false);
+        try {
+            return op.apply(shard.tree);
+        }
+        finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    //runs op on the shard of k, whatever it changes in the shard's size is counted
+    private <T> T write(final K k, final Function<BplusTree<K,V>,T> op) {
+        final Shard<K,V> shard = lock(k, false, false, true);
+        final T ret;
+        final long before;
+        final long after;
+        try {
+            before = shard.tree.longSize();
+            ret = op.apply(shard.tree);
+            after = shard.tree.longSize();
+            size.add(after - before);
+        }
+        finally {
+            shard.lock.writeLock().unlock();
+        }
+
+        if(skew != 0 && after > before && after >= MIN_REBALANCE && after * shards.length > skew * size.sum()) {
+            tryRebalance();
+        }
+
+        return ret;
+    }
+
+    //nearest entry to k in key order, a null k gives the first or last entry. a shard with nothing past k sends
+    //the search on from its bound
+    private Map.Entry<K,V> near(final K from, final boolean after, final boolean fromInclusive) {
+        K k = from;
+        boolean inclusive = fromInclusive;
+        while(true) {
+            final Shard<K,V> shard = lock(k, !after && !inclusive, !after, false);
+            final K next;
+            try {
+                final BplusTree<K,V> tree = shard.tree;
+                final Map.Entry<K,V> ret = (k == null) ? (after ? tree.firstEntry() : tree.lastEntry())
+                    : after ? (inclusive ? tree.ceilingEntry(k) : tree.higherEntry(k))
+                    : (inclusive ? tree.floorEntry(k) : tree.lowerEntry(k));
+                if(ret != null) {
+                    return ret;
+                }
+
+                next = after ? shard.hi : shard.lo;
+            }
+            finally {
+                shard.lock.readLock().unlock();
+            }
+
+            if(next == null) {
+                return null;
+            }
+
+            k = next;
+            inclusive = after;
+        }
+    }
+
+    //evens out the shards so everything left of bound i is its share of the total. the first pass only moves
+    //entries right and the second only left, so each shard has what it is asked to give by the time it is asked
+    public void rebalance() {
+        rebalancing.lock();
+        try {
+            final int n = shards.length;
+            final long total = size.sum();
+            long left = 0;
+            for(int i = 0; i + 1 < n; ++i) {
+                left += shift(i, total * (i + 1) / n - left, true);
+            }
+
+            long right = 0;
+            for(int i = n - 2; i >= 0; --i) {
+                right += shift(i, total - total * (i + 1) / n - right, false);
+            }
+        }
+        finally {
+            rebalancing.unlock();
+        }
+    }
+
+    //writes don't wait on a rebalance that is already running
+    private void tryRebalance() {
+        if(rebalancing.tryLock()) {
+            try {
+                rebalance();
+            }
+            finally {
+                rebalancing.unlock();
+            }
+        }
+    }
+
+    //moves entries across the bound after shard i until the shard on the given side of it holds want, entries
+    //only ever leave that side and it keeps at least one to bound it with. returns what it ends up holding
+    @SuppressWarnings("unchecked")
+    private long shift(final int i, final long want, final boolean left) {
+        final Shard<K,V> from = shards[left ? i : i + 1];
+        final Shard<K,V> to = shards[left ? i + 1 : i];
+        shards[i].lock.writeLock().lock();
+        shards[i + 1].lock.writeLock().lock();
+        try {
+            final long have = from.tree.longSize();
+            if(have > 1 && have > want) {
+                final Iterator<Map.Entry<K,V>> it = (left ? from.tree.descendingMap() : from.tree).entrySet().iterator();
+                final List<Map.Entry<K,V>> moved = new ArrayList<>();
+                for(long count = Math.min(have - Math.max(want, 0), have - 1); count > 0; --count) {
+                    moved.add(it.next());
+                }
+
+                if(left) {
+                    Collections.reverse(moved);
+                }
+
+                //the first key moved right, or the first one staying when moving left
+                final K bound = left ? moved.get(0).getKey() : it.next().getKey();
+                from.tree.removeRange(moved.get(0).getKey(), true, moved.get(moved.size() - 1).getKey(), true);
+                to.tree.putAllSorted(moved.iterator());
+
+                final Object[] at = bounds.clone();
+                at[i] = bound;
+                shards[i].hi = bound;
+                shards[i + 1].lo = bound;
+                bounds = at;
+            }
+
+            return from.tree.longSize();
+        }
+        finally {
+            shards[i + 1].lock.writeLock().unlock();
+            shards[i].lock.writeLock().unlock();
+        }
+    }
+
+    //entries per shard in shard order
+    public long[] shardSizes() {
+        final long[] ret = new long[shards.length];
+        for(int i = 0; i < shards.length; ++i) {
+            final Shard<K,V> shard = shards[i];
+            shard.lock.readLock().lock();
+            try {
+                ret[i] = shard.tree.longSize();
+            }
+            finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+
+        return ret;
+    }
+
+    public V get(final Object o) {
+        final K k = key(o);
+        return read(k, t -> t.get(k));
+    }
+
+    public boolean containsKey(final Object o) {
+        return get(o) != null;
+    }
+
+    public V put(final K k, final V v) {
+        Objects.requireNonNull(v);
+        return write(key(k), t -> t.put(k, v));
+    }
+
+    public V putIfAbsent(final K k, final V v) {
+        Objects.requireNonNull(v);
+        return write(key(k), t -> t.putIfAbsent(k, v));
+    }
+
+    public V replace(final K k, final V v) {
+        Objects.requireNonNull(v);
+        return write(key(k), t -> t.containsKey(k) ? t.put(k, v) : null);
+    }
+
+    public boolean replace(final K k, final V oldValue, final V newValue) {
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        return write(key(k), t -> oldValue.equals(t.get(k)) && t.put(k, newValue) != null);
+    }
+
+    public V remove(final Object o) {
+        final K k = key(o);
+        return write(k, t -> t.remove(k));
+    }
+
+    public boolean remove(final Object o, final Object value) {
+        final K k = key(o);
+        return value != null && write(k, t -> t.remove(k, value));
+    }
+
+    //the function runs with the shard locked, it must not use this map
+    public V compute(final K k, final BiFunction<? super K,? super V,? extends V> f) {
+        return write(key(k), t -> t.compute(k, f));
+    }
+
+    public V computeIfAbsent(final K k, final Function<? super K,? extends V> f) {
+        return write(key(k), t -> t.computeIfAbsent(k, f));
+    }
+
+    public V computeIfPresent(final K k, final BiFunction<? super K,? super V,? extends V> f) {
+        return write(key(k), t -> t.computeIfPresent(k, f));
+    }
+
+    public V merge(final K k, final V v, final BiFunction<? super V,? super V,? extends V> f) {
+        Objects.requireNonNull(v);
+        return write(key(k), t -> t.merge(k, v, f));
+    }
+
+    //exact once writers are done, a moving target while they run
+    public long longSize() {
+        return size.sum();
+    }
+
+    public int size() {
+        return (int) Math.min(longSize(), Integer.MAX_VALUE);
+    }
+
+    public boolean isEmpty() {
+        return all.isEmpty();
+    }
+
+    //shard by shard, a writer behind the clear finds its shard empty
+    public void clear() {
+        for(Shard<K,V> shard : shards) {
+            shard.lock.writeLock().lock();
+            try {
+                size.add(-shard.tree.longSize());
+                shard.tree.clear();
+            }
+            finally {
+                shard.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public Comparator<? super K> comparator() { return all.comparator(); }
+    public K firstKey() { return all.firstKey(); }
+    public K lastKey() { return all.lastKey(); }
+    public Map.Entry<K,V> firstEntry() { return all.firstEntry(); }
+    public Map.Entry<K,V> lastEntry() { return all.lastEntry(); }
+    public Map.Entry<K,V> pollFirstEntry() { return all.pollFirstEntry(); }
+    public Map.Entry<K,V> pollLastEntry() { return all.pollLastEntry(); }
+    public Map.Entry<K,V> ceilingEntry(final K k) { return all.ceilingEntry(k); }
+    public Map.Entry<K,V> floorEntry(final K k) { return all.floorEntry(k); }
+    public Map.Entry<K,V> higherEntry(final K k) { return all.higherEntry(k); }
+    public Map.Entry<K,V> lowerEntry(final K k) { return all.lowerEntry(k); }
+    public K ceilingKey(final K k) { return all.ceilingKey(k); }
+    public K floorKey(final K k) { return all.floorKey(k); }
+    public K higherKey(final K k) { return all.higherKey(k); }
+    public K lowerKey(final K k) { return all.lowerKey(k); }
+
+    public ConcurrentNavigableMap<K,V> subMap(final K fromKey, final boolean fromInclusive, final K toKey, final boolean toInclusive) {
+        return all.subMap(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    public ConcurrentNavigableMap<K,V> headMap(final K toKey, final boolean inclusive) { return all.headMap(toKey, inclusive); }
+    public ConcurrentNavigableMap<K,V> tailMap(final K fromKey, final boolean inclusive) { return all.tailMap(fromKey, inclusive); }
+    public ConcurrentNavigableMap<K,V> subMap(final K fromKey, final K toKey) { return all.subMap(fromKey, toKey); }
+    public ConcurrentNavigableMap<K,V> headMap(final K toKey) { return all.headMap(toKey); }
+    public ConcurrentNavigableMap<K,V> tailMap(final K fromKey) { return all.tailMap(fromKey); }
+    public ConcurrentNavigableMap<K,V> descendingMap() { return all.descendingMap(); }
+
+    public NavigableSet<K> keySet() { return all.keySet(); }
+    public NavigableSet<K> navigableKeySet() { return all.navigableKeySet(); }
+    public NavigableSet<K> descendingKeySet() { return all.descendingKeySet(); }
+    public Collection<V> values() { return all.values(); }
+    public Set<Map.Entry<K,V>> entrySet() { return all.entrySet(); }
+
+    private static <K> K keyOf(final Map.Entry<K,?> entry) {
+        return (entry == null) ? null : entry.getKey();
+    }
+
+    public boolean assertValid() {
+        for(Shard<K,V> shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                shard.tree.assertValidKeys();
+                shard.tree.assertOrders();
+                shard.tree.assertCounts();
+                if(!shard.tree.isEmpty()) {
+                    assert shard.lo == null || order.compare(shard.lo, shard.tree.firstKey()) <= 0 : "key below its shard";
+                    assert shard.hi == null || order.compare(shard.tree.lastKey(), shard.hi) < 0 : "key past its shard";
+                }
+            }
+            finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+
+        return true;
+    }
+
+    //bounded by keys like the tree's own views, null bounds are open
+    private final class Range extends AbstractMap<K,V> implements ConcurrentNavigableMap<K,V> {
+        private final K lo;
+        private final boolean loInclusive;
+        private final K hi;
+        private final boolean hiInclusive;
+        private final boolean descending;
+
+        private Range(final K lo, final boolean loInclusive, final K hi, final boolean hiInclusive, final boolean descending) {
+            if(lo != null && hi != null && order.compare(lo, hi) > 0) {
+                throw new IllegalArgumentException("inconsistent range");
+            }
+
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        private boolean tooLow(final K k) {
+            if(lo == null) {
+                return false;
+            }
+
+            final int cmp = order.compare(k, lo);
+            return cmp < 0 || (cmp == 0 && !loInclusive);
+        }
+
+        private boolean tooHigh(final K k) {
+            if(hi == null) {
+                return false;
+            }
+
+            final int cmp = order.compare(k, hi);
+            return cmp > 0 || (cmp == 0 && !hiInclusive);
+        }
+
+        private boolean inRange(final K k) {
+            return !tooLow(k) && !tooHigh(k);
+        }
+
+        private boolean isWhole() {
+            return lo == null && hi == null;
+        }
+
+        private K check(final Object o) {
+            final K k = key(o);
+            if(!inRange(k)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+
+            return k;
+        }
+
+        //in key order whatever the direction of the view
+        private Map.Entry<K,V> lowest() {
+            final Map.Entry<K,V> ret = near(lo, true, loInclusive);
+            return (ret == null || tooHigh(ret.getKey())) ? null : ret;
+        }
+
+        private Map.Entry<K,V> highest() {
+            final Map.Entry<K,V> ret = near(hi, false, hiInclusive);
+            return (ret == null || tooLow(ret.getKey())) ? null : ret;
+        }
+
+        private Map.Entry<K,V> above(final K k, final boolean inclusive) {
+            if(tooLow(k)) {
+                return lowest();
+            }
+
+            final Map.Entry<K,V> ret = near(k, true, inclusive);
+            return (ret == null || tooHigh(ret.getKey())) ? null : ret;
+        }
+
+        private Map.Entry<K,V> below(final K k, final boolean inclusive) {
+            if(tooHigh(k)) {
+                return highest();
+            }
+
+            final Map.Entry<K,V> ret = near(k, false, inclusive);
+            return (ret == null || tooLow(ret.getKey())) ? null : ret;
+        }
+
+        public Map.Entry<K,V> firstEntry() { return descending ? highest() : lowest(); }
+        public Map.Entry<K,V> lastEntry() { return descending ? lowest() : highest(); }
+        public Map.Entry<K,V> ceilingEntry(final K k) { return descending ? below(key(k), true) : above(key(k), true); }
+        public Map.Entry<K,V> higherEntry(final K k) { return descending ? below(key(k), false) : above(key(k), false); }
+        public Map.Entry<K,V> floorEntry(final K k) { return descending ? above(key(k), true) : below(key(k), true); }
+        public Map.Entry<K,V> lowerEntry(final K k) { return descending ? above(key(k), false) : below(key(k), false); }
+        public K ceilingKey(final K k) { return keyOf(ceilingEntry(k)); }
+        public K higherKey(final K k) { return keyOf(higherEntry(k)); }
+        public K floorKey(final K k) { return keyOf(floorEntry(k)); }
+        public K lowerKey(final K k) { return keyOf(lowerEntry(k)); }
+
+        public K firstKey() {
+            final Map.Entry<K,V> entry = firstEntry();
+            if(entry == null) {
+                throw new NoSuchElementException();
+            }
+
+            return entry.getKey();
+        }
+
+        public K lastKey() {
+            final Map.Entry<K,V> entry = lastEntry();
+            if(entry == null) {
+                throw new NoSuchElementException();
+            }
+
+            return entry.getKey();
+        }
+
+        public Map.Entry<K,V> pollFirstEntry() { return poll(true); }
+        public Map.Entry<K,V> pollLastEntry() { return poll(false); }
+
+        //another thread can take or change the entry first, then the next one is tried
+        private Map.Entry<K,V> poll(final boolean first) {
+            while(true) {
+                final Map.Entry<K,V> entry = first ? firstEntry() : lastEntry();
+                if(entry == null || ShardedBplusTree.this.remove(entry.getKey(), entry.getValue())) {
+                    return entry;
+                }
+            }
+        }
+
+        public V get(final Object o) {
+            final K k = key(o);
+            return inRange(k) ? ShardedBplusTree.this.get(k) : null;
+        }
+
+        public boolean containsKey(final Object o) {
+            return get(o) != null;
+        }
+
+        public V put(final K k, final V v) { return ShardedBplusTree.this.put(check(k), v); }
+        public V putIfAbsent(final K k, final V v) { return ShardedBplusTree.this.putIfAbsent(check(k), v); }
+        public V replace(final K k, final V v) { return inRange(key(k)) ? ShardedBplusTree.this.replace(k, v) : null; }
+
+        public boolean replace(final K k, final V oldValue, final V newValue) {
+            return inRange(key(k)) && ShardedBplusTree.this.replace(k, oldValue, newValue);
+        }
+
+        public V remove(final Object o) {
+            final K k = key(o);
+            return inRange(k) ? ShardedBplusTree.this.remove(k) : null;
+        }
+
+        public boolean remove(final Object o, final Object value) {
+            final K k = key(o);
+            return inRange(k) && ShardedBplusTree.this.remove(k, value);
+        }
+
+        public int size() {
+            if(isWhole()) {
+                return ShardedBplusTree.this.size();
+            }
+
+            long count = 0;
+            for(final Iterator<K> it = new Scan<>(KEYS); it.hasNext(); it.next()) {
+                ++count;
+            }
+
+            return (int) Math.min(count, Integer.MAX_VALUE);
+        }
+
+        public boolean isEmpty() {
+            return lowest() == null;
+        }
+
+        public void clear() {
+            if(isWhole()) {
+                ShardedBplusTree.this.clear();
+                return;
+            }
+
+            for(final Iterator<K> it = new Scan<>(KEYS); it.hasNext();) {
+                it.next();
+                it.remove();
+            }
+        }
+
+        public Comparator<? super K> comparator() {
+            return descending ? Collections.reverseOrder(comparator) : comparator;
+        }
+
+        //narrower bounds in key order, a null bound keeps this view's
+        private Range narrow(final K fromKey, final boolean fromInclusive, final K toKey, final boolean toInclusive) {
+            K newLo = lo;
+            boolean newLoInclusive = loInclusive;
+            K newHi = hi;
+            boolean newHiInclusive = hiInclusive;
+            if(fromKey != null) {
+                if(lo != null) {
+                    final int cmp = order.compare(key(fromKey), lo);
+                    if(cmp < 0 || (cmp == 0 && !loInclusive && fromInclusive)) {
+                        throw new IllegalArgumentException("key out of range");
+                    }
+                }
+
+                newLo = key(fromKey);
+                newLoInclusive = fromInclusive;
+            }
+
+            if(toKey != null) {
+                if(hi != null) {
+                    final int cmp = order.compare(key(toKey), hi);
+                    if(cmp > 0 || (cmp == 0 && !hiInclusive && toInclusive)) {
+                        throw new IllegalArgumentException("key out of range");
+                    }
+                }
+
+                newHi = key(toKey);
+                newHiInclusive = toInclusive;
+            }
+
+            return new Range(newLo, newLoInclusive, newHi, newHiInclusive, descending);
+        }
+
+        public ConcurrentNavigableMap<K,V> subMap(final K fromKey, final boolean fromInclusive, final K toKey, final boolean toInclusive) {
+            key(fromKey);
+            key(toKey);
+            return descending ? narrow(toKey, toInclusive, fromKey, fromInclusive) : narrow(fromKey, fromInclusive, toKey, toInclusive);
+        }
+
+        public ConcurrentNavigableMap<K,V> headMap(final K toKey, final boolean inclusive) {
+            key(toKey);
+            return descending ? narrow(toKey, inclusive, null, false) : narrow(null, false, toKey, inclusive);
+        }
+
+        public ConcurrentNavigableMap<K,V> tailMap(final K fromKey, final boolean inclusive) {
+            key(fromKey);
+            return descending ? narrow(null, false, fromKey, inclusive) : narrow(fromKey, inclusive, null, false);
+        }
+
+        public ConcurrentNavigableMap<K,V> subMap(final K fromKey, final K toKey) { return subMap(fromKey, true, toKey, false); }
+        public ConcurrentNavigableMap<K,V> headMap(final K toKey) { return headMap(toKey, false); }
+        public ConcurrentNavigableMap<K,V> tailMap(final K fromKey) { return tailMap(fromKey, true); }
+
+        public ConcurrentNavigableMap<K,V> descendingMap() {
+            return new Range(lo, loInclusive, hi, hiInclusive, !descending);
+        }
+
+        public NavigableSet<K> keySet() { return new Keys(); }
+        public NavigableSet<K> navigableKeySet() { return new Keys(); }
+        public NavigableSet<K> descendingKeySet() { return descendingMap().navigableKeySet(); }
+        public Collection<V> values() { return new Values(); }
+        public Set<Map.Entry<K,V>> entrySet() { return new Entries(); }
+
+        //weakly consistent, copies out a batch at a time under the read lock of one shard. the shards are visited
+        //in key order, a shard that runs out sends the scan on from its bound
+        private final class Scan<T> implements Iterator<T> {
+            private final int kind;
+            private final Object[] keys = new Object[BATCH];
+            private final Object[] values = new Object[BATCH];
+            private int count = 0;
+            private int pos = 0;
+            private boolean ended = false;
+            private K from;
+            private boolean fromInclusive;
+            private K returned = null;
+
+            private Scan(final int kind) {
+                this.kind = kind;
+                this.from = descending ? hi : lo;
+                this.fromInclusive = descending ? hiInclusive : loInclusive;
+            }
+
+            public boolean hasNext() {
+                if(pos == count && !ended) {
+                    advance();
+                }
+
+                return pos < count;
+            }
+
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                final K k = (K) keys[pos];
+                final V v = (V) values[pos];
+                ++pos;
+                returned = k;
+                return (T) ((kind == KEYS) ? k : (kind == VALUES) ? v : new SimpleImmutableEntry<>(k, v));
+            }
+
+            public void remove() {
+                if(returned == null) {
+                    throw new IllegalStateException();
+                }
+
+                ShardedBplusTree.this.remove(returned);
+                returned = null;
+            }
+
+            private void advance() {
+                pos = 0;
+                count = 0;
+                while(count == 0 && !ended) {
+                    final Shard<K,V> shard = lock(from, descending && !fromInclusive, descending, false);
+                    try {
+                        copy(shard);
+                    }
+                    finally {
+                        shard.lock.readLock().unlock();
+                    }
+                }
+            }
+
+            @SuppressWarnings("unchecked")
+            private void copy(final Shard<K,V> shard) {
+                final NavigableMap<K,V> tree = shard.tree;
+                final NavigableMap<K,V> rest = (from == null) ? (descending ? tree.descendingMap() : tree)
+                    : descending ? tree.headMap(from, fromInclusive).descendingMap() : tree.tailMap(from, fromInclusive);
+                final Iterator<Map.Entry<K,V>> it = rest.entrySet().iterator();
+                while(count < BATCH && it.hasNext()) {
+                    final Map.Entry<K,V> entry = it.next();
+                    if(descending ? tooLow(entry.getKey()) : tooHigh(entry.getKey())) {
+                        ended = true;
+                        return;
+                    }
+
+                    keys[count] = entry.getKey();
+                    values[count] = entry.getValue();
+                    ++count;
+                }
+
+                if(count == BATCH) {
+                    from = (K) keys[count - 1];
+                    fromInclusive = false;
+                    return;
+                }
+
+                //the rest of the shard was copied, the next one starts at the bound
+                final K bound = descending ? shard.lo : shard.hi;
+                if(bound == null) {
+                    ended = true;
+                }
+                else {
+                    from = bound;
+                    fromInclusive = !descending;
+                }
+            }
+        }
+
+        private final class Keys extends AbstractSet<K> implements NavigableSet<K> {
+            public Iterator<K> iterator() { return new Scan<>(KEYS); }
+            public Iterator<K> descendingIterator() { return descendingKeySet().iterator(); }
+            public int size() { return Range.this.size(); }
+            public boolean isEmpty() { return Range.this.isEmpty(); }
+            public boolean contains(final Object o) { return containsKey(o); }
+            public boolean remove(final Object o) { return Range.this.remove(o) != null; }
+            public void clear() { Range.this.clear(); }
+            public Comparator<? super K> comparator() { return Range.this.comparator(); }
+            public K first() { return firstKey(); }
+            public K last() { return lastKey(); }
+            public K lower(final K k) { return lowerKey(k); }
+            public K floor(final K k) { return floorKey(k); }
+            public K ceiling(final K k) { return ceilingKey(k); }
+            public K higher(final K k) { return higherKey(k); }
+            public K pollFirst() { return keyOf(pollFirstEntry()); }
+            public K pollLast() { return keyOf(pollLastEntry()); }
+            public NavigableSet<K> descendingSet() { return descendingKeySet(); }
+
+            public NavigableSet<K> subSet(final K fromKey, final boolean fromInclusive, final K toKey, final boolean toInclusive) {
+                return subMap(fromKey, fromInclusive, toKey, toInclusive).navigableKeySet();
+            }
+
+            public NavigableSet<K> headSet(final K toKey, final boolean inclusive) { return headMap(toKey, inclusive).navigableKeySet(); }
+            public NavigableSet<K> tailSet(final K fromKey, final boolean inclusive) { return tailMap(fromKey, inclusive).navigableKeySet(); }
+            public NavigableSet<K> subSet(final K fromKey, final K toKey) { return subSet(fromKey, true, toKey, false); }
+            public NavigableSet<K> headSet(final K toKey) { return headSet(toKey, false); }
+            public NavigableSet<K> tailSet(final K fromKey) { return tailSet(fromKey, true); }
+        }
+
+        private final class Values extends AbstractCollection<V> {
+            public Iterator<V> iterator() { return new Scan<>(VALUES); }
+            public int size() { return Range.this.size(); }
+            public boolean isEmpty() { return Range.this.isEmpty(); }
+            public boolean contains(final Object o) { return containsValue(o); }
+            public void clear() { Range.this.clear(); }
+        }
+
+        private final class Entries extends AbstractSet<Map.Entry<K,V>> {
+            public Iterator<Map.Entry<K,V>> iterator() { return new Scan<>(ENTRIES); }
+            public int size() { return Range.this.size(); }
+            public boolean isEmpty() { return Range.this.isEmpty(); }
+            public void clear() { Range.this.clear(); }
+
+            public boolean contains(final Object o) {
+                if(!(o instanceof Map.Entry) || ((Map.Entry<?,?>) o).getKey() == null) {
+                    return false;
+                }
+
+                final Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+                final V v = get(entry.getKey());
+                return v != null && v.equals(entry.getValue());
+            }
+
+            public boolean remove(final Object o) {
+                if(!(o instanceof Map.Entry) || ((Map.Entry<?,?>) o).getKey() == null) {
+                    return false;
+                }
+
+                final Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+                return Range.this.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package bplus;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import static bplus.Node.insertIndex;
 
@@ -16,6 +17,10 @@ abstract class Traversal<K extends Comparable<K>,V> implements Comparable<Traver
         return new EmptyTraversal<>();
     }
 
+    public static <K extends Comparable<K>,V> ArrayTraversal<K,V> makeReusable() {
+        return new ArrayTraversal<>();
+    }
+
     public static <K extends Comparable<K>,V> Traversal<K,V> makeLeafOnly() {
         return new LeafOnly<>();
     }
@@ -310,19 +315,8 @@ abstract class Traversal<K extends Comparable<K>,V> implements Comparable<Traver
         }
     }
 
-    static class MutableTraversal<K extends Comparable<K>,V> extends Traversal<K,V> {
-        private final List<Step<K,V>> steps = new ArrayList<>(4);
-
-        public MutableTraversal() {}
-
-        public MutableTraversal(final Traversal<K,V> toCopy) {
-            for(int i = 0; i < toCopy.size(); ++i) {
-                steps.add(toCopy.get(i).mutable());
-            }
-        }
-        
-        public boolean isEmpty() { return steps.isEmpty(); }
-        
+    //forward and previous only need the abstract step operations, shared by the growable traversals
+    static abstract class Path<K extends Comparable<K>,V> extends Traversal<K,V> {
         public Traversal<K,V> forward() {
             if(!current().hasForward()) {
                 nextNode();
@@ -350,7 +344,8 @@ abstract class Traversal<K extends Comparable<K>,V> implements Comparable<Traver
         }
 
         public Traversal<K,V> previous() {
-            if(!current().hasPrevious()) {
+            //on the first entry there is no previous node, park before the first entry instead
+            if(!current().hasPrevious() && hasPrevious()) {
                 previousNode();
             }
             
@@ -372,8 +367,24 @@ abstract class Traversal<K extends Comparable<K>,V> implements Comparable<Traver
                 return;
             }
 
+            //leaves right traverse to an insert position, previous() needs the slot past the last entry
             branch().child(index()).rightTraverse(this);
+            positionInsert();
         }
+    }
+
+    static class MutableTraversal<K extends Comparable<K>,V> extends Path<K,V> {
+        private final List<Step<K,V>> steps = new ArrayList<>(4);
+
+        public MutableTraversal() {}
+
+        public MutableTraversal(final Traversal<K,V> toCopy) {
+            for(int i = 0; i < toCopy.size(); ++i) {
+                steps.add(toCopy.get(i).mutable());
+            }
+        }
+        
+        public boolean isEmpty() { return steps.isEmpty(); }
 
         public Step<K,V> get(int level) {
             return steps.get(level);
@@ -392,6 +403,87 @@ abstract class Traversal<K extends Comparable<K>,V> implements Comparable<Traver
         }
     }
 
+    //reusable path over parallel arrays, steps are views of a level and only grow with the tree height
+    static class ArrayTraversal<K extends Comparable<K>,V> extends Path<K,V> {
+        private Node<K,V>[] nodes;
+        private int[] indexes;
+        private ArrayStep<K,V>[] steps;
+        private int size = 0;
+
+        public ArrayTraversal() {
+            grow(8);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void grow(final int capacity) {
+            final Node<K,V>[] newNodes = (Node<K,V>[]) new Node[capacity];
+            final int[] newIndexes = new int[capacity];
+            final ArrayStep<K,V>[] newSteps = (ArrayStep<K,V>[]) new ArrayStep[capacity];
+            for(int i = 0; i < capacity; ++i) {
+                newSteps[i] = new ArrayStep<>(this, i);
+            }
+
+            if(nodes != null) {
+                System.arraycopy(nodes, 0, newNodes, 0, size);
+                System.arraycopy(indexes, 0, newIndexes, 0, size);
+            }
+
+            nodes = newNodes;
+            indexes = newIndexes;
+            steps = newSteps;
+        }
+
+        public ArrayTraversal<K,V> reset() {
+            Arrays.fill(nodes, 0, size, null);
+            size = 0;
+            return this;
+        }
+
+        public boolean isEmpty() { return size == 0; }
+
+        public Step<K,V> get(int level) {
+            if(level >= size) {
+                throw new IndexOutOfBoundsException("level: " + level + ", size: " + size);
+            }
+
+            return steps[level];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void add(final Node<K,V> node, final int index) {
+            if(size == nodes.length) {
+                grow(size << 1);
+            }
+
+            nodes[size] = node;
+            indexes[size] = index;
+            ++size;
+        }
+
+        //the returned step is a view and is only valid until the next add
+        public Step<K,V> pop() {
+            return steps[--size];
+        }
+    }
+
+    static class ArrayStep<K extends Comparable<K>,V> extends Step<K,V> {
+        private final ArrayTraversal<K,V> owner;
+        private final int level;
+
+        ArrayStep(final ArrayTraversal<K,V> owner, final int level) {
+            this.owner = owner;
+            this.level = level;
+        }
+
+        public Step<K,V> node(final Node<K,V> node) { owner.nodes[level] = node; return this; }
+        public Node<K,V> node() { return owner.nodes[level]; }
+        public Step<K,V> index(final int index) { owner.indexes[level] = index; return this; }
+        public int index() { return owner.indexes[level]; }
+    }
+
     public interface SiblingRelation<T extends Comparable<T>,U> {
         Branch<T,U> getParent();
         int getIndex();
@@ -399,45 +491,59 @@ abstract class Traversal<K extends Comparable<K>,V> implements Comparable<Traver
         void resetAncestorKeys();
     }
 
+    //filled in place, a relation is only good until the next lookup on the same side
+    private SameFamily leftFamily;
+    private SameFamily rightFamily;
+    private AdoptedFamily leftAdopted;
+    private AdoptedFamily rightAdopted;
+
     private class SameFamily implements SiblingRelation<K,V> {
-        private final Step<K,V> parentEntry;
-        private final Node<K,V> sibling;
-        
-        private SameFamily(final Step<K,V> parentEntry, final Node<K,V> sibling) {
-            this.parentEntry = parentEntry;
-            this.sibling = sibling;
+        private Branch<K,V> parent;
+        private int index;
+        private Node<K,V> sibling;
+
+        private SameFamily set(final Branch<K,V> parent, final int index) {
+            this.parent = parent;
+            this.index = index;
+            this.sibling = parent.child(index);
+            return this;
         }
         
-        public Branch<K,V> getParent() { return parentEntry.node().asBranch(); }
-        public int getIndex() { return parentEntry.index(); }
+        public Branch<K,V> getParent() { return parent; }
+        public int getIndex() { return index; }
         public Node<K,V> getSibling() { return sibling; }
 
         public void resetAncestorKeys() {
-            parentEntry.node().asBranch().resetKey(parentEntry.index());
-            resetKeys(level() - 2, parentEntry.index());
+            parent.resetKey(index);
+            resetKeys(level() - 2, index);
         }
     }
 
     private class AdoptedFamily implements SiblingRelation<K,V> {
-        private final Step<K,V> grandparentEntry;
-        private final Step<K,V> uncleEntry;
-        private final Node<K,V> sibling;
-
-        private AdoptedFamily(final Step<K,V> grandparentEntry, final Step<K,V> uncleEntry,
-                              final Node<K,V> sibling) {
-            this.grandparentEntry = grandparentEntry;
-            this.uncleEntry = uncleEntry;
-            this.sibling = sibling;
+        private Branch<K,V> grandparent;
+        private int grandparentIndex;
+        private Branch<K,V> uncle;
+        private int uncleIndex;
+        private Node<K,V> sibling;
+
+        private AdoptedFamily set(final Branch<K,V> grandparent, final int grandparentIndex,
+                                  final Branch<K,V> uncle, final int uncleIndex) {
+            this.grandparent = grandparent;
+            this.grandparentIndex = grandparentIndex;
+            this.uncle = uncle;
+            this.uncleIndex = uncleIndex;
+            this.sibling = uncle.child(uncleIndex);
+            return this;
         }
 
-        public Branch<K,V> getParent() { return grandparentEntry.node().asBranch(); }
-        public int getIndex() { return grandparentEntry.index(); }
+        public Branch<K,V> getParent() { return grandparent; }
+        public int getIndex() { return grandparentIndex; }
         public Node<K,V> getSibling() { return sibling; }
 
         public void resetAncestorKeys() {
-            uncleEntry.node().asBranch().resetKey(uncleEntry.index());
-            grandparentEntry.node().asBranch().resetKey(grandparentEntry.index());
-            resetKeys(level() - 3, grandparentEntry.index());
+            uncle.resetKey(uncleIndex);
+            grandparent.resetKey(grandparentIndex);
+            resetKeys(level() - 3, grandparentIndex);
         }
     }
 
@@ -448,9 +554,10 @@ abstract class Traversal<K extends Comparable<K>,V> implements Comparable<Traver
         }
 
         if(parentEntry.index() > 0) {
-            final Branch<K,V> parent = parentEntry.node().asBranch();
-            final int index = parentEntry.index() - 1;
-            return new SameFamily(new ImmutableStep<>(parent, index), parent.child(index));
+            if(leftFamily == null) {
+                leftFamily = new SameFamily();
+            }
+            return leftFamily.set(parentEntry.node().asBranch(), parentEntry.index() - 1);
         }
         else {
             final Step<K,V> tmpEntry = grandparent();
@@ -460,12 +567,11 @@ abstract class Traversal<K extends Comparable<K>,V> implements Comparable<Traver
 
             final Branch<K,V> grandparent = tmpEntry.node().asBranch();
             final int grandparentNavIndex = tmpEntry.index() - 1;
-            final Step<K,V> grandparentEntry = new ImmutableStep<>(grandparent, grandparentNavIndex);
             final Branch<K,V> uncle = grandparent.child(grandparentNavIndex).asBranch();
-            final int uncleNavIndex = uncle.lastIndex();
-            final Step<K,V> uncleEntry = new ImmutableStep<>(uncle, uncleNavIndex);
-            final Node<K,V> cousin = uncle.child(uncleNavIndex);
-            return new AdoptedFamily(grandparentEntry, uncleEntry, cousin);
+            if(leftAdopted == null) {
+                leftAdopted = new AdoptedFamily();
+            }
+            return leftAdopted.set(grandparent, grandparentNavIndex, uncle, uncle.lastIndex());
         }
     }
 
@@ -476,9 +582,10 @@ abstract class Traversal<K extends Comparable<K>,V> implements Comparable<Traver
         }
 
         if(parentEntry.index() + 1 < parentEntry.node().size()) {
-            final Branch<K,V> parent = parentEntry.node().asBranch();
-            final int index = parentEntry.index() + 1;
-            return new SameFamily(new ImmutableStep<>(parent, index), parent.child(index));
+            if(rightFamily == null) {
+                rightFamily = new SameFamily();
+            }
+            return rightFamily.set(parentEntry.node().asBranch(), parentEntry.index() + 1);
         }
         else {
             final Step<K,V> tmpEntry = grandparent();
@@ -488,12 +595,11 @@ abstract class Traversal<K extends Comparable<K>,V> implements Comparable<Traver
             
             final Branch<K,V> grandparent = tmpEntry.node().asBranch();
             final int grandparentNavIndex = tmpEntry.index() + 1;
-            final Step<K,V> grandparentEntry = new ImmutableStep<>(grandparent, grandparentNavIndex);
             final Branch<K,V> uncle = grandparent.child(grandparentNavIndex).asBranch();
-            final int uncleNavIndex = 0;
-            final Step<K,V> uncleEntry = new ImmutableStep<>(uncle, uncleNavIndex);
-            final Node<K,V> cousin = uncle.child(uncleNavIndex);
-            return new AdoptedFamily(grandparentEntry, uncleEntry, cousin);
+            if(rightAdopted == null) {
+                rightAdopted = new AdoptedFamily();
+            }
+            return rightAdopted.set(grandparent, grandparentNavIndex, uncle, 0);
         }
     }
 }
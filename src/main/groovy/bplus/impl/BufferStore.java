@@ -0,0 +1,385 @@
+package bplus.impl;
+
+import bplus.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public abstract class BufferStore<K extends Comparable<K>,V> implements NodeStore<K,V> {
+
+    private static final int MAGIC = 0x42504c53;
+    private static final int VERSION = 3;
+
+    //store header, kept at the start of page 0
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_PAGE_SIZE = 8;
+    private static final int H_BRANCH_ORDER = 12;
+    private static final int H_LEAF_ORDER = 16;
+    private static final int H_KEY_SIZE = 20;
+    private static final int H_VALUE_SIZE = 24;
+    private static final int H_ROOT = 28;
+    private static final int H_PAGE_COUNT = 32;
+    private static final int H_FREE = 36;
+    private static final int H_ENTRY_COUNT = 40;
+    private static final int HEADER_SIZE = 48;
+
+    //page header, kept at the start of every node page
+    private static final int P_TYPE = 0;
+    private static final int P_SIZE = 4;
+    private static final int P_NEXT = 8;
+    private static final int P_PREV = 12;
+    private static final int PAGE_HEADER = 16;
+
+    private static final int FREE = 0;
+    private static final int LEAF = 1;
+    private static final int BRANCH = 2;
+    private static final int NO_PAGE = 0;
+
+    private final Codec<K> keys;
+    private final Codec<V> values;
+    private final int branchOrder;
+    private final int leafOrder;
+    private final Comparator<? super K> comparator;
+    private final Comparator<? super K> order;
+    private final int keySize;
+    private final int leafEntry;
+    private final int branchEntry;
+    private final int pageSize;
+    private final int pagesPerSegment;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    private ByteBuffer header;
+    private Node<K,V> root;
+    private SearchStrategy searchStrategy = SearchStrategy.BINARY;
+
+    protected BufferStore(final Codec<K> keys, final Codec<V> values,
+                          final int branchOrder, final int leafOrder, final int segmentBytes,
+                          final Comparator<? super K> comparator) {
+        this.keys = keys;
+        this.values = values;
+        this.branchOrder = branchOrder;
+        this.leafOrder = leafOrder;
+        this.comparator = comparator;
+        this.order = Comparators.order(keys.type(), comparator);
+        this.keySize = keys.size();
+        this.leafEntry = keySize + values.size();
+        this.branchEntry = keySize + Integer.BYTES;
+        this.pageSize = pageSize(branchOrder * branchEntry, leafOrder * leafEntry);
+        this.pagesPerSegment = Math.max(1, segmentBytes / pageSize);
+    }
+
+    private static int pageSize(final int branchBytes, final int leafBytes) {
+        final int size = Math.max(HEADER_SIZE, PAGE_HEADER + Math.max(branchBytes, leafBytes));
+        return (size + 7) & ~7;
+    }
+
+    protected abstract ByteBuffer newSegment(long position, int length);
+
+    protected void create() {
+        header = ensureMapped(0);
+        header.putInt(H_MAGIC, MAGIC);
+        header.putInt(H_VERSION, VERSION);
+        header.putInt(H_PAGE_SIZE, pageSize);
+        header.putInt(H_BRANCH_ORDER, branchOrder);
+        header.putInt(H_LEAF_ORDER, leafOrder);
+        header.putInt(H_KEY_SIZE, keySize);
+        header.putInt(H_VALUE_SIZE, values.size());
+        header.putInt(H_PAGE_COUNT, 1);
+        header.putInt(H_FREE, NO_PAGE);
+        header.putLong(H_ENTRY_COUNT, 0L);
+        setRoot(new _Leaf(allocate(LEAF)));
+    }
+
+    protected void open() {
+        header = ensureMapped(0);
+        if(header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION) {
+            throw new IllegalArgumentException("not a bplus store");
+        }
+
+        if(header.getInt(H_PAGE_SIZE) != pageSize ||
+           header.getInt(H_BRANCH_ORDER) != branchOrder ||
+           header.getInt(H_LEAF_ORDER) != leafOrder ||
+           header.getInt(H_KEY_SIZE) != keySize ||
+           header.getInt(H_VALUE_SIZE) != values.size()) {
+            throw new IllegalArgumentException("store layout does not match configuration");
+        }
+
+        ensureMapped(header.getInt(H_PAGE_COUNT) - 1);
+        root = view(header.getInt(H_ROOT));
+    }
+
+    protected List<ByteBuffer> segments() {
+        return segments;
+    }
+
+    public Node<K,V> getRoot() {
+        return root;
+    }
+
+    public void setRoot(final Node<K,V> val) {
+        root = val;
+        header.putInt(H_ROOT, page(val).page);
+    }
+
+    public long getEntryCount() {
+        return header.getLong(H_ENTRY_COUNT);
+    }
+
+    public void setEntryCount(final long val) {
+        header.putLong(H_ENTRY_COUNT, val);
+    }
+
+    public Class<K> getKeyType() {
+        return keys.type();
+    }
+
+    //not persisted, a reopened store has to be given the ordering it was written with
+    public Comparator<? super K> getComparator() {
+        return comparator;
+    }
+
+    public SearchStrategy getSearchStrategy() {
+        return searchStrategy;
+    }
+
+    public void setSearchStrategy(final SearchStrategy val) {
+        searchStrategy = val;
+    }
+
+    public Class<V> getValueType() {
+        return values.type();
+    }
+
+    public int getPageCount() {
+        return header.getInt(H_PAGE_COUNT);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    private ByteBuffer ensureMapped(final int page) {
+        final int segment = page / pagesPerSegment;
+        while(segments.size() <= segment) {
+            final int length = pagesPerSegment * pageSize;
+            segments.add(newSegment((long) segments.size() * length, length));
+        }
+
+        return segments.get(segment);
+    }
+
+    private ByteBuffer buffer(final int page) {
+        return segments.get(page / pagesPerSegment);
+    }
+
+    private int offset(final int page) {
+        return (page % pagesPerSegment) * pageSize;
+    }
+
+    private int allocate(final int type) {
+        int page = header.getInt(H_FREE);
+        if(page != NO_PAGE) {
+            header.putInt(H_FREE, buffer(page).getInt(offset(page) + PAGE_HEADER));
+        }
+        else {
+            page = header.getInt(H_PAGE_COUNT);
+            ensureMapped(page);
+            header.putInt(H_PAGE_COUNT, page + 1);
+        }
+
+        final ByteBuffer buf = buffer(page);
+        final int base = offset(page);
+        buf.putInt(base + P_TYPE, type);
+        buf.putInt(base + P_SIZE, 0);
+        buf.putInt(base + P_NEXT, NO_PAGE);
+        buf.putInt(base + P_PREV, NO_PAGE);
+        return page;
+    }
+
+    private void free(final int page) {
+        final ByteBuffer buf = buffer(page);
+        final int base = offset(page);
+        buf.putInt(base + P_TYPE, FREE);
+        buf.putInt(base + P_SIZE, 0);
+        buf.putInt(base + PAGE_HEADER, header.getInt(H_FREE));
+        header.putInt(H_FREE, page);
+    }
+
+    private Node<K,V> view(final int page) {
+        final int type = buffer(page).getInt(offset(page) + P_TYPE);
+        if(type == LEAF) {
+            return new _Leaf(page);
+        }
+        else if(type == BRANCH) {
+            return new _Branch(page);
+        }
+        else {
+            throw new IllegalStateException("page " + page + " does not hold a node");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Page page(final Node<K,V> node) {
+        if(node instanceof BufferStore.Page && ((BufferStore.Page) node).store() == this) {
+            return (Page) node;
+        }
+        else {
+            throw new IllegalArgumentException("source node is not the correct type");
+        }
+    }
+
+    private static void copyBytes(final ByteBuffer src, final int srcPos,
+                                  final ByteBuffer dest, final int destPos, final int length) {
+        if(src == dest && destPos > srcPos && destPos < srcPos + length) {
+            int i = length;
+            for(; i >= Long.BYTES; i -= Long.BYTES) {
+                dest.putLong(destPos + i - Long.BYTES, src.getLong(srcPos + i - Long.BYTES));
+            }
+
+            for(; i > 0; --i) {
+                dest.put(destPos + i - 1, src.get(srcPos + i - 1));
+            }
+        }
+        else {
+            int i = 0;
+            for(; i + Long.BYTES <= length; i += Long.BYTES) {
+                dest.putLong(destPos + i, src.getLong(srcPos + i));
+            }
+
+            for(; i < length; ++i) {
+                dest.put(destPos + i, src.get(srcPos + i));
+            }
+        }
+    }
+
+    private abstract class Page {
+        protected final int page;
+        protected final ByteBuffer buf;
+        protected final int base;
+
+        protected Page(final int page) {
+            this.page = page;
+            this.buf = buffer(page);
+            this.base = offset(page);
+        }
+
+        protected abstract int entrySize();
+
+        protected BufferStore<K,V> store() { return BufferStore.this; }
+        protected int position(final int index) { return base + PAGE_HEADER + index * entrySize(); }
+
+        public int size() { return buf.getInt(base + P_SIZE); }
+        public void size(final int sz) { buf.putInt(base + P_SIZE, sz); }
+
+        public Branch<K,V> newBranch() {
+            return new _Branch(allocate(BRANCH));
+        }
+
+        public Leaf<K,V> newLeaf() {
+            return new _Leaf(allocate(LEAF));
+        }
+
+        public void done() {
+            free(page);
+        }
+
+        public K key(final int index) { return keys.read(buf, position(index)); }
+
+        public int compare(final int index, final K rhs) {
+            return order.compare(key(index), rhs);
+        }
+
+        @SuppressWarnings("unchecked")
+        public int search(final K lookFor) {
+            return searchStrategy.search((Node<K,V>) this, lookFor);
+        }
+
+        public void sharedCopy(final int argSrcPos, final Node<K,V> argSrc, final int argDestPos, final int argLength) {
+            final Page src = page(argSrc);
+            copyBytes(src.buf, src.position(argSrcPos), buf, position(argDestPos), argLength * entrySize());
+        }
+
+        //pages are flyweights, two views of the same page are the same node
+        @Override
+        public boolean equals(final Object o) {
+            return (o instanceof BufferStore.Page) && ((BufferStore.Page) o).store() == store() &&
+                ((BufferStore.Page) o).page == page;
+        }
+
+        @Override
+        public int hashCode() {
+            return page;
+        }
+    }
+
+    private class _Branch extends Page implements Branch<K,V> {
+        protected _Branch(final int page) { super(page); }
+
+        protected int entrySize() { return branchEntry; }
+
+        public Branch<K,V> put(final int index, final Node<K,V> child) {
+            final Page node = page(child);
+            final int pos = position(index);
+            copyBytes(node.buf, node.position(0), buf, pos, keySize);
+            buf.putInt(pos + keySize, node.page);
+            return this;
+        }
+
+        public void resetKey(final int index) {
+            final int pos = position(index);
+            final int childPage = buf.getInt(pos + keySize);
+            copyBytes(buffer(childPage), offset(childPage) + PAGE_HEADER, buf, pos, keySize);
+        }
+
+        public int order() { return branchOrder; }
+
+        public Node<K,V> nullNode() {
+            return null;
+        }
+
+        public Node<K,V> child(final int index) { return view(buf.getInt(position(index) + keySize)); }
+
+        public Branch<K,V> copy(final int argSrcPos, final Node<K,V> argSrc, final int argDestPos, final int argLength) {
+            sharedCopy(argSrcPos, argSrc, argDestPos, argLength);
+            return this;
+        }
+    }
+
+    private class _Leaf extends Page implements Leaf<K,V> {
+        protected _Leaf(final int page) { super(page); }
+
+        protected int entrySize() { return leafEntry; }
+
+        public Leaf<K,V> put(final int index, final K k, final V v) {
+            final int pos = position(index);
+            keys.write(buf, pos, k);
+            values.write(buf, pos + keySize, v);
+            return this;
+        }
+
+        public Leaf<K,V> copy(final int argSrcPos, final Node<K,V> argSrc, final int argDestPos, final int argLength) {
+            sharedCopy(argSrcPos, argSrc, argDestPos, argLength);
+            return this;
+        }
+
+        public int order() { return leafOrder; }
+
+        public V value(final int index) { return values.read(buf, position(index) + keySize); }
+
+        public Leaf<K,V> next() { return link(P_NEXT); }
+        public void next(final Leaf<K,V> leaf) { link(P_NEXT, leaf); }
+        public Leaf<K,V> prev() { return link(P_PREV); }
+        public void prev(final Leaf<K,V> leaf) { link(P_PREV, leaf); }
+
+        private Leaf<K,V> link(final int field) {
+            final int linked = buf.getInt(base + field);
+            return linked == NO_PAGE ? null : new _Leaf(linked);
+        }
+
+        private void link(final int field, final Leaf<K,V> leaf) {
+            buf.putInt(base + field, leaf == null ? NO_PAGE : page(leaf).page);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package bplus.impl;
+
+import java.nio.ByteBuffer;
+
+public interface Codec<T> {
+    Class<T> type();
+    int size();
+    T read(ByteBuffer buf, int pos);
+    void write(ByteBuffer buf, int pos, T val);
+
+    Codec<Integer> INTEGER = new Codec<Integer>() {
+            public Class<Integer> type() { return Integer.class; }
+            public int size() { return Integer.BYTES; }
+            public Integer read(final ByteBuffer buf, final int pos) { return buf.getInt(pos); }
+            public void write(final ByteBuffer buf, final int pos, final Integer val) { buf.putInt(pos, val); }
+        };
+
+    Codec<Long> LONG = new Codec<Long>() {
+            public Class<Long> type() { return Long.class; }
+            public int size() { return Long.BYTES; }
+            public Long read(final ByteBuffer buf, final int pos) { return buf.getLong(pos); }
+            public void write(final ByteBuffer buf, final int pos, final Long val) { buf.putLong(pos, val); }
+        };
+
+    Codec<Double> DOUBLE = new Codec<Double>() {
+            public Class<Double> type() { return Double.class; }
+            public int size() { return Double.BYTES; }
+            public Double read(final ByteBuffer buf, final int pos) { return buf.getDouble(pos); }
+            public void write(final ByteBuffer buf, final int pos, final Double val) { buf.putDouble(pos, val); }
+        };
+}
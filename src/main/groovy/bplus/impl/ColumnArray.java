@@ -0,0 +1,323 @@
+package bplus.impl;
+
+import bplus.*;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+public abstract class ColumnArray<K extends Comparable<K>,V> implements NodeStore<K,V> {
+
+    private final Class<K> keyType;
+    private final Class<V> valueType;
+    private final int branchOrder;
+    private final int leafOrder;
+
+    private volatile Node<K,V> root;
+    private NodePool<K,V> pool;
+    private long entryCount = 0;
+    private boolean counted = false;
+    private boolean concurrent = false;
+    private SearchStrategy searchStrategy = SearchStrategy.BINARY;
+
+    protected ColumnArray(final Class<K> keyType, final Class<V> valueType, final int branchOrder, final int leafOrder) {
+        this.keyType = keyType;
+        this.valueType = valueType;
+        this.branchOrder = branchOrder;
+        this.leafOrder = leafOrder;
+        this.root = leaf();
+    }
+
+    public Node<K,V> getRoot() {
+        return root;
+    }
+
+    public void setRoot(final Node<K,V> val) {
+        root = val;
+    }
+
+    public Class<K> getKeyType() {
+        return keyType;
+    }
+
+    public Class<V> getValueType() {
+        return valueType;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public void setEntryCount(final long val) {
+        entryCount = val;
+    }
+
+    public boolean isCounted() {
+        return counted;
+    }
+
+    //only while the tree has no branches, existing branches would have no counts
+    public void setCounted(final boolean val) {
+        if(root.isBranch()) {
+            throw new IllegalStateException("counted mode must be set on an empty store");
+        }
+
+        counted = val;
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    //nodes made before the switch have no latch, so the store has to be empty and the pool is dropped
+    public void setConcurrent(final boolean val) {
+        if(root.isBranch() || root.size() > 0) {
+            throw new IllegalStateException("concurrent mode must be set on an empty store");
+        }
+
+        concurrent = val;
+        if(pool != null) {
+            pool.clear();
+        }
+
+        root = leaf();
+    }
+
+    public SearchStrategy getSearchStrategy() {
+        return searchStrategy;
+    }
+
+    public void setSearchStrategy(final SearchStrategy val) {
+        searchStrategy = val;
+    }
+
+    public NodePool<K,V> getPool() {
+        return pool;
+    }
+
+    public void setPool(final NodePool<K,V> val) {
+        pool = val;
+    }
+
+    public NodeStore<K,V> fork() {
+        return new ForkedStore<>(this);
+    }
+
+    public int getBranchOrder() {
+        return branchOrder;
+    }
+
+    public int getLeafOrder() {
+        return leafOrder;
+    }
+
+    //column access, keys and values are arrays of the subclass' element type
+    protected abstract Object newKeys(int length);
+    protected abstract Object newValues(int length);
+    protected abstract K key(Object keys, int index);
+    protected abstract void key(Object keys, int index, K k);
+    protected abstract V value(Object values, int index);
+    protected abstract void value(Object values, int index, V v);
+    protected abstract int compare(Object keys, int index, K k);
+
+    protected void clear(final Object column, final int from, final int to) {}
+    protected abstract Leaf<K,V> leaf();
+    protected abstract Branch<K,V> branch();
+
+    protected abstract class Base {
+        private int _size = 0;
+        private final StampedLock latch = concurrent ? new StampedLock() : null;
+        private K high;
+        protected final Object keys;
+
+        protected Base(final int order) {
+            this.keys = newKeys(order);
+        }
+
+        public int size() { return _size; }
+        public void size(final int sz) { _size = sz; }
+        public StampedLock latch() { return latch; }
+        public K highKey() { return high; }
+        public void highKey(final K k) { high = k; }
+
+        public Branch<K,V> newBranch() {
+            final Branch<K,V> pooled = (pool == null) ? null : pool.branch();
+            return pooled != null ? pooled : branch();
+        }
+
+        public Leaf<K,V> newLeaf() {
+            final Leaf<K,V> pooled = (pool == null) ? null : pool.leaf();
+            return pooled != null ? pooled : leaf();
+        }
+
+        public void done() {
+            _size = 0;
+            high = null;
+        }
+
+        public K key(final int index) { return ColumnArray.this.key(keys, index); }
+
+        public int compare(final int index, final K rhs) {
+            return ColumnArray.this.compare(keys, index, rhs);
+        }
+
+        @SuppressWarnings("unchecked")
+        public int search(final K lookFor) {
+            return searchStrategy.search((Node<K,V>) this, lookFor);
+        }
+
+        protected ColumnArray<K,V> store() { return ColumnArray.this; }
+
+        @SuppressWarnings("unchecked")
+        protected <T extends Base> T source(final Node<K,V> node, final Class<?> type) {
+            if(type.isInstance(node) && ((ColumnArray.Base) node).store() == ColumnArray.this) {
+                return (T) node;
+            }
+            else {
+                throw new IllegalArgumentException("source node is not the correct type");
+            }
+        }
+    }
+
+    protected abstract class ColumnBranch extends Base implements Branch<K,V> {
+        protected final Node<K,V>[] children;
+        private long[] counts;
+        private Branch<K,V> right;
+
+        @SuppressWarnings("unchecked")
+        protected ColumnBranch() {
+            super(branchOrder);
+            this.children = (Node<K,V>[]) new Node[branchOrder];
+        }
+
+        public Branch<K,V> put(final int index, final Node<K,V> child) {
+            final Base src = source(child, Base.class);
+            System.arraycopy(src.keys, 0, keys, index, 1);
+            children[index] = child;
+            if(counted) {
+                counts()[index] = Branch.total(child);
+            }
+
+            return this;
+        }
+
+        public Branch<K,V> put(final int index, final K k, final Node<K,V> child) {
+            ColumnArray.this.key(keys, index, k);
+            children[index] = child;
+            return this;
+        }
+
+        public Branch<K,V> right() { return right; }
+        public void right(final Branch<K,V> branch) { right = branch; }
+
+        //allocated on demand, pooled branches may predate counted mode
+        private long[] counts() {
+            if(counts == null) {
+                counts = new long[branchOrder];
+            }
+
+            return counts;
+        }
+
+        public long count(final int index) { return counts()[index]; }
+        public void count(final int index, final long val) { counts()[index] = val; }
+
+        public void resetKey(final int index) {
+            final Base src = source(children[index], Base.class);
+            System.arraycopy(src.keys, 0, keys, index, 1);
+        }
+
+        public int order() { return branchOrder; }
+
+        public Node<K,V> nullNode() {
+            return null;
+        }
+
+        public Node<K,V> child(final int index) { return children[index]; }
+
+        public Branch<K,V> copy(final int argSrcPos, final Node<K,V> argSrc, final int argDestPos, final int argLength) {
+            final ColumnBranch src = source(argSrc, ColumnBranch.class);
+            System.arraycopy(src.keys, argSrcPos, keys, argDestPos, argLength);
+            System.arraycopy(src.children, argSrcPos, children, argDestPos, argLength);
+            if(counted) {
+                System.arraycopy(src.counts(), argSrcPos, counts(), argDestPos, argLength);
+            }
+
+            return this;
+        }
+
+        @Override
+        public void size(final int newSize) {
+            if(newSize < size()) {
+                clear(keys, newSize, branchOrder);
+                Arrays.fill(children, newSize, children.length, null);
+            }
+
+            super.size(newSize);
+        }
+
+        @Override
+        public void done() {
+            clear(keys, 0, branchOrder);
+            Arrays.fill(children, null);
+            right = null;
+            super.done();
+            if(pool != null) {
+                pool.release(this);
+            }
+        }
+    }
+
+    protected abstract class ColumnLeaf extends Base implements Leaf<K,V> {
+        protected final Object values;
+        private Leaf<K,V> next;
+        private Leaf<K,V> prev;
+
+        protected ColumnLeaf() {
+            super(leafOrder);
+            this.values = newValues(leafOrder);
+        }
+
+        public Leaf<K,V> put(final int index, final K k, final V v) {
+            ColumnArray.this.key(keys, index, k);
+            ColumnArray.this.value(values, index, v);
+            return this;
+        }
+
+        public Leaf<K,V> copy(final int argSrcPos, final Node<K,V> argSrc, final int argDestPos, final int argLength) {
+            final ColumnLeaf src = source(argSrc, ColumnLeaf.class);
+            System.arraycopy(src.keys, argSrcPos, keys, argDestPos, argLength);
+            System.arraycopy(src.values, argSrcPos, values, argDestPos, argLength);
+            return this;
+        }
+
+        @Override
+        public void size(final int newSize) {
+            if(newSize < size()) {
+                clear(keys, newSize, leafOrder);
+                clear(values, newSize, leafOrder);
+            }
+
+            super.size(newSize);
+        }
+
+        public Leaf<K,V> next() { return next; }
+        public void next(final Leaf<K,V> leaf) { next = leaf; }
+        public Leaf<K,V> prev() { return prev; }
+        public void prev(final Leaf<K,V> leaf) { prev = leaf; }
+
+        @Override
+        public void done() {
+            next = null;
+            prev = null;
+            clear(keys, 0, leafOrder);
+            clear(values, 0, leafOrder);
+            super.done();
+            if(pool != null) {
+                pool.release(this);
+            }
+        }
+
+        public int order() { return leafOrder; }
+
+        public V value(final int index) { return ColumnArray.this.value(values, index); }
+    }
+}
@@ -0,0 +1,47 @@
+package bplus.impl;
+
+import bplus.*;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+public class DirectBuffer<K extends Comparable<K>,V> extends BufferStore<K,V> {
+
+    private static final int SLAB_BYTES = 1 << 20;
+
+    public DirectBuffer(final Codec<K> keys, final Codec<V> values, final int order) {
+        this(keys, values, order, order);
+    }
+
+    public DirectBuffer(final Codec<K> keys, final Codec<V> values, final int order, final Comparator<? super K> comparator) {
+        this(keys, values, order, order, SLAB_BYTES, comparator);
+    }
+
+    public DirectBuffer(final Codec<K> keys, final Codec<V> values, final int branchOrder, final int leafOrder) {
+        this(keys, values, branchOrder, leafOrder, SLAB_BYTES);
+    }
+
+    public DirectBuffer(final Codec<K> keys, final Codec<V> values,
+                        final int branchOrder, final int leafOrder, final int slabBytes) {
+        this(keys, values, branchOrder, leafOrder, slabBytes, null);
+    }
+
+    public DirectBuffer(final Codec<K> keys, final Codec<V> values,
+                        final int branchOrder, final int leafOrder, final int slabBytes,
+                        final Comparator<? super K> comparator) {
+        super(keys, values, branchOrder, leafOrder, slabBytes, comparator);
+        create();
+    }
+
+    protected ByteBuffer newSegment(final long position, final int length) {
+        return ByteBuffer.allocateDirect(length);
+    }
+
+    //the forked root lives only in memory, which is all a direct buffer has anyway
+    public NodeStore<K,V> fork() {
+        return new ForkedStore<>(this);
+    }
+
+    public int getSlabCount() {
+        return segments().size();
+    }
+}
@@ -0,0 +1,66 @@
+package bplus.impl;
+
+import bplus.*;
+
+public class DoubleArray extends ColumnArray<Double,Double> {
+
+    public DoubleArray(final int order) {
+        this(order, order);
+    }
+
+    public DoubleArray(final int branchOrder, final int leafOrder) {
+        super(Double.class, Double.class, branchOrder, leafOrder);
+    }
+
+    protected Object newKeys(final int length) { return new double[length]; }
+    protected Object newValues(final int length) { return new double[length]; }
+    protected Double key(final Object keys, final int index) { return ((double[]) keys)[index]; }
+    protected void key(final Object keys, final int index, final Double k) { ((double[]) keys)[index] = k; }
+    protected Double value(final Object values, final int index) { return ((double[]) values)[index]; }
+    protected void value(final Object values, final int index, final Double v) { ((double[]) values)[index] = v; }
+
+    protected int compare(final Object keys, final int index, final Double k) {
+        return Double.compare(((double[]) keys)[index], k);
+    }
+
+    protected Leaf<Double,Double> leaf() {
+        return new _Leaf();
+    }
+
+    protected Branch<Double,Double> branch() {
+        return new _Branch();
+    }
+
+    private class _Branch extends ColumnBranch implements DoubleNode {
+        private final double[] _keys = (double[]) keys;
+
+        public double doubleKey(final int index) { return _keys[index]; }
+
+        public int search(final Double lookFor) { return searchDouble(lookFor); }
+
+        public int searchDouble(final double lookFor) {
+            return getSearchStrategy().search(_keys, size(), lookFor);
+        }
+    }
+
+    private class _Leaf extends ColumnLeaf implements DoubleLeaf {
+        private final double[] _keys = (double[]) keys;
+        private final double[] _values = (double[]) values;
+
+        public double doubleKey(final int index) { return _keys[index]; }
+
+        public int search(final Double lookFor) { return searchDouble(lookFor); }
+
+        public int searchDouble(final double lookFor) {
+            return getSearchStrategy().search(_keys, size(), lookFor);
+        }
+
+        public double doubleValue(final int index) { return _values[index]; }
+        public void doubleValue(final int index, final double v) { _values[index] = v; }
+
+        public void putDouble(final int index, final double k, final double v) {
+            _keys[index] = k;
+            _values[index] = v;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package bplus.impl;
+
+import bplus.*;
+import java.util.Comparator;
+
+//everything but the root and the entry count comes from the owner, nodes are allocated by the owner too
+class ForkedStore<K extends Comparable<K>,V> implements NodeStore<K,V> {
+
+    private final NodeStore<K,V> owner;
+    private Node<K,V> root;
+    private long entryCount = 0;
+
+    ForkedStore(final NodeStore<K,V> owner) {
+        this.owner = owner;
+        this.root = owner.getRoot().newLeaf();
+    }
+
+    public Node<K,V> getRoot() {
+        return root;
+    }
+
+    public void setRoot(final Node<K,V> val) {
+        root = val;
+    }
+
+    public Class<K> getKeyType() {
+        return owner.getKeyType();
+    }
+
+    public Class<V> getValueType() {
+        return owner.getValueType();
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public void setEntryCount(final long val) {
+        entryCount = val;
+    }
+
+    public boolean isCounted() {
+        return owner.isCounted();
+    }
+
+    public Comparator<? super K> getComparator() {
+        return owner.getComparator();
+    }
+
+    public SearchStrategy getSearchStrategy() {
+        return owner.getSearchStrategy();
+    }
+
+    public NodeStore<K,V> fork() {
+        return new ForkedStore<>(owner);
+    }
+
+    public NodeStore<K,V> owner() {
+        return owner;
+    }
+}
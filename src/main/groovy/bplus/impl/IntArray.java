@@ -0,0 +1,66 @@
+package bplus.impl;
+
+import bplus.*;
+
+public class IntArray extends ColumnArray<Integer,Integer> {
+
+    public IntArray(final int order) {
+        this(order, order);
+    }
+
+    public IntArray(final int branchOrder, final int leafOrder) {
+        super(Integer.class, Integer.class, branchOrder, leafOrder);
+    }
+
+    protected Object newKeys(final int length) { return new int[length]; }
+    protected Object newValues(final int length) { return new int[length]; }
+    protected Integer key(final Object keys, final int index) { return ((int[]) keys)[index]; }
+    protected void key(final Object keys, final int index, final Integer k) { ((int[]) keys)[index] = k; }
+    protected Integer value(final Object values, final int index) { return ((int[]) values)[index]; }
+    protected void value(final Object values, final int index, final Integer v) { ((int[]) values)[index] = v; }
+
+    protected int compare(final Object keys, final int index, final Integer k) {
+        return Integer.compare(((int[]) keys)[index], k);
+    }
+
+    protected Leaf<Integer,Integer> leaf() {
+        return new _Leaf();
+    }
+
+    protected Branch<Integer,Integer> branch() {
+        return new _Branch();
+    }
+
+    private class _Branch extends ColumnBranch implements IntNode {
+        private final int[] _keys = (int[]) keys;
+
+        public int intKey(final int index) { return _keys[index]; }
+
+        public int search(final Integer lookFor) { return searchInt(lookFor); }
+
+        public int searchInt(final int lookFor) {
+            return getSearchStrategy().search(_keys, size(), lookFor);
+        }
+    }
+
+    private class _Leaf extends ColumnLeaf implements IntLeaf {
+        private final int[] _keys = (int[]) keys;
+        private final int[] _values = (int[]) values;
+
+        public int intKey(final int index) { return _keys[index]; }
+
+        public int search(final Integer lookFor) { return searchInt(lookFor); }
+
+        public int searchInt(final int lookFor) {
+            return getSearchStrategy().search(_keys, size(), lookFor);
+        }
+
+        public int intValue(final int index) { return _values[index]; }
+        public void intValue(final int index, final int v) { _values[index] = v; }
+
+        public void putInt(final int index, final int k, final int v) {
+            _keys[index] = k;
+            _values[index] = v;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package bplus.impl;
+
+import bplus.*;
+
+public class LongArray extends ColumnArray<Long,Long> {
+
+    public LongArray(final int order) {
+        this(order, order);
+    }
+
+    public LongArray(final int branchOrder, final int leafOrder) {
+        super(Long.class, Long.class, branchOrder, leafOrder);
+    }
+
+    protected Object newKeys(final int length) { return new long[length]; }
+    protected Object newValues(final int length) { return new long[length]; }
+    protected Long key(final Object keys, final int index) { return ((long[]) keys)[index]; }
+    protected void key(final Object keys, final int index, final Long k) { ((long[]) keys)[index] = k; }
+    protected Long value(final Object values, final int index) { return ((long[]) values)[index]; }
+    protected void value(final Object values, final int index, final Long v) { ((long[]) values)[index] = v; }
+
+    protected int compare(final Object keys, final int index, final Long k) {
+        return Long.compare(((long[]) keys)[index], k);
+    }
+
+    protected Leaf<Long,Long> leaf() {
+        return new _Leaf();
+    }
+
+    protected Branch<Long,Long> branch() {
+        return new _Branch();
+    }
+
+    private class _Branch extends ColumnBranch implements LongNode {
+        private final long[] _keys = (long[]) keys;
+
+        public long longKey(final int index) { return _keys[index]; }
+
+        public int search(final Long lookFor) { return searchLong(lookFor); }
+
+        public int searchLong(final long lookFor) {
+            return getSearchStrategy().search(_keys, size(), lookFor);
+        }
+    }
+
+    private class _Leaf extends ColumnLeaf implements LongLeaf {
+        private final long[] _keys = (long[]) keys;
+        private final long[] _values = (long[]) values;
+
+        public long longKey(final int index) { return _keys[index]; }
+
+        public int search(final Long lookFor) { return searchLong(lookFor); }
+
+        public int searchLong(final long lookFor) {
+            return getSearchStrategy().search(_keys, size(), lookFor);
+        }
+
+        public long longValue(final int index) { return _values[index]; }
+        public void longValue(final int index, final long v) { _values[index] = v; }
+
+        public void putLong(final int index, final long k, final long v) {
+            _keys[index] = k;
+            _values[index] = v;
+        }
+    }
+}
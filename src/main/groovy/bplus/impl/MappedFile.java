@@ -0,0 +1,71 @@
+package bplus.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Comparator;
+import static java.nio.file.StandardOpenOption.*;
+
+public class MappedFile<K extends Comparable<K>,V> extends BufferStore<K,V> implements Closeable {
+
+    private static final int SEGMENT_BYTES = 1 << 26;
+
+    private final FileChannel channel;
+
+    public MappedFile(final Path path, final Codec<K> keys, final Codec<V> values, final int order) throws IOException {
+        this(path, keys, values, order, order);
+    }
+
+    public MappedFile(final Path path, final Codec<K> keys, final Codec<V> values, final int order,
+                      final Comparator<? super K> comparator) throws IOException {
+        this(path, keys, values, order, order, comparator);
+    }
+
+    public MappedFile(final Path path, final Codec<K> keys, final Codec<V> values,
+                      final int branchOrder, final int leafOrder) throws IOException {
+        this(path, keys, values, branchOrder, leafOrder, null);
+    }
+
+    public MappedFile(final Path path, final Codec<K> keys, final Codec<V> values,
+                      final int branchOrder, final int leafOrder, final Comparator<? super K> comparator) throws IOException {
+        super(keys, values, branchOrder, leafOrder, SEGMENT_BYTES, comparator);
+        this.channel = FileChannel.open(path, READ, WRITE, CREATE);
+
+        try {
+            if(channel.size() > 0) {
+                open();
+            }
+            else {
+                create();
+            }
+        }
+        catch(RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    protected ByteBuffer newSegment(final long position, final int length) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void force() {
+        for(ByteBuffer segment : segments()) {
+            ((MappedByteBuffer) segment).force();
+        }
+    }
+
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
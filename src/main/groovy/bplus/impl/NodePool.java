@@ -0,0 +1,77 @@
+package bplus.impl;
+
+import bplus.*;
+import java.util.ArrayDeque;
+
+public class NodePool<K extends Comparable<K>,V> {
+
+    private final int capacity;
+    private final ArrayDeque<Branch<K,V>> branches;
+    private final ArrayDeque<Leaf<K,V>> leaves;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long discards = 0;
+
+    public NodePool(final int capacity) {
+        this.capacity = capacity;
+        this.branches = new ArrayDeque<>(capacity);
+        this.leaves = new ArrayDeque<>(capacity);
+    }
+
+    //returns null when the caller has to allocate
+    public Branch<K,V> branch() {
+        return count(branches.pollFirst());
+    }
+
+    public Leaf<K,V> leaf() {
+        return count(leaves.pollFirst());
+    }
+
+    private <T> T count(final T node) {
+        if(node != null) {
+            ++hits;
+        }
+        else {
+            ++misses;
+        }
+
+        return node;
+    }
+
+    //node must already be cleared
+    public void release(final Node<K,V> node) {
+        if(node.isLeaf() && leaves.size() < capacity) {
+            leaves.addFirst(node.asLeaf());
+        }
+        else if(node.isBranch() && branches.size() < capacity) {
+            branches.addFirst(node.asBranch());
+        }
+        else {
+            ++discards;
+        }
+    }
+
+    public void clear() {
+        branches.clear();
+        leaves.clear();
+    }
+
+    public int getCapacity() { return capacity; }
+    public int getBranchCount() { return branches.size(); }
+    public int getLeafCount() { return leaves.size(); }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getDiscards() { return discards; }
+
+    public double getHitRate() {
+        final long total = hits + misses;
+        return total == 0 ? 0d : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("NodePool(capacity: %d, hits: %d, misses: %d, discards: %d, hit rate: %.3f)",
+                             capacity, hits, misses, discards, getHitRate());
+    }
+}
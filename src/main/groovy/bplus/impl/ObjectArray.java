@@ -2,6 +2,8 @@ package bplus.impl;
 
 import bplus.*;
 import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.Comparator;
 
 public class ObjectArray<K extends Comparable<K>,V> implements NodeStore<K,V> {
 
@@ -9,18 +11,36 @@ public class ObjectArray<K extends Comparable<K>,V> implements NodeStore<K,V> {
     private final Class<V> valueType;
     private final int branchOrder;
     private final int leafOrder;
+    private final Comparator<? super K> comparator;
+    private final Comparator<? super K> order;
     
-    private Node<K,V> root;
+    private volatile Node<K,V> root;
+    private NodePool<K,V> pool;
+    private long entryCount = 0;
+    private boolean counted = false;
+    private boolean concurrent = false;
+    private SearchStrategy searchStrategy = SearchStrategy.BINARY;
 
     public ObjectArray(final Class<K> keyType, final Class<V> valueType, final int order) {
         this(keyType, valueType, order, order);
     }
 
+    public ObjectArray(final Class<K> keyType, final Class<V> valueType, final int order, final Comparator<? super K> comparator) {
+        this(keyType, valueType, order, order, comparator);
+    }
+
     public ObjectArray(final Class<K> keyType, final Class<V> valueType, final int branchOrder, final int leafOrder) {
+        this(keyType, valueType, branchOrder, leafOrder, null);
+    }
+
+    public ObjectArray(final Class<K> keyType, final Class<V> valueType, final int branchOrder, final int leafOrder,
+                       final Comparator<? super K> comparator) {
         this.keyType = keyType;
         this.valueType = valueType;
         this.branchOrder = branchOrder;
         this.leafOrder = leafOrder;
+        this.comparator = comparator;
+        this.order = Comparators.order(keyType, comparator);
         this.root = new _Leaf();
     }
 
@@ -40,8 +60,73 @@ public class ObjectArray<K extends Comparable<K>,V> implements NodeStore<K,V> {
         return valueType;
     }
 
+    public Comparator<? super K> getComparator() {
+        return comparator;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public void setEntryCount(final long val) {
+        entryCount = val;
+    }
+
+    public boolean isCounted() {
+        return counted;
+    }
+
+    //only while the tree has no branches, existing branches would have no counts
+    public void setCounted(final boolean val) {
+        if(root.isBranch()) {
+            throw new IllegalStateException("counted mode must be set on an empty store");
+        }
+
+        counted = val;
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    //nodes made before the switch have no latch, so the store has to be empty and the pool is dropped
+    public void setConcurrent(final boolean val) {
+        if(root.isBranch() || root.size() > 0) {
+            throw new IllegalStateException("concurrent mode must be set on an empty store");
+        }
+
+        concurrent = val;
+        if(pool != null) {
+            pool.clear();
+        }
+
+        root = new _Leaf();
+    }
+
+    public SearchStrategy getSearchStrategy() {
+        return searchStrategy;
+    }
+
+    public void setSearchStrategy(final SearchStrategy val) {
+        searchStrategy = val;
+    }
+
+    public NodePool<K,V> getPool() {
+        return pool;
+    }
+
+    public void setPool(final NodePool<K,V> val) {
+        pool = val;
+    }
+
+    public NodeStore<K,V> fork() {
+        return new ForkedStore<>(this);
+    }
+
     private class Base {
         private int _size = 0;
+        private final StampedLock latch = concurrent ? new StampedLock() : null;
+        private K high;
         protected final Object[] ary;
 
         protected Base(final int arySize) {
@@ -50,20 +135,37 @@ public class ObjectArray<K extends Comparable<K>,V> implements NodeStore<K,V> {
         
         public int size() { return _size; }
         public void size(final int sz) { _size = sz; }
+        public StampedLock latch() { return latch; }
+        public K highKey() { return high; }
+        public void highKey(final K k) { high = k; }
 
         public Branch<K,V> newBranch() {
-            return new _Branch();
+            final Branch<K,V> pooled = (pool == null) ? null : pool.branch();
+            return pooled != null ? pooled : new _Branch();
         }
 
         public Leaf<K,V> newLeaf() {
-            return new _Leaf();
+            final Leaf<K,V> pooled = (pool == null) ? null : pool.leaf();
+            return pooled != null ? pooled : new _Leaf();
         }
 
         public void done() {
             Arrays.fill(ary, null);
+            _size = 0;
+            high = null;
         }
 
         public K key(final int index) { return keyType.cast(ary[keyIndex(index)]); }
+
+        public int compare(final int index, final K rhs) {
+            return order.compare(key(index), rhs);
+        }
+
+        @SuppressWarnings("unchecked")
+        public int search(final K lookFor) {
+            return searchStrategy.search((Node<K,V>) this, lookFor);
+        }
+
         protected int keyIndex(final int index) { return index << 1; }
         protected int pairIndex(final int index) { return keyIndex(index) + 1; }
 
@@ -91,14 +193,42 @@ public class ObjectArray<K extends Comparable<K>,V> implements NodeStore<K,V> {
     }
 
     private class _Branch extends Base implements Branch<K,V> {
+        private long[] counts;
+        private Branch<K,V> right;
+
         protected _Branch() { super(2 * branchOrder); }
 
         public Branch<K,V> put(final int index, final Node<K,V> child) {
             ary[keyIndex(index)] = child.key(0);
             ary[pairIndex(index)] = child;
+            if(counted) {
+                counts()[index] = Branch.total(child);
+            }
+
             return this;
         }
 
+        public Branch<K,V> put(final int index, final K k, final Node<K,V> child) {
+            ary[keyIndex(index)] = k;
+            ary[pairIndex(index)] = child;
+            return this;
+        }
+
+        public Branch<K,V> right() { return right; }
+        public void right(final Branch<K,V> branch) { right = branch; }
+
+        //allocated on demand, pooled branches may predate counted mode
+        private long[] counts() {
+            if(counts == null) {
+                counts = new long[branchOrder];
+            }
+
+            return counts;
+        }
+
+        public long count(final int index) { return counts()[index]; }
+        public void count(final int index, final long val) { counts()[index] = val; }
+
         public void resetKey(int index) {
             ary[keyIndex(index)] = child(index).key(0);
         }
@@ -113,6 +243,10 @@ public class ObjectArray<K extends Comparable<K>,V> implements NodeStore<K,V> {
         
         public Branch<K,V> copy(final int argSrcPos, final Node<K,V> argSrc, final int argDestPos, final int argLength) {
             sharedCopy(argSrcPos, argSrc, argDestPos, argLength);
+            if(counted) {
+                System.arraycopy(((_Branch) argSrc).counts(), argSrcPos, counts(), argDestPos, argLength);
+            }
+
             return this;
         }
 
@@ -122,6 +256,15 @@ public class ObjectArray<K extends Comparable<K>,V> implements NodeStore<K,V> {
             super.size(newSize);
         }
         
+        @Override
+        public void done() {
+            right = null;
+            super.done();
+            if(pool != null) {
+                pool.release(this);
+            }
+        }
+
         @SuppressWarnings("unchecked")
         private Node<K,V> extractNode(final int actualIndex) {
             return (Node<K,V>) ary[actualIndex];
@@ -129,8 +272,16 @@ public class ObjectArray<K extends Comparable<K>,V> implements NodeStore<K,V> {
     }
     
     private class _Leaf extends Base implements Leaf<K,V> {
+        private Leaf<K,V> next;
+        private Leaf<K,V> prev;
+
         protected _Leaf() { super(2 * leafOrder); }
 
+        public Leaf<K,V> next() { return next; }
+        public void next(final Leaf<K,V> leaf) { next = leaf; }
+        public Leaf<K,V> prev() { return prev; }
+        public void prev(final Leaf<K,V> leaf) { prev = leaf; }
+
         public Leaf<K,V> put(final int index, final K k, final V v) {
             final int ki = keyIndex(index);
             final int vi = pairIndex(index);
@@ -151,6 +302,16 @@ public class ObjectArray<K extends Comparable<K>,V> implements NodeStore<K,V> {
             super.size(newSize);
         }
 
+        @Override
+        public void done() {
+            next = null;
+            prev = null;
+            super.done();
+            if(pool != null) {
+                pool.release(this);
+            }
+        }
+
         public int order() { return leafOrder; }
         
         public V value(final int index) { return valueType.cast(ary[pairIndex(index)]); }
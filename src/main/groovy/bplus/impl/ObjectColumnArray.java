@@ -0,0 +1,62 @@
+package bplus.impl;
+
+import bplus.*;
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class ObjectColumnArray<K extends Comparable<K>,V> extends ColumnArray<K,V> {
+
+    private final Comparator<? super K> comparator;
+    private final Comparator<? super K> order;
+
+    public ObjectColumnArray(final Class<K> keyType, final Class<V> valueType, final int order) {
+        this(keyType, valueType, order, order);
+    }
+
+    public ObjectColumnArray(final Class<K> keyType, final Class<V> valueType, final int order, final Comparator<? super K> comparator) {
+        this(keyType, valueType, order, order, comparator);
+    }
+
+    public ObjectColumnArray(final Class<K> keyType, final Class<V> valueType, final int branchOrder, final int leafOrder) {
+        this(keyType, valueType, branchOrder, leafOrder, null);
+    }
+
+    public ObjectColumnArray(final Class<K> keyType, final Class<V> valueType, final int branchOrder, final int leafOrder,
+                             final Comparator<? super K> comparator) {
+        super(keyType, valueType, branchOrder, leafOrder);
+        this.comparator = comparator;
+        this.order = Comparators.order(keyType, comparator);
+    }
+
+    public Comparator<? super K> getComparator() {
+        return comparator;
+    }
+
+    protected Object newKeys(final int length) { return new Object[length]; }
+    protected Object newValues(final int length) { return new Object[length]; }
+    protected K key(final Object keys, final int index) { return getKeyType().cast(((Object[]) keys)[index]); }
+    protected void key(final Object keys, final int index, final K k) { ((Object[]) keys)[index] = k; }
+    protected V value(final Object values, final int index) { return getValueType().cast(((Object[]) values)[index]); }
+    protected void value(final Object values, final int index, final V v) { ((Object[]) values)[index] = v; }
+
+    protected int compare(final Object keys, final int index, final K k) {
+        return order.compare(key(keys, index), k);
+    }
+
+    @Override
+    protected void clear(final Object column, final int from, final int to) {
+        Arrays.fill((Object[]) column, from, to, null);
+    }
+
+    protected Leaf<K,V> leaf() {
+        return new _Leaf();
+    }
+
+    protected Branch<K,V> branch() {
+        return new _Branch();
+    }
+
+    private class _Branch extends ColumnBranch {}
+
+    private class _Leaf extends ColumnLeaf {}
+}
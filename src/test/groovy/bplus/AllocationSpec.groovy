@@ -0,0 +1,122 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+import groovy.transform.CompileStatic
+import java.lang.management.ManagementFactory
+
+class AllocationSpec extends Specification {
+
+    static final int OPS = 200_000
+
+    @CompileStatic
+    static long allocated() {
+        def bean = (com.sun.management.ThreadMXBean) ManagementFactory.threadMXBean
+        return bean.getThreadAllocatedBytes(Thread.currentThread().id)
+    }
+
+    //for-in over the array, an indexed read compiles to a dynamic cast that allocates until it is linked
+    @CompileStatic
+    static long gets(final BplusTree<Integer,Integer> btree, final Integer[] keys) {
+        long sum = 0
+        for(int i = 0; i < OPS; i += keys.length) {
+            for(final Integer k : keys) {
+                if(btree.containsKey(k)) {
+                    sum += btree.get(k).intValue()
+                }
+            }
+        }
+
+        return sum
+    }
+
+    @CompileStatic
+    static void puts(final BplusTree<Integer,Integer> btree, final Integer[] keys) {
+        for(int i = 0; i < OPS; i += keys.length) {
+            for(final Integer k : keys) {
+                btree.put(k, k)
+            }
+        }
+    }
+
+    //every key removed and then put back, round after round, so leaves and branches split and merge all the time
+    @CompileStatic
+    static void churn(final BplusTree<Integer,Integer> btree, final Integer[] keys) {
+        for(int i = 0; i < OPS; i += 2 * keys.length) {
+            for(final Integer k : keys) {
+                btree.remove(k)
+            }
+
+            for(final Integer k : keys) {
+                btree.put(k, k)
+            }
+        }
+    }
+
+    static final int GETS = 0
+    static final int PUTS = 1
+    static final int CHURN = 2
+
+    //keeps the sum of gets alive so the lookups are not optimized away
+    static volatile long sink
+
+    //ops are picked here rather than passed as closures, a dynamic call in the measured run allocates
+    @CompileStatic
+    static void run(final int op, final BplusTree<Integer,Integer> btree, final Integer[] keys) {
+        if(op == GETS) {
+            sink = gets(btree, keys)
+        }
+        else if(op == PUTS) {
+            puts(btree, keys)
+        }
+        else {
+            churn(btree, keys)
+        }
+    }
+
+    //bytes allocated by the last of a few runs, the earlier ones warm up
+    @CompileStatic
+    static long bytes(final int op, final BplusTree<Integer,Integer> btree, final Integer[] keys) {
+        for(int i = 0; i < 3; ++i) {
+            run(op, btree, keys)
+        }
+
+        final long before = allocated()
+        run(op, btree, keys)
+        return allocated() - before
+    }
+
+    //far less than one byte per op, a single allocation on every op would be millions of bytes
+    static final long BOUND = 4096
+
+    def 'test steady state get and put do not allocate'() {
+        setup:
+        def btree = new BplusTree<Integer,Integer>(new ObjectArray(Integer, Integer, 16))
+        Integer[] keys = (0..<10_000).collect { Integer.valueOf(it) } as Integer[]
+        Collections.shuffle(Arrays.asList(keys))
+        keys.each { btree.put(it, it) }
+
+        expect:
+        ManagementFactory.threadMXBean.threadAllocatedMemorySupported
+        bytes(GETS, btree, keys) < BOUND
+        bytes(PUTS, btree, keys) < BOUND
+    }
+
+    def 'test inserts that split and removes that merge do not allocate with a pool'() {
+        setup:
+        def store = new ObjectArray(Integer, Integer, 16)
+        store.pool = new NodePool(4096)
+        def btree = new BplusTree<Integer,Integer>(store)
+        Integer[] keys = (0..<10_000).collect { Integer.valueOf(it) } as Integer[]
+        Collections.shuffle(Arrays.asList(keys), new Random(11))
+        keys.each { btree.put(it, it) }
+
+        when:
+        def churned = bytes(CHURN, btree, keys)
+
+        then:
+        churned < BOUND
+        store.pool.hits > 0
+        btree.keySet() as List == (0..<10_000)
+    }
+}
@@ -0,0 +1,127 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+
+class AppendModeSpec extends Specification {
+
+    static List leaves(NodeStore store) {
+        def node = store.root
+        while(node.branch) {
+            node = node.child(0)
+        }
+
+        def ret = []
+        for(def leaf = node; leaf != null; leaf = leaf.next()) {
+            ret << leaf
+        }
+
+        return ret
+    }
+
+    def 'test ascending keys fill leaves'() {
+        setup:
+        def btree = new BplusTree(store)
+        btree.appendMode = true
+
+        when:
+        (0..<5000).each { btree.put(it.asType(store.keyType), it.asType(store.valueType)) }
+        def full = leaves(store)
+
+        then:
+        btree.size() == 5000
+        btree.assertValidKeys()
+        btree.keySet()*.intValue() == (0..<5000)
+        full.dropRight(1).every { it.full }
+        full.size() == Math.ceil(5000 / full[0].order())
+
+        when:
+        btree.appendMode = false
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.keySet()*.intValue() == (0..<5000)
+        (0..<5000).step(13).every { btree.get(it.asType(store.keyType)).intValue() == it }
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 8), new ObjectColumnArray(Integer, Integer, 5, 7),
+                  new LongArray(16), new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 9)]
+    }
+
+    def 'test mixed operations while appending'() {
+        setup:
+        def random = new Random(7)
+        def store = new ObjectArray(Integer, Integer, 6)
+        store.counted = true
+        def btree = new BplusTree(store)
+        def expected = new TreeMap()
+        btree.appendMode = true
+
+        when:
+        (0..<20000).each { i ->
+            def op = random.nextInt(10)
+            if(op < 6) {
+                btree.put(i, i)
+                expected[i] = i
+            }
+            else if(op < 8 && expected) {
+                def k = random.nextInt(i)
+                assert btree.remove(k) == expected.remove(k)
+            }
+            else {
+                def k = random.nextInt(i + 1)
+                btree.put(k, -k)
+                expected[k] = -k
+            }
+        }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertCounts()
+        btree.longSize() == expected.size()
+        btree.entrySet().collect { [it.key, it.value] } == expected.collect { k, v -> [k, v] }
+        leaves(store).collectMany { it.keys() } == expected.keySet() as List
+
+        when:
+        btree.appendMode = false
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.assertCounts()
+        btree.rank(10000) == expected.headMap(10000).size()
+        btree.entrySet().collect { [it.key, it.value] } == expected.collect { k, v -> [k, v] }
+    }
+
+    def 'test keys that are not past the end take the normal path'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        btree.appendMode = true
+
+        when:
+        (10..<100).each { btree.put(it, it) }
+        def old = btree.put(50, 500)
+        btree.put(5, 5)
+        btree.put(99, 990)
+        btree.put(100, 100)
+
+        then:
+        old == 50
+        btree.size() == 92
+        btree.get(50) == 500
+        btree.get(99) == 990
+        btree.firstKey() == 5
+        btree.lastKey() == 100
+        btree.assertValidKeys()
+
+        when:
+        btree.clear()
+        (0..<100).each { btree.put(it, it) }
+        btree.appendMode = false
+
+        then:
+        btree.keySet() as List == (0..<100)
+        btree.assertOrders()
+    }
+}
@@ -2,6 +2,9 @@ package bplus;
 
 import spock.lang.*
 import bplus.impl.ObjectArray
+import bplus.impl.ObjectColumnArray
+import bplus.impl.DirectBuffer
+import bplus.impl.Codec
 import java.util.concurrent.ThreadLocalRandom;
 
 class BplusTreeSpec extends Specification {
@@ -598,6 +601,95 @@ class BplusTreeSpec extends Specification {
         btree.hashCode() == map.hashCode();
     }
 
+    def 'test put replaces existing value'() {
+        setup:
+        def btree = basicMap()
+
+        expect:
+        btree.put(10, -10) == 10
+        btree.get(10) == -10
+        btree.size() == 1024
+    }
+
+    def 'test put all batches'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, order))
+        def expected = new TreeMap()
+        def random = new Random(order)
+
+        when:
+        3.times {
+            def batch = [:]
+            2000.times { int k = random.nextInt(10_000); batch[k] = random.nextInt() }
+            btree.putAll(sorted ? new TreeMap(batch) : batch)
+            expected.putAll(batch)
+        }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.entrySet() == expected.entrySet()
+
+        where:
+        order | sorted
+        4     | false
+        5     | true
+        16    | false
+        64    | true
+    }
+
+    def 'test put all sorted rejects descending keys'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        def entries = [1, 5, 3].collect { new AbstractMap.SimpleEntry(it, it) }
+
+        when:
+        btree.putAllSorted(entries.iterator())
+
+        then:
+        thrown(IllegalArgumentException)
+        btree.keySet() as List == [1, 5]
+    }
+
+    def 'test entry count is maintained'() {
+        setup:
+        def oa = new ObjectArray(Integer, Integer, 5)
+        def btree = new BplusTree(oa)
+
+        when:
+        (1..1000).each { btree.put(it, it) }
+        btree.put(10, 10)
+        (1..100).each { btree.remove(it) }
+        btree.remove(-1)
+        btree.pollFirstEntry()
+        btree.pollLastEntry()
+        btree.putAll((500..1500).collectEntries { [it, it] })
+
+        then:
+        oa.entryCount == 1399
+        btree.size() == 1399
+        btree.keySet().size() == 1399
+
+        when:
+        oa.entryCount = -1
+
+        then:
+        btree.size() == 1399
+        oa.entryCount == 1399
+
+        when:
+        btree.clear()
+
+        then:
+        btree.size() == 0
+
+        when:
+        btree.bulkLoad((1..77).collect { new AbstractMap.SimpleEntry(it, it) }.iterator(), 0.5d)
+
+        then:
+        btree.size() == 77
+    }
+
     def 'test clear'() {
         setup:
         def oa = new ObjectArray(Integer, Integer, 16)
@@ -659,4 +751,79 @@ class BplusTreeSpec extends Specification {
         btree.floorKey(1025) == 1024
         btree.floorEntry(1025).value == 1024
     }
+
+    def 'test bulk load'() {
+        setup:
+        def btree = new BplusTree(store)
+        btree.put(-1, -1)
+        def map = new TreeMap()
+        (0..<count).each { map[it * 2] = it }
+
+        when:
+        btree.bulkLoad(map.entrySet().iterator(), fill)
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.size() == count
+        btree.entrySet() == map.entrySet()
+
+        when:
+        (0..<count).each { btree.put(it * 2 + 1, it) }
+        (0..<count).each { btree.remove(it * 2) }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.keySet() as List == (0..<count).collect { it * 2 + 1 }
+
+        where:
+        store                                            | count | fill
+        new ObjectArray(Integer, Integer, 4)             | 0     | 1d
+        new ObjectArray(Integer, Integer, 4)             | 1     | 1d
+        new ObjectArray(Integer, Integer, 4)             | 5     | 1d
+        new ObjectArray(Integer, Integer, 5)             | 1000  | 1d
+        new ObjectArray(Integer, Integer, 16)            | 4099  | 0.7d
+        new ObjectArray(Integer, Integer, 7, 4)          | 2049  | 0.1d
+        new ObjectColumnArray(Integer, Integer, 6)       | 3001  | 0.5d
+        new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 8)| 5000  | 0.9d
+    }
+
+    def 'test bulk load packs leaves'() {
+        setup:
+        def store = new ObjectArray(Integer, Integer, 10)
+        def fullStore = new ObjectArray(Integer, Integer, 10)
+        def btree = new BplusTree(store)
+        def full = new BplusTree(fullStore)
+        def entries = (1..10_000).collect { new AbstractMap.SimpleEntry(it, it) }
+
+        when:
+        btree.bulkLoad(entries.iterator(), 0.8d)
+        full.bulkLoad(entries.iterator())
+
+        then:
+        btree.height() == 5
+        full.height() == 4
+        store.root.leftTraverse().leaf().size() == 8
+        fullStore.root.leftTraverse().leaf().size() == 10
+    }
+
+    def 'test bulk load rejects unsorted input'() {
+        setup:
+        def btree = basicMap()
+        def entries = [1, 2, 3, 3, 4].collect { new AbstractMap.SimpleEntry(it, it) }
+
+        when:
+        btree.bulkLoad(entries.iterator(), 1d)
+
+        then:
+        thrown(IllegalArgumentException)
+        btree.isEmpty()
+
+        when:
+        btree.bulkLoad(entries.iterator(), 0d)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
 }
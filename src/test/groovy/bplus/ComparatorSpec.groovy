@@ -0,0 +1,107 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+
+class ComparatorSpec extends Specification {
+
+    def 'test descending order'() {
+        setup:
+        def btree = new BplusTree(store)
+        def list = (0..<2048).collect { it }
+        Collections.shuffle(list)
+
+        when:
+        list.each { btree.put(it.asType(store.keyType), it.asType(store.valueType)) }
+
+        then:
+        btree.comparator().is(store.comparator)
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.keySet()*.intValue() == (2047..0)
+        btree.firstKey().intValue() == 2047
+        btree.lastKey().intValue() == 0
+        btree.ceilingKey(5000.asType(store.keyType)).intValue() == 2047
+        btree.floorKey(5000.asType(store.keyType)) == null
+        btree.headMap(2000.asType(store.keyType)).size() == 47
+        btree.subMap(100.asType(store.keyType), 50.asType(store.keyType)).keySet()*.intValue() == (100..51)
+        btree.subMap(100.asType(store.keyType), 50.asType(store.keyType)).comparator().is(store.comparator)
+
+        when:
+        list.take(1500).each { btree.remove(it.asType(store.keyType)) }
+
+        then:
+        btree.assertValidKeys()
+        btree.keySet()*.intValue() == list.drop(1500).sort().reverse()
+
+        when:
+        btree.subMap(50.asType(store.keyType), 100.asType(store.keyType))
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 6, Comparators.INTEGER_DESCENDING),
+                  new ObjectColumnArray(Integer, Integer, 5, Comparators.INTEGER_DESCENDING),
+                  new DirectBuffer(Codec.LONG, Codec.LONG, 8, Comparators.LONG_DESCENDING)]
+    }
+
+    def 'test case insensitive keys'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(String, Integer, 4, Comparators.CASE_INSENSITIVE))
+
+        when:
+        ['delta', 'Alpha', 'charlie', 'Bravo', 'echo'].eachWithIndex { k, i -> btree.put(k, i) }
+        btree.put('ALPHA', 10)
+
+        then:
+        btree.size() == 5
+        btree.keySet()*.toLowerCase() == ['alpha', 'bravo', 'charlie', 'delta', 'echo']
+        btree.get('alpha') == 10
+        btree.containsKey('CHARLIE')
+        btree.headMap('c').size() == 2
+        btree.tailMap('D', true).values() as List == [0, 4]
+    }
+
+    def 'test putAll and bulk load use the store ordering'() {
+        setup:
+        def sorted = new TreeMap(Comparators.INTEGER_DESCENDING)
+        (0..<1000).each { sorted[it] = it * 2 }
+        def shuffled = [:]
+        (1000..<1500).toList().shuffled().each { shuffled[it] = it * 2 }
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 8, Comparators.INTEGER_DESCENDING))
+
+        when:
+        btree.putAll(sorted)
+        btree.putAll(shuffled)
+
+        then:
+        btree.assertValidKeys()
+        btree.size() == 1500
+        btree.keySet() as List == (1499..0)
+
+        when:
+        btree.bulkLoad(sorted.entrySet().iterator())
+
+        then:
+        btree.assertValidKeys()
+        btree.keySet() as List == (999..0)
+
+        when:
+        btree.bulkLoad(sorted.entrySet().sort { it.key }.iterator())
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def 'test specialized natural comparators'() {
+        expect:
+        Comparators.natural(Integer).is(Comparators.INTEGER)
+        Comparators.natural(Long).is(Comparators.LONG)
+        Comparators.natural(String).is(Comparators.STRING)
+        Comparators.natural(BigDecimal) == null
+        Comparators.order(BigDecimal, null).compare(1.5, 2.5) < 0
+        Comparators.DOUBLE.compare(Double.NaN, 1d) == Double.valueOf(Double.NaN).compareTo(1d)
+        new BplusTree(new ObjectArray(Integer, Integer, 4)).comparator() == null
+    }
+}
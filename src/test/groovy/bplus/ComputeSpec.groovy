@@ -0,0 +1,90 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+import java.util.function.BiFunction
+
+class ComputeSpec extends Specification {
+
+    def 'test updates agree with a sorted map'() {
+        setup:
+        def random = new Random(5)
+        def btree = new BplusTree(store)
+        def expected = new TreeMap()
+        def add = { a, b -> (a + b).asType(store.valueType) } as BiFunction
+        def odd = { k, v -> v == null ? 1.asType(store.valueType) : v % 2 == 0 ? null : (v + 1).asType(store.valueType) } as BiFunction
+
+        when:
+        30000.times {
+            def k = random.nextInt(2000)
+            def key = k.asType(store.keyType)
+            def v = (random.nextInt(10) + 1).asType(store.valueType)
+            switch(random.nextInt(7)) {
+                case 0: assert btree.merge(key, v, add) == expected.merge(k, v, add); break
+                case 1: assert btree.compute(key, odd) == expected.compute(k, odd); break
+                case 2: assert btree.computeIfAbsent(key, { it * 3 }) == expected.computeIfAbsent(k, { it * 3 }); break
+                case 3: assert btree.computeIfPresent(key, odd) == expected.computeIfPresent(k, odd); break
+                case 4: assert btree.putIfAbsent(key, v) == expected.putIfAbsent(k, v); break
+                case 5: assert btree.replace(key, v) == expected.replace(k, v); break
+                default: assert btree.replace(key, v, (v * 2).asType(store.valueType)) == expected.replace(k, v, v * 2)
+            }
+        }
+
+        then:
+        btree.size() == expected.size()
+        btree.entrySet().collect { [it.key.intValue(), it.value.intValue()] } == expected.collect { k, v -> [k, v] }
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.assertCounts()
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 4), new ObjectColumnArray(Integer, Integer, 5, 8).with { counted = true; it },
+                  new IntArray(16), new LongArray(9), new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 6)]
+    }
+
+    def 'test counters only descend once'() {
+        setup:
+        int compares = 0
+        def counting = { a, b -> ++compares; a <=> b } as Comparator
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 16, counting))
+        (0..<10000).each { btree.put(it, 0) }
+
+        when:
+        compares = 0
+        (0..<10000).each { btree.merge(it, 1, Integer::sum) }
+        def merged = compares
+        compares = 0
+        (0..<10000).each { btree.put(it, btree.get(it) + 1) }
+        def getThenPut = compares
+
+        then:
+        merged * 2 <= getThenPut + 10000
+        btree.values().every { it == 2 }
+    }
+
+    def 'test callbacks that change the tree'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        (0..<100).each { btree.put(it, it) }
+
+        when:
+        def ret = btree.compute(50) { k, v -> btree.get(49) + btree.get(51) }
+
+        then:
+        ret == 100
+        btree.get(50) == 100
+
+        when:
+        btree.computeIfAbsent(500) { k -> btree.merge(10, 1, Integer::sum); k }
+
+        then:
+        btree.get(10) == 11
+        btree.get(500) == 500
+
+        when:
+        btree.compute(60) { k, v -> btree.put(1000, 1000); v }
+
+        then:
+        thrown(ConcurrentModificationException)
+    }
+}
@@ -0,0 +1,473 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+import java.util.concurrent.*
+
+class ConcurrentBplusTreeSpec extends Specification {
+
+    static <T> T concurrent(T store) {
+        store.concurrent = true
+        store
+    }
+
+    static boolean valid(ConcurrentBplusTree ctree) {
+        ctree.@tree.assertValidKeys()
+        ctree.@tree.assertOrders()
+        ctree.@tree.assertCounts()
+    }
+
+    static <T> T blink(T ctree) {
+        ctree.setBlinkMode(true)
+        ctree
+    }
+
+    //every level in order along its links, each node's keys below its high key and at or past the one before it
+    static boolean linked(ConcurrentBplusTree ctree) {
+        def first = ctree.@store.root
+        while(first != null) {
+            def low = null
+            for(def node = first; node != null; node = node.branch ? node.right() : node.next()) {
+                def keys = (node.branch ? (1..<node.size()) : (0..<node.size())).collect { node.key(it) }
+                keys.each {
+                    assert low == null || it >= low
+                    assert node.highKey() == null || it < node.highKey()
+                }
+                (1..<Math.max(keys.size(), 1)).each { assert keys[it - 1] < keys[it] }
+                def next = node.branch ? node.right() : node.next()
+                assert (next == null) == (node.highKey() == null)
+                assert node.branch || next == null || next.prev().is(node)
+                if(node.branch) {
+                    (1..<node.size()).each { assert node.child(it).size() == 0 || node.child(it).key(0) >= node.key(it) }
+                }
+                low = node.highKey()
+            }
+            first = first.branch ? first.child(0) : null
+        }
+
+        true
+    }
+
+    public static void run(int threads, Closure body) {
+        def pool = Executors.newFixedThreadPool(threads)
+        def start = new CountDownLatch(1)
+        def futures = (0..<threads).collect { t -> pool.submit({ start.await(); body(t) } as Callable) }
+        start.countDown()
+        try {
+            futures*.get(2, TimeUnit.MINUTES)
+        }
+        finally {
+            pool.shutdownNow()
+        }
+    }
+
+    def 'test single threaded use agrees with a sorted map'() {
+        setup:
+        def random = new Random(21)
+        def ctree = new ConcurrentBplusTree(store)
+        def expected = new TreeMap()
+        def key = { it.asType(store.keyType) }
+
+        when:
+        20000.times {
+            def k = random.nextInt(3000)
+            def v = random.nextInt(100).asType(store.valueType)
+            switch(random.nextInt(5)) {
+                case 0: assert ctree.remove(key(k))?.intValue() == expected.remove(k); break
+                case 1: assert ctree.putIfAbsent(key(k), v)?.intValue() == expected.putIfAbsent(k, v.intValue()); break
+                case 2: assert ctree.remove(key(k), v) == expected.remove(k, v.intValue()); break
+                default: assert ctree.put(key(k), v)?.intValue() == expected.put(k, v.intValue())
+            }
+        }
+
+        then:
+        ctree.size() == expected.size()
+        ctree.entrySet().collect { [it.key.intValue(), it.value.intValue()] } == expected.collect { k, v -> [k, v] }
+        ctree.descendingKeySet().collect { it.intValue() } == expected.descendingKeySet() as List
+        (0..<300).every {
+            def q = random.nextInt(3200) - 100
+            assert ctree.ceilingKey(key(q))?.intValue() == expected.ceilingKey(q)
+            assert ctree.floorKey(key(q))?.intValue() == expected.floorKey(q)
+            assert ctree.higherKey(key(q))?.intValue() == expected.higherKey(q)
+            assert ctree.lowerKey(key(q))?.intValue() == expected.lowerKey(q)
+            assert ctree.get(key(q))?.intValue() == expected.get(q)
+            true
+        }
+        ctree.subMap(key(100), true, key(900), false).keySet().collect { it.intValue() } == expected.subMap(100, true, 900, false).keySet() as List
+        ctree.headMap(key(500)).size() == expected.headMap(500).size()
+        ctree.descendingMap().tailMap(key(500), true).keySet().collect { it.intValue() } == expected.descendingMap().tailMap(500, true).keySet() as List
+        valid(ctree)
+
+        when:
+        ctree.subMap(key(1000), key(2000)).clear()
+        expected.subMap(1000, 2000).clear()
+        def first = ctree.pollFirstEntry()
+        def last = ctree.pollLastEntry()
+
+        then:
+        first.key.intValue() == expected.pollFirstEntry().key
+        last.key.intValue() == expected.pollLastEntry().key
+        ctree.keySet().collect { it.intValue() } == expected.keySet() as List
+        valid(ctree)
+
+        when:
+        ctree.clear()
+
+        then:
+        ctree.isEmpty()
+        ctree.size() == 0
+        ctree.firstEntry() == null
+        ctree.put(key(1), 1.asType(store.valueType)) == null
+        ctree.firstKey() == key(1)
+
+        where:
+        store << [concurrent(new ObjectArray(Integer, Integer, 4)), concurrent(new ObjectArray(Integer, Integer, 5, 8).with { counted = true; it }),
+                  concurrent(new IntArray(6)), concurrent(new ObjectColumnArray(Integer, Integer, 7))]
+    }
+
+    def 'test threads writing their own keys always read their own writes'() {
+        setup:
+        int threads = 8
+        def ctree = new ConcurrentBplusTree(store)
+        def expected = (0..<threads).collect { new HashMap() }
+
+        when:
+        run(threads) { t ->
+            def random = new Random(t)
+            def mine = expected[t]
+            40000.times {
+                def k = random.nextInt(4000) * threads + t
+                def v = random.nextInt(1000)
+                if(random.nextInt(3) == 0) {
+                    assert ctree.remove(k) == mine.remove(k)
+                }
+                else {
+                    assert ctree.put(k, v) == mine.put(k, v)
+                }
+
+                def q = random.nextInt(4000) * threads + t
+                assert ctree.get(q) == mine[q]
+            }
+        }
+
+        def all = new TreeMap()
+        expected.each { all.putAll(it) }
+
+        then:
+        ctree.size() == all.size()
+        ctree.entrySet().collect { [it.key, it.value] } == all.collect { k, v -> [k, v] }
+        valid(ctree)
+
+        where:
+        store << [concurrent(new ObjectArray(Integer, Integer, 4)), concurrent(new ObjectArray(Integer, Integer, 16).with { counted = true; it }),
+                  concurrent(new IntArray(32))]
+    }
+
+    def 'test scans see every key that is not being changed'() {
+        setup:
+        def ctree = new ConcurrentBplusTree(concurrent(new ObjectArray(Integer, Integer, 6)))
+        (0..<20000).step(2).each { ctree.put(it, it) }
+        def done = new CountDownLatch(2)
+        def stable = (0..<20000).step(2) as List
+
+        when:
+        run(4) { t ->
+            def random = new Random(t)
+            if(t < 2) {
+                try {
+                    60000.times {
+                        def k = random.nextInt(10000) * 2 + 1
+                        if(random.nextBoolean()) {
+                            ctree.put(k, k)
+                        }
+                        else {
+                            ctree.remove(k)
+                        }
+                    }
+                }
+                finally {
+                    done.countDown()
+                }
+            }
+            else {
+                while(done.count > 0) {
+                    def keys = (t == 2) ? ctree.keySet() as List : ctree.descendingKeySet().toList().reverse()
+                    assert keys.findAll { (it & 1) == 0 } == stable
+                    assert (1..<keys.size()).every { keys[it - 1] < keys[it] }
+                    def from = random.nextInt(10000) * 2
+                    assert ctree.ceilingKey(from) == from
+                    assert ctree.tailMap(from, false).keySet().find { (it & 1) == 0 } == (from + 2 < 20000 ? from + 2 : null)
+                }
+            }
+        }
+
+        then:
+        ctree.size() == ctree.keySet().size()
+        valid(ctree)
+    }
+
+    def 'test atomic updates from many threads'() {
+        setup:
+        def ctree = new ConcurrentBplusTree(concurrent(new ObjectArray(Integer, Integer, 8)))
+        def polled = new ConcurrentLinkedQueue()
+
+        when:
+        run(8) { t ->
+            2000.times { i ->
+                ctree.merge(i % 50, 1, Integer::sum)
+                ctree.computeIfAbsent(1000 + t * 2000 + i) { it }
+            }
+
+            def entry
+            while((entry = ctree.tailMap(1000).pollFirstEntry()) != null) {
+                polled << entry.key
+            }
+        }
+
+        then:
+        (0..<50).every { ctree[it] == 8 * 2000 / 50 }
+        ctree.size() == 50
+        polled.size() == 8 * 2000
+        polled.toSet().size() == 8 * 2000
+        valid(ctree)
+    }
+
+    def 'test b-link mode under writers and readers'() {
+        setup:
+        int threads = 6
+        def ctree = blink(new ConcurrentBplusTree(store))
+        (0..<6000).step(3).each { ctree.put(it, it) }
+        def expected = (0..<threads).collect { new HashMap() }
+
+        when:
+        run(threads) { t ->
+            def random = new Random(t)
+            def mine = expected[t]
+            30000.times {
+                def k = (random.nextInt(2000) * (threads - 1) + t - 1) * 3 + 1
+                if(t == 0) {
+                    def q = random.nextInt(2000) * 3
+                    assert ctree.get(q) == q
+                    assert ctree.ceilingKey(q - 1) == q
+                    assert ctree.lowerKey(q + 1) == q
+                }
+                else if(random.nextInt(3) == 0) {
+                    assert ctree.remove(k) == mine.remove(k)
+                }
+                else {
+                    assert ctree.put(k, t) == mine.put(k, t)
+                }
+            }
+        }
+
+        def all = new TreeMap()
+        (0..<6000).step(3).each { all[it] = it }
+        expected.each { all.putAll(it) }
+
+        then:
+        ctree.size() == all.size()
+        ctree.entrySet().collect { [it.key, it.value] } == all.collect { k, v -> [k, v] }
+        ctree.descendingKeySet().toList() == all.descendingKeySet() as List
+        all.keySet().every { ctree.get(it) == all[it] }
+        linked(ctree)
+
+        when:
+        ctree.clear()
+        (0..<500).each { ctree.put(it, it) }
+
+        then:
+        ctree.size() == 500
+        ctree.keySet() as List == (0..<500)
+        linked(ctree)
+
+        where:
+        store << [concurrent(new ObjectArray(Integer, Integer, 4)), concurrent(new IntArray(6)), concurrent(new ObjectColumnArray(Integer, Integer, 5))]
+    }
+
+    def 'test b-link mode with every thread splitting'() {
+        setup:
+        int threads = 8
+        def ctree = blink(new ConcurrentBplusTree(store))
+
+        when:
+        run(threads) { t ->
+            def random = new Random(t)
+            def mine = new HashMap()
+            20000.times {
+                def k = random.nextInt(5000) * threads + t
+                if(random.nextInt(4) == 0) {
+                    assert ctree.remove(k) == mine.remove(k)
+                }
+                else {
+                    assert ctree.put(k, k) == mine.put(k, k)
+                }
+
+                assert ctree.get(k) == mine[k]
+            }
+
+            (0..<5000).each { assert ctree.get(it * threads + t) == mine[it * threads + t] }
+        }
+
+        def keys = ctree.keySet() as List
+
+        then:
+        ctree.size() == keys.size()
+        keys.every { ctree.get(it) == it }
+        (1..<keys.size()).every { keys[it - 1] < keys[it] }
+        linked(ctree)
+
+        where:
+        store << [concurrent(new ObjectArray(Integer, Integer, 4)), concurrent(new IntArray(4)), concurrent(new ObjectColumnArray(Integer, Integer, 4))]
+    }
+
+    def 'test b-link mode needs an empty tree without counts'() {
+        when:
+        blink(new ConcurrentBplusTree(concurrent(new ObjectArray(Integer, Integer, 4).with { counted = true; it })))
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        def ctree = new ConcurrentBplusTree(concurrent(new ObjectArray(Integer, Integer, 4)))
+        ctree.put(1, 1)
+        blink(ctree)
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        ctree.remove(1)
+        blink(ctree)
+        (0..<1000).each { ctree.remove(it - 1); ctree.put(it, it) }
+
+        then:
+        ctree.keySet() as List == [999]
+        ctree.isBlinkMode()
+        linked(ctree)
+    }
+
+    def 'test a writer parked in a branch when the tree is cleared'() {
+        setup:
+        def armed = new java.util.concurrent.atomic.AtomicBoolean()
+        def parked = new CountDownLatch(1)
+        def resume = new CountDownLatch(1)
+        def park = [] as Set
+        //stops the armed writer the first time it compares against a key of the parked branch
+        def comparator = { Integer lhs, Integer rhs ->
+            if((park.contains(lhs) || park.contains(rhs)) && armed.compareAndSet(true, false)) {
+                parked.countDown()
+                resume.await()
+            }
+            Integer.compare(lhs, rhs)
+        } as Comparator<Integer>
+        def ctree = new ConcurrentBplusTree(concurrent(new ObjectArray(Integer, Integer, 4, comparator)))
+        ctree.setBlinkMode(blinkMode)
+        (0..<200).each { ctree.put(it, it) }
+        //room in the last leaf so the parked put takes the in-leaf path
+        ctree.remove(199)
+        def root = ctree.@store.root
+        def branch = root.child(root.lastIndex())
+        park.addAll((1..<branch.size()).collect { branch.key(it) })
+
+        when:
+        //an open scan holds the epoch so the cleared nodes are not reclaimed under the writer
+        def scan = ctree.keySet().iterator()
+        scan.next()
+        armed.set(true)
+        def writer = Thread.start { ctree.put(1000, 1000) }
+        assert parked.await(1, TimeUnit.MINUTES)
+        ctree.clear()
+        resume.countDown()
+        writer.join()
+
+        then:
+        ctree.longSize() == 1
+        !ctree.isEmpty()
+        ctree.get(1000) == 1000
+        ctree.keySet() as List == [1000]
+
+        where:
+        blinkMode << [false, true]
+    }
+
+    def 'test writers racing clear keep the size in step with the contents'() {
+        setup:
+        int threads = 5
+        def ctree = new ConcurrentBplusTree(concurrent(new ObjectArray(Integer, Integer, 4)))
+        ctree.setBlinkMode(blinkMode)
+        def done = new CountDownLatch(threads - 1)
+
+        when:
+        run(threads) { t ->
+            if(t == 0) {
+                while(done.count > 0) {
+                    ctree.clear()
+                    Thread.yield()
+                }
+            }
+            else {
+                try {
+                    def random = new Random(t)
+                    20000.times {
+                        def k = random.nextInt(2000) * (threads - 1) + t - 1
+                        if(random.nextInt(4) == 0) {
+                            ctree.remove(k)
+                        }
+                        else {
+                            ctree.put(k, k)
+                        }
+                    }
+                }
+                finally {
+                    done.countDown()
+                }
+            }
+        }
+
+        def keys = ctree.keySet() as List
+
+        then:
+        ctree.longSize() == keys.size()
+        ctree.isEmpty() == keys.isEmpty()
+        keys.every { ctree.get(it) == it }
+        (1..<Math.max(keys.size(), 1)).every { keys[it - 1] < keys[it] }
+        blinkMode ? linked(ctree) : valid(ctree)
+
+        where:
+        blinkMode << [false, true]
+    }
+
+    def 'test stores that are not concurrent'() {
+        when:
+        new ConcurrentBplusTree(new ObjectArray(Integer, Integer, 4))
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        def store = new ObjectArray(Integer, Integer, 4)
+        new BplusTree(store).put(1, 1)
+        store.concurrent = true
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        def ctree = new ConcurrentBplusTree(concurrent(new ObjectArray(Integer, Integer, 4)))
+        (0..<100).each { ctree.put(it, it) }
+        ctree.subMap(10, 20).headMap(30)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        ctree.put(null, 1)
+
+        then:
+        thrown(NullPointerException)
+
+        expect:
+        ctree.subMap(10, 20).headMap(15).lastKey() == 14
+        ctree.descendingMap().subMap(20, 10).firstKey() == 20
+    }
+}
@@ -0,0 +1,234 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+import java.util.concurrent.*
+
+class CopyOnWriteSpec extends Specification {
+
+    def 'test snapshots keep the version they were taken at'() {
+        setup:
+        def random = new Random(23)
+        def btree = new BplusTree(store)
+        btree.copyOnWrite = true
+        def key = { it.asType(store.keyType) }
+        def expected = new TreeMap()
+        def snapshots = []
+
+        when:
+        30000.times { i ->
+            def k = random.nextInt(2000)
+            def v = random.nextInt(100).asType(store.valueType)
+            switch(random.nextInt(6)) {
+                case 0: assert btree.remove(key(k))?.intValue() == expected.remove(k); break
+                case 1: btree.merge(key(k), v) { a, b -> (a + b).asType(store.valueType) }; expected.merge(k, v.intValue(), Integer::sum); break
+                case 2: assert btree.pollFirstEntry()?.key?.intValue() == expected.pollFirstEntry()?.key; break
+                default: assert btree.put(key(k), v)?.intValue() == expected.put(k, v.intValue())
+            }
+
+            if(i % 1500 == 0) {
+                snapshots << [btree.snapshot(), new TreeMap(expected)]
+            }
+        }
+
+        then:
+        btree.entrySet().collect { [it.key.intValue(), it.value.intValue()] } == expected.collect { k, v -> [k, v] }
+        RemoveRangeSpec.linked(store) == expected.keySet() as List
+        RemoveRangeSpec.valid(btree)
+        snapshots.every { snapshot, map ->
+            assert snapshot.size() == map.size()
+            assert snapshot.entrySet().collect { [it.key.intValue(), it.value.intValue()] } == map.collect { k, v -> [k, v] }
+            assert snapshot.descendingKeySet()*.intValue() == map.descendingKeySet() as List
+            assert snapshot.subMap(key(500), true, key(1500), false).keySet()*.intValue() == map.subMap(500, true, 1500, false).keySet() as List
+            (0..<50).each {
+                def q = random.nextInt(2100) - 50
+                assert snapshot.get(key(q))?.intValue() == map.get(q)
+                assert snapshot.ceilingKey(key(q))?.intValue() == map.ceilingKey(q)
+                assert snapshot.lowerKey(key(q))?.intValue() == map.lowerKey(q)
+            }
+            true
+        }
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 4), new ObjectArray(Integer, Integer, 5, 8).with { counted = true; it },
+                  new IntArray(6), new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 5)]
+    }
+
+    def 'test cursors and primitive puts copy what they change'() {
+        setup:
+        def btree = new BplusTree(new LongArray(4))
+        btree.copyOnWrite = true
+        (0..<200).each { btree.putLong(it * 2, it) }
+        def before = btree.snapshot()
+        def cursor = btree.cursor()
+
+        when:
+        cursor.first()
+        while(cursor.isValid()) {
+            if((cursor.key() & 3) == 0) {
+                cursor.remove()
+            }
+            else {
+                cursor.put(cursor.key(), -1L)
+                cursor.next()
+            }
+        }
+
+        (0..<200).each { btree.putLong(it * 2 + 1, it) }
+
+        then:
+        before.size() == 200
+        before.keySet() as List == (0..<200).collect { it * 2L }
+        before.values() as List == (0..<200).collect { it as long }
+        btree.size() == 300
+        btree.getLong(2) == -1L
+        !btree.containsKey(4L)
+        btree.getLong(5) == 2
+        RemoveRangeSpec.linked(btree.@store) == (0..<400).findAll { (it & 3) != 0 }
+        RemoveRangeSpec.valid(btree)
+    }
+
+    def 'test replace copies the leaf it changes'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        btree.copyOnWrite = true
+        (0..<100).each { btree.put(it, it) }
+        def before = btree.snapshot()
+
+        when:
+        def old = btree.replace(10, -10)
+        def swapped = btree.replace(20, 20, -20)
+        def missed = btree.replace(30, 31, -30)
+        def absent = btree.replace(500, 1)
+
+        then:
+        old == 10
+        swapped
+        !missed
+        absent == null
+        before.get(10) == 10
+        before.get(20) == 20
+        before.values() as List == (0..<100)
+        btree.get(10) == -10
+        btree.get(20) == -20
+        btree.get(30) == 30
+        btree.snapshot().get(10) == -10
+        RemoveRangeSpec.linked(btree.@store) == (0..<100)
+        RemoveRangeSpec.valid(btree)
+
+        when:
+        before.replace(40, 0)
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def 'test readers on other threads see whole writes'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 6))
+        btree.copyOnWrite = true
+        def done = new CountDownLatch(1)
+        def pool = Executors.newFixedThreadPool(4)
+
+        when:
+        def readers = (0..<3).collect {
+            pool.submit({
+                def checked = 0
+                while(done.count > 0 || checked == 0) {
+                    def snapshot = btree.snapshot()
+                    def odd = snapshot.keySet().findAll { it & 1 } as List
+                    assert odd == (0..<odd.size()).collect { it * 2 + 1 }
+                    assert snapshot.size() == snapshot.keySet().size()
+                    assert snapshot.descendingMap().keySet().toList().reverse() == snapshot.keySet() as List
+                    ++checked
+                }
+                checked
+            } as Callable)
+        }
+
+        def writer = pool.submit({
+            def random = new Random(5)
+            try {
+                (0..<20000).each {
+                    btree.put(it * 2 + 1, it)
+                    btree.put(random.nextInt(20000) * 2, it)
+                    btree.remove(random.nextInt(20000) * 2)
+                }
+            }
+            finally {
+                done.countDown()
+            }
+        } as Callable)
+
+        writer.get(2, TimeUnit.MINUTES)
+        def counts = readers*.get(2, TimeUnit.MINUTES)
+
+        then:
+        counts.every { it > 0 }
+        btree.snapshot().keySet().findAll { it & 1 }.size() == 20000
+        RemoveRangeSpec.valid(btree)
+
+        cleanup:
+        pool.shutdownNow()
+    }
+
+    def 'test snapshots are read only and the mode turns off what writes in place'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        (0..<100).each { btree.put(it, it) }
+
+        when:
+        btree.snapshot()
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        btree.copyOnWrite = true
+        def snapshot = btree.snapshot()
+        snapshot.put(1, 2)
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        snapshot.remove(5)
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        snapshot.clear()
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        btree.removeRange(10, true, 20, false)
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        btree.splitAt(50)
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        btree.appendMode = true
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        btree.clear()
+        btree.put(7, 7)
+
+        then:
+        snapshot.size() == 100
+        snapshot.firstKey() == 0
+        snapshot.snapshot().is(snapshot)
+        btree.keySet() as List == [7]
+    }
+}
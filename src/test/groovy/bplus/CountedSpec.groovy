@@ -0,0 +1,124 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+
+class CountedSpec extends Specification {
+
+    def 'test counts through random puts and removes'() {
+        setup:
+        store.counted = true
+        def btree = new BplusTree(store)
+        def list = (0..<4096).collect { it }
+        Collections.shuffle(list)
+
+        when:
+        list.each { btree.put(it.asType(store.keyType), it.asType(store.valueType)) }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertCounts()
+        (0..<4096).step(37).every { btree.rank(it.asType(store.keyType)) == it }
+        (0..<4096).step(41).every { btree.select(it).key.intValue() == it }
+
+        when:
+        Collections.shuffle(list)
+        list.take(3000).each { btree.remove(it.asType(store.keyType)) }
+        def remaining = list.drop(3000).sort()
+
+        then:
+        btree.assertOrders()
+        btree.assertCounts()
+        remaining.indices.every { btree.select(it).key.intValue() == remaining[it] }
+        remaining.indices.every { btree.rank(remaining[it].asType(store.keyType)) == it }
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 4), new ObjectArray(Integer, Integer, 7, 5),
+                  new ObjectColumnArray(Integer, Integer, 5), new LongArray(6, 4)]
+    }
+
+    def 'test bounded size'() {
+        setup:
+        def store = new ObjectArray(Integer, Integer, 6)
+        store.counted = counted
+        def btree = new BplusTree(store)
+        (0..<2000).each { btree.put(it * 2, it) }
+
+        expect:
+        btree.subMap(100, 200).size() == 50
+        btree.subMap(101, 201).size() == 50
+        btree.subMap(100, true, 200, true).size() == 51
+        btree.headMap(1000).size() == 500
+        btree.tailMap(1000).keySet().size() == 1500
+        btree.tailMap(3998).size() == 1
+        btree.headMap(0).size() == 0
+        btree.headMap(0).isEmpty()
+        btree.headMap(2).size() == 1
+        btree.subMap(500, 3000).values().size() == btree.subMap(500, 3000).values().iterator().size()
+        btree.subMap(500, 3000).entrySet().size() == 1250
+        btree.subMap(500, 3000).entrySet().iterator().size() == 1250
+
+        where:
+        counted << [true, false]
+    }
+
+    def 'test rank'() {
+        setup:
+        def store = new ObjectArray(Integer, Integer, 6)
+        store.counted = true
+        def btree = new BplusTree(store)
+        (0..<2000).each { btree.put(it * 2, it) }
+
+        expect:
+        btree.rank(-5) == 0
+        btree.rank(5) == 3
+        btree.rank(10_000) == 2000
+    }
+
+    def 'test bulk load and batch put keep counts'() {
+        setup:
+        def store = new ObjectArray(Integer, Integer, 5)
+        store.counted = true
+        def btree = new BplusTree(store)
+
+        when:
+        btree.bulkLoad((0..<1000).collect { new AbstractMap.SimpleEntry(it * 3, it) }.iterator(), 0.6d)
+
+        then:
+        btree.assertCounts()
+        btree.select(999).key == 2997
+
+        when:
+        btree.putAll((0..<1000).collectEntries { [it * 3 + 1, it] })
+
+        then:
+        btree.assertCounts()
+        btree.select(1).key == 1
+        btree.rank(2998) == 1999
+    }
+
+    def 'test counts require counted store'() {
+        when:
+        new BplusTree(new ObjectArray(Integer, Integer, 4)).rank(1)
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        def store = new ObjectArray(Integer, Integer, 4)
+        def btree = new BplusTree(store)
+        (1..10).each { btree.put(it, it) }
+        store.counted = true
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        store = new ObjectArray(Integer, Integer, 4)
+        store.counted = true
+        new BplusTree(store).select(0)
+
+        then:
+        thrown(IndexOutOfBoundsException)
+    }
+}
@@ -0,0 +1,183 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+
+class CursorSpec extends Specification {
+
+    def 'test walking forward and backward'() {
+        setup:
+        def btree = new BplusTree(store)
+        (0..<3000).step(3).each { btree.put(it.asType(store.keyType), (it * 2).asType(store.valueType)) }
+        def cursor = btree.cursor()
+        def forward = []
+        def backward = []
+
+        when:
+        for(boolean ok = cursor.first(); ok; ok = cursor.next()) {
+            forward << cursor.key().intValue()
+        }
+
+        for(boolean ok = cursor.last(); ok; ok = cursor.prev()) {
+            backward << cursor.key().intValue()
+        }
+
+        then:
+        forward == (0..<3000).step(3)
+        backward == forward.reverse()
+        !cursor.valid
+
+        when:
+        def found = cursor.seek(301.asType(store.keyType))
+
+        then:
+        !found
+        cursor.key().intValue() == 303
+        cursor.value().intValue() == 606
+        cursor.seek(1500.asType(store.keyType))
+        cursor.prev()
+        cursor.key().intValue() == 1497
+        !cursor.seek(5000.asType(store.keyType))
+        !cursor.valid
+        cursor.seek(-5.asType(store.keyType)) == false
+        cursor.key().intValue() == 0
+
+        when:
+        cursor.seek(6000.asType(store.keyType))
+        cursor.key()
+
+        then:
+        thrown(NoSuchElementException)
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 4), new ObjectColumnArray(Integer, Integer, 5, 8),
+                  new LongArray(16), new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 6)]
+    }
+
+    def 'test puts and removes at the cursor'() {
+        setup:
+        def random = new Random(11)
+        def btree = new BplusTree(store)
+        def expected = new TreeMap()
+        def cursor = btree.cursor()
+        int k = 5000
+
+        when:
+        20000.times {
+            k = Math.max(0, k + random.nextInt(21) - 10)
+            def key = k.asType(store.keyType)
+            def op = random.nextInt(3)
+            if(op == 0) {
+                assert cursor.put(key, (k * 3).asType(store.valueType))?.intValue() == expected.put(k, k * 3)
+                assert cursor.key().intValue() == k
+            }
+            else if(op == 1) {
+                if(cursor.seek(key)) {
+                    assert cursor.remove().intValue() == expected.remove(k)
+                    def after = expected.higherKey(k)
+                    assert cursor.valid == (after != null)
+                    assert !cursor.valid || cursor.key().intValue() == after
+                }
+                else {
+                    assert !expected.containsKey(k)
+                }
+            }
+            else {
+                cursor.seek(key)
+                def ceiling = expected.ceilingKey(k)
+                assert cursor.valid == (ceiling != null)
+                assert !cursor.valid || cursor.key().intValue() == ceiling
+            }
+        }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.keySet()*.intValue() == expected.keySet() as List
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 4), new IntArray(7), new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 5)]
+    }
+
+    def 'test remove moves to the next entry'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        (0..<200).each { btree.put(it, it) }
+        def cursor = btree.cursor()
+        def removed = []
+
+        when:
+        cursor.seek(50)
+        while(cursor.valid && cursor.key() < 150) {
+            removed << cursor.remove()
+        }
+
+        then:
+        removed == (50..<150)
+        cursor.key() == 150
+        btree.keySet() as List == (0..<50) + (150..<200)
+        btree.assertValidKeys()
+        btree.assertOrders()
+
+        when:
+        cursor.last()
+        cursor.remove()
+
+        then:
+        !cursor.valid
+        btree.lastKey() == 198
+    }
+
+    def 'test cursor follows changes made through the tree'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        (0..<100).step(2).each { btree.put(it, it) }
+        def cursor = btree.cursor()
+
+        when:
+        cursor.seek(40)
+        (41..<60).step(2).each { btree.put(it, it) }
+        (0..<40).each { btree.remove(it) }
+
+        then:
+        cursor.key() == 40
+        cursor.next()
+        cursor.key() == 41
+
+        when:
+        btree.remove(41)
+        btree.remove(42)
+
+        then:
+        cursor.key() == 43
+
+        when:
+        btree.clear()
+
+        then:
+        !cursor.valid
+        !cursor.next()
+    }
+
+    def 'test nearby seeks only climb as far as needed'() {
+        setup:
+        int compares = 0
+        def counting = { a, b -> ++compares; a <=> b } as Comparator
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 16, counting))
+        (0..<100000).each { btree.put(it, it) }
+        def cursor = btree.cursor()
+
+        when:
+        cursor.seek(0)
+        compares = 0
+        (1..<10000).each { assert cursor.seek(it) }
+        def nearby = compares
+        compares = 0
+        (1..<10000).each { assert btree.cursor().seek(it) }
+        def fromRoot = compares
+
+        then:
+        btree.height() >= 4
+        nearby * 2 < fromRoot
+    }
+}
@@ -0,0 +1,141 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+
+class DescendingSpec extends Specification {
+
+    static List ints(Collection c) {
+        c.collect { it.intValue() }
+    }
+
+    def 'test bounded and descending views agree with a sorted map'() {
+        setup:
+        def random = new Random(3)
+        def btree = new BplusTree(store)
+        def expected = new TreeMap()
+        def key = { it.asType(store.keyType) }
+        (0..<2000).each {
+            def k = random.nextInt(5000)
+            btree.put(key(k), k.asType(store.valueType))
+            expected[k] = k
+        }
+
+        expect:
+        (0..<200).every {
+            def from = random.nextInt(5200) - 100
+            def to = from + random.nextInt(800)
+            def fi = random.nextBoolean()
+            def ti = random.nextBoolean()
+            def views = [[btree.subMap(key(from), fi, key(to), ti), expected.subMap(from, fi, to, ti)],
+                         [btree.headMap(key(to), ti), expected.headMap(to, ti)],
+                         [btree.tailMap(key(from), fi), expected.tailMap(from, fi)],
+                         [btree.descendingMap(), expected.descendingMap()],
+                         [btree.descendingMap().subMap(key(to), ti, key(from), fi), expected.descendingMap().subMap(to, ti, from, fi)],
+                         [btree.subMap(key(from), fi, key(to), ti).descendingMap(), expected.subMap(from, fi, to, ti).descendingMap()]]
+
+            views.every { view, map ->
+                assert ints(view.keySet()) == map.keySet() as List
+                assert ints(view.values()) == map.values() as List
+                assert ints(view.descendingKeySet()) == map.descendingKeySet() as List
+                assert view.size() == map.size()
+                (0..<5).each {
+                    def q = random.nextInt(5400) - 200
+                    assert view.ceilingKey(key(q))?.intValue() == map.ceilingKey(q)
+                    assert view.floorKey(key(q))?.intValue() == map.floorKey(q)
+                    assert view.higherKey(key(q))?.intValue() == map.higherKey(q)
+                    assert view.lowerKey(key(q))?.intValue() == map.lowerKey(q)
+                }
+
+                if(!map.isEmpty()) {
+                    def keys = map.keySet() as List
+                    def lo = keys[random.nextInt(keys.size())]
+                    def hi = keys[random.nextInt(keys.size())]
+                    if((map.comparator() ?: Comparator.naturalOrder()).compare(lo, hi) > 0) {
+                        (lo, hi) = [hi, lo]
+                    }
+
+                    assert view.firstKey().intValue() == map.firstKey()
+                    assert view.lastKey().intValue() == map.lastKey()
+                    assert ints(view.subMap(key(lo), true, key(hi), false).keySet()) == map.subMap(lo, true, hi, false).keySet() as List
+                    assert ints(view.headMap(key(hi), true).keySet()) == map.headMap(hi, true).keySet() as List
+                    assert ints(view.tailMap(key(lo), false).keySet()) == map.tailMap(lo, false).keySet() as List
+                }
+
+                true
+            }
+        }
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 4), new ObjectArray(Integer, Integer, 5, 8).with { counted = true; it },
+                  new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 5), new LongArray(6)]
+    }
+
+    def 'test polling from both ends of a bounded view'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        (0..<500).each { btree.put(it, it) }
+        def sub = btree.subMap(100, true, 200, false)
+        def polled = []
+
+        when:
+        while(!sub.isEmpty()) {
+            polled << sub.pollFirstEntry().key
+            polled << sub.pollLastEntry()?.key
+        }
+
+        then:
+        polled == (0..<50).collectMany { [100 + it, 199 - it] }
+        sub.pollFirstEntry() == null
+        btree.size() == 400
+        btree.ceilingKey(100) == 200
+        btree.assertOrders()
+
+        when:
+        def latest = btree.descendingMap()
+        def three = (0..<3).collect { latest.pollFirstEntry().key }
+
+        then:
+        three == [499, 498, 497]
+        latest.firstKey() == 496
+        btree.lastKey() == 496
+        btree.descendingKeySet().headSet(490).first() == 496
+        btree.navigableKeySet().tailSet(490, false).pollFirst() == 491
+        !btree.containsKey(491)
+    }
+
+    def 'test ceiling and higher across leaf boundaries'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        (0..<100).step(2).each { btree.put(it, it) }
+
+        expect:
+        (-1..<98).every { btree.ceilingKey(it) == it + (it & 1) && btree.higherKey(it) == it + 2 - (it & 1) }
+        btree.ceilingKey(99) == null
+        btree.higherKey(98) == null
+    }
+
+    def 'test narrowing outside the bounds'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        (0..<100).each { btree.put(it, it) }
+        def sub = btree.subMap(20, true, 40, true)
+
+        when:
+        sub.headMap(60, true)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        sub.tailMap(5, false)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        expect:
+        sub.headMap(40, true).lastKey() == 40
+        sub.tailMap(20, false).firstKey() == 21
+        sub.descendingMap().headMap(30).keySet() as List == (40..31)
+    }
+}
@@ -0,0 +1,133 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+
+class EpochsSpec extends Specification {
+
+    def 'test iterators walk on over leaves that were merged away'() {
+        setup:
+        def epochs = new Epochs()
+        def btree = new BplusTree(store)
+        btree.epochs = epochs
+        (0..<2000).each { btree.put(it, it) }
+        def iter = btree.keySet().iterator()
+        def seen = []
+
+        when:
+        while(iter.hasNext()) {
+            def k = iter.next()
+            seen << k
+            if(k % 100 == 0) {
+                (k + 20..<Math.min(k + 80, 2000)).each { btree.remove(it) }
+            }
+        }
+
+        then:
+        seen.containsAll((0..<2000).findAll { it % 100 < 20 || it % 100 >= 80 })
+        (1..<seen.size()).every { seen[it - 1] < seen[it] }
+        RemoveRangeSpec.valid(btree)
+
+        when:
+        def pinned = btree.descendingKeySet().iterator()
+        pinned.next()
+        btree.headMap(1000).clear()
+        def pending = epochs.pending()
+        btree.remove(1999)
+
+        then:
+        pending > 0
+        epochs.pending() >= pending
+        pinned.collect() == (1000..<1999).findAll { it % 100 < 20 || it % 100 >= 80 }.reverse()
+        epochs.pending() > 0
+
+        when:
+        btree.remove(1998)
+
+        then:
+        epochs.pending() == 0
+        RemoveRangeSpec.valid(btree)
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 4), new ObjectColumnArray(Integer, Integer, 5), new IntArray(6),
+                  new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 4)]
+    }
+
+    def 'test the pool only gets nodes back once no iterator is pinned'() {
+        setup:
+        def store = new ObjectArray(Integer, Integer, 4)
+        store.pool = new NodePool(1000)
+        def btree = new BplusTree(store)
+        btree.epochs = new Epochs()
+        (0..<1000).each { btree.put(it, it) }
+        def iter = btree.entrySet().iterator()
+
+        when:
+        iter.next()
+        (0..<1000).findAll { it % 4 != 0 }.each { btree.remove(it) }
+
+        then:
+        store.pool.leafCount == 0
+        btree.getEpochs().pending() > 0
+        iter.collect { it.key } == (4..<1000).step(4) as List
+
+        when:
+        btree.remove(0)
+
+        then:
+        btree.getEpochs().pending() == 0
+        store.pool.leafCount > 0
+        btree.keySet() as List == (4..<1000).step(4) as List
+        RemoveRangeSpec.valid(btree)
+    }
+
+    def 'test iterators that are dropped stop holding nodes back'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        btree.epochs = new Epochs()
+        (0..<500).each { btree.put(it, it) }
+
+        when:
+        (0..<10).each { btree.keySet().iterator().next() }
+        (0..<400).each { btree.remove(it) }
+
+        then:
+        btree.getEpochs().pending() > 0
+
+        when:
+        for(int i = 0; i < 50 && btree.getEpochs().pending() > 0; ++i) {
+            System.gc()
+            Thread.sleep(20)
+            btree.remove(1000)
+            btree.getEpochs().reclaim()
+        }
+
+        then:
+        btree.getEpochs().pending() == 0
+        btree.keySet() as List == (400..<500) as List
+    }
+
+    def 'test threads pin once however deep they enter'() {
+        setup:
+        def epochs = new Epochs()
+        def leaf = new ObjectArray(Integer, Integer, 4).root
+
+        when:
+        epochs.enter()
+        epochs.enter()
+        epochs.retire(leaf)
+        epochs.exit()
+        epochs.reclaim()
+
+        then:
+        epochs.pending() == 1
+
+        when:
+        epochs.exit()
+        epochs.reclaim()
+
+        then:
+        epochs.pending() == 0
+        epochs.epoch() == 1
+    }
+}
@@ -0,0 +1,139 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+import java.nio.file.Files
+
+class LeafLinksSpec extends Specification {
+
+    private static List leaves(final BplusTree btree, final NodeStore store) {
+        def ret = []
+        def leaf = store.root.leftTraverse().leaf()
+        while(leaf != null) {
+            ret << leaf
+            assert leaf.next() == null || leaf.next().prev() == leaf
+            leaf = leaf.next()
+        }
+
+        return ret
+    }
+
+    def 'test links survive splits and merges'() {
+        setup:
+        def btree = new BplusTree(store)
+        def list = (0..<3000).collect { it }
+        Collections.shuffle(list)
+
+        when:
+        list.each { btree.put(it.asType(store.keyType), it.asType(store.valueType)) }
+
+        then:
+        leaves(btree, store).collectMany { it.keys() }*.intValue() == (0..<3000)
+        btree.keySet()*.intValue() == (0..<3000)
+
+        when:
+        list.take(2500).each { btree.remove(it.asType(store.keyType)) }
+
+        then:
+        btree.assertOrders()
+        leaves(btree, store).collectMany { it.keys() }*.intValue() == list.drop(2500).sort()
+        btree.values()*.intValue() == list.drop(2500).sort()
+        btree.entrySet()*.key*.intValue() == list.drop(2500).sort()
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 4), new ObjectColumnArray(Integer, Integer, 5),
+                  new IntArray(6, 4), new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 5)]
+    }
+
+    def 'test bulk load links leaves'() {
+        setup:
+        def store = new ObjectArray(Integer, Integer, 6)
+        def btree = new BplusTree(store)
+        btree.put(5, 5)
+
+        when:
+        btree.bulkLoad((0..<1001).collect { new AbstractMap.SimpleEntry(it, it) }.iterator(), 0.5d)
+
+        then:
+        leaves(btree, store).collectMany { it.keys() } == (0..<1001)
+        leaves(btree, store).first().prev() == null
+    }
+
+    def 'test bound iterators stop at the upper bound'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        (0..<500).each { btree.put(it * 2, it) }
+
+        expect:
+        btree.subMap(100, 200).keySet() as List == (100..<200).step(2)
+        btree.subMap(101, 201).keySet() as List == (102..200).step(2)
+        btree.subMap(100, false, 200, true).keySet() as List == (102..200).step(2)
+        btree.tailMap(995, false).keySet() as List == [996, 998]
+        btree.tailMap(996, false).keySet() as List == [998]
+        btree.headMap(7).values() as List == [0, 1, 2, 3]
+        btree.subMap(10, 10).entrySet().isEmpty()
+        btree.subMap(11, 12).keySet() as List == []
+        btree.subMap(100, 200).subMap(150, 160).keySet() as List == (150..<160).step(2)
+    }
+
+    def 'test iterators throw once they run out'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        (0..<10).each { btree.put(it, it) }
+        def iter = view(btree).iterator()
+        def seen = []
+
+        when:
+        while(iter.hasNext()) {
+            seen << iter.next()
+        }
+        iter.next()
+
+        then:
+        thrown(NoSuchElementException)
+        seen.size() == count
+        !iter.hasNext()
+
+        when:
+        iter.next()
+
+        then:
+        thrown(NoSuchElementException)
+
+        where:
+        [view, count] << [[{ it.keySet() }, 10],
+                          [{ it.values() }, 10],
+                          [{ it.entrySet() }, 10],
+                          [{ it.subMap(2, 5).keySet() }, 3],
+                          [{ it.subMap(2, 5).values() }, 3],
+                          [{ it.subMap(2, 5).entrySet() }, 3],
+                          [{ it.subMap(20, 30).keySet() }, 0],
+                          [{ it.descendingKeySet() }, 10],
+                          [{ it.descendingMap().values() }, 10],
+                          [{ it.subMap(2, 5).descendingMap().entrySet() }, 3],
+                          [{ it.headMap(0).keySet() }, 0],
+                          [{ it.tailMap(20).descendingKeySet() }, 0]]
+    }
+
+    def 'test links persist'() {
+        setup:
+        def path = Files.createTempFile("bplus", ".db")
+        path.toFile().deleteOnExit()
+        Files.delete(path)
+        def store = new MappedFile(path, Codec.LONG, Codec.LONG, 8)
+        def btree = new BplusTree(store)
+        (1L..2000L).each { btree.put(it, it) }
+        store.close()
+
+        when:
+        store = new MappedFile(path, Codec.LONG, Codec.LONG, 8)
+        btree = new BplusTree(store)
+
+        then:
+        leaves(btree, store).size() > 1
+        btree.keySet() as List == (1L..2000L)
+
+        cleanup:
+        store.close()
+    }
+}
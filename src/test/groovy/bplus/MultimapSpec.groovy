@@ -0,0 +1,200 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+
+class MultimapSpec extends Specification {
+
+    //expected entries as [key, value] pairs in key order, values of a key in insertion order
+    static List flat(TreeMap<Integer,List> expected) {
+        expected.collectMany { k, vs -> vs.collect { [k, it] } }
+    }
+
+    def 'test random puts and removes against lists of values'() {
+        setup:
+        def random = new Random(19)
+        def btree = new BplusTree(store)
+        btree.multimap = true
+        def expected = new TreeMap<Integer,List>()
+        int serial = 0
+
+        when:
+        20000.times {
+            def k = random.nextInt(300)
+            def key = k.asType(store.keyType)
+            if(random.nextInt(3) > 0) {
+                def v = serial++
+                assert btree.put(key, v.asType(store.valueType)) == null
+                expected.computeIfAbsent(k, { [] }) << v
+            }
+            else {
+                def removed = btree.remove(key)
+                def list = expected[k]
+                assert removed?.intValue() == (list ? list.remove(0) : null)
+                if(list != null && list.isEmpty()) {
+                    expected.remove(k)
+                }
+            }
+        }
+
+        then:
+        btree.size() == expected.values().sum { it.size() }
+        btree.entrySet().collect { [it.key.intValue(), it.value.intValue()] } == flat(expected)
+        expected.every { k, vs -> btree.getAll(k.asType(store.keyType))*.intValue() == vs }
+        expected.every { k, vs -> btree.get(k.asType(store.keyType)).intValue() == vs[0] }
+        btree.getAll(1000.asType(store.keyType)) == []
+        RemoveRangeSpec.valid(btree)
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 4), new ObjectArray(Integer, Integer, 5, 8).with { counted = true; it },
+                  new ObjectColumnArray(Integer, Integer, 7), new IntArray(6, 9).with { counted = true; it },
+                  new LongArray(16), new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 5)]
+    }
+
+    def 'test one key with many duplicates'() {
+        setup:
+        int compares = 0
+        def counting = { a, b -> ++compares; a <=> b } as Comparator
+        def store = new ObjectArray(Integer, Integer, 16, counting)
+        store.counted = true
+        def btree = new BplusTree(store)
+        btree.multimap = true
+
+        when:
+        btree.put(0, -1)
+        btree.put(2, -2)
+        (0..<200000).each { btree.put(1, it) }
+        compares = 0
+        btree.put(1, 200000)
+        def perPut = compares
+
+        then:
+        btree.size() == 200003
+        perPut < 100
+        btree.getAll(1) == (0..200000) as List
+        btree.get(1) == 0
+        btree.rank(1) == 1
+        btree.rank(2) == 200002
+        btree.lowerKey(1) == 0
+        btree.higherKey(1) == 2
+        btree.floorEntry(1).value == 200000
+        btree.ceilingEntry(1).value == 0
+        RemoveRangeSpec.valid(btree)
+
+        when:
+        btree.remove(1)
+        btree.remove(1, 100000)
+
+        then:
+        btree.getAll(1).size() == 199999
+        btree.get(1) == 1
+        !btree.getAll(1).contains(100000)
+        !btree.remove(1, 100000)
+        RemoveRangeSpec.valid(btree)
+    }
+
+    def 'test ranges include every duplicate'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4).with { counted = true; it })
+        btree.multimap = true
+        (0..<50).each { k -> (0..<k % 7).each { btree.put(k, it) } }
+        def all = btree.entrySet().collect { [it.key, it.value] }
+
+        expect:
+        btree.subMap(10, 20).entrySet().collect { [it.key, it.value] } == all.findAll { it[0] >= 10 && it[0] < 20 }
+        btree.subMap(10, false, 20, true).entrySet().collect { [it.key, it.value] } == all.findAll { it[0] > 10 && it[0] <= 20 }
+        btree.headMap(13, true).size() == all.count { it[0] <= 13 }
+        btree.headMap(13).size() == all.count { it[0] < 13 }
+        btree.tailMap(13, false).size() == all.count { it[0] > 13 }
+        btree.tailMap(13).firstEntry().value == 0
+        btree.headMap(13, true).lastEntry().value == 5
+
+        when:
+        btree.removeRange(20, true, 30, false)
+
+        then:
+        btree.entrySet().collect { [it.key, it.value] } == all.findAll { it[0] < 20 || it[0] >= 30 }
+        RemoveRangeSpec.valid(btree)
+
+        when:
+        btree.subMap(5, true, 6, true).clear()
+
+        then:
+        btree.keySet().every { it != 5 && it != 6 }
+        btree.getAll(4).size() == 4
+        RemoveRangeSpec.valid(btree)
+    }
+
+    def 'test bulk loading, appends and splits keep duplicates together'() {
+        setup:
+        def store = new ObjectArray(Integer, Integer, 6)
+        def btree = new BplusTree(store)
+        btree.multimap = true
+        def entries = (0..<3000).collect { new AbstractMap.SimpleEntry(it.intdiv(10), it) }
+
+        when:
+        btree.bulkLoad(entries.iterator())
+
+        then:
+        btree.size() == 3000
+        btree.getAll(42) == (420..<430) as List
+
+        when:
+        btree.appendMode = true
+        (0..<20).each { btree.put(299, 5000 + it) }
+        btree.appendMode = false
+        def right = btree.splitAt(150)
+
+        then:
+        btree.lastKey() == 149
+        right.isMultimap()
+        right.getAll(299).size() == 30
+        right.firstKey() == 150
+
+        when:
+        btree.concat(right)
+
+        then:
+        btree.size() == 3020
+        btree.getAll(150) == (1500..<1510) as List
+        RemoveRangeSpec.valid(btree)
+    }
+
+    def 'test operations that need unique keys'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        btree.put(1, 1)
+
+        when:
+        btree.multimap = true
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        btree.clear()
+        btree.multimap = true
+        btree.merge(1, 1, Integer::sum)
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        btree.cursor()
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        btree.put(1, 1)
+        btree.put(1, 2)
+        def unique = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        unique.put(1, 1)
+        unique.put(1, 2)
+
+        then:
+        btree.getAll(1) == [1, 2]
+        unique.getAll(1) == [2]
+        unique.put(1, 3) == 2
+    }
+}
@@ -0,0 +1,160 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+
+class RemoveRangeSpec extends Specification {
+
+    //leaf keys in order along the next links, checking every prev link on the way
+    public static List linked(NodeStore store) {
+        def node = store.root
+        while(node.branch) {
+            node = node.child(0)
+        }
+
+        def ret = []
+        def prev = null
+        for(def leaf = node; leaf != null; leaf = leaf.next()) {
+            assert leaf.prev() == prev
+            ret.addAll(leaf.keys())
+            prev = leaf
+        }
+
+        return ret*.intValue()
+    }
+
+    public static boolean valid(BplusTree btree) {
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.assertCounts()
+    }
+
+    def 'test random ranges against a sorted map'() {
+        setup:
+        def random = new Random(17)
+        def btree = new BplusTree(store)
+        def expected = new TreeMap()
+
+        when:
+        200.times {
+            (0..<random.nextInt(400)).each {
+                def k = random.nextInt(5000)
+                btree.put(k.asType(store.keyType), k.asType(store.valueType))
+                expected[k] = k
+            }
+
+            def from = random.nextInt(5000)
+            def to = from + random.nextInt(random.nextBoolean() ? 50 : 2000)
+            def fromInclusive = random.nextBoolean()
+            def toInclusive = random.nextBoolean()
+            btree.removeRange(from.asType(store.keyType), fromInclusive, to.asType(store.keyType), toInclusive)
+            expected.subMap(from, fromInclusive, to, toInclusive).clear()
+
+            assert btree.size() == expected.size()
+            assert valid(btree)
+            assert linked(store) == expected.keySet() as List
+        }
+
+        then:
+        btree.keySet()*.intValue() == expected.keySet() as List
+        expected.keySet().every { btree.get(it.asType(store.keyType)).intValue() == it }
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 4), new ObjectArray(Integer, Integer, 5, 8).with { counted = true; it },
+                  new ObjectColumnArray(Integer, Integer, 7), new IntArray(6, 9).with { counted = true; it },
+                  new LongArray(16), new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 5)]
+    }
+
+    def 'test removing everything and nothing'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        (0..<1000).each { btree.put(it, it) }
+
+        when:
+        btree.removeRange(2000, true, 3000, true)
+        btree.removeRange(10, false, 11, false)
+        btree.removeRange(-5, true, -1, true)
+
+        then:
+        btree.size() == 1000
+        btree.keySet() as List == (0..<1000)
+        btree.assertOrders()
+
+        when:
+        btree.removeRange(0, true, 999, true)
+
+        then:
+        btree.isEmpty()
+        btree.size() == 0
+        btree.height() == 1
+
+        when:
+        btree.removeRange(0, true, 10, true)
+        (0..<100).each { btree.put(it, it) }
+
+        then:
+        btree.keySet() as List == (0..<100)
+        btree.assertValidKeys()
+
+        when:
+        btree.removeRange(10, true, 5, true)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def 'test clear through views'() {
+        setup:
+        def btree = new BplusTree(store)
+        (0..<2000).each { btree.put(it, it) }
+
+        when:
+        def sub = btree.subMap(100, 500)
+        sub.clear()
+
+        then:
+        sub.isEmpty()
+        sub.size() == 0
+        btree.size() == 1600
+        !btree.containsKey(100)
+        btree.containsKey(99)
+        btree.containsKey(500)
+        btree.assertOrders()
+
+        when:
+        btree.headMap(50, true).clear()
+        btree.tailMap(1900, false).clear()
+
+        then:
+        btree.keySet() as List == (51..<100) + (500..1900)
+        btree.assertValidKeys()
+        btree.assertCounts()
+
+        when:
+        btree.subMap(600, true, 700, false).keySet().clear()
+        btree.tailMap(1800).values().clear()
+
+        then:
+        btree.keySet() as List == (51..<100) + (500..<600) + (700..<1800)
+        btree.assertOrders()
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 6).with { counted = true; it }, new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 8)]
+    }
+
+    def 'test cursors see the removal'() {
+        setup:
+        def btree = new BplusTree(new ObjectArray(Integer, Integer, 4))
+        (0..<500).each { btree.put(it, it) }
+        def cursor = btree.cursor()
+
+        when:
+        cursor.seek(250)
+        btree.removeRange(200, true, 300, false)
+
+        then:
+        cursor.key() == 300
+        cursor.prev()
+        cursor.key() == 199
+    }
+}
@@ -0,0 +1,78 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+
+class SearchStrategySpec extends Specification {
+
+    static final List<SearchStrategy> STRATEGIES = [SearchStrategy.BINARY, SearchStrategy.LINEAR,
+                                                    SearchStrategy.BRANCHLESS, SearchStrategy.INTERPOLATION]
+
+    def 'test primitive searches agree with binary search'() {
+        setup:
+        def random = new Random(42)
+
+        expect:
+        (0..64).every { size ->
+            (0..<20).every {
+                def set = new TreeSet()
+                while(set.size() < size) {
+                    set << random.nextInt(200) - 100
+                }
+
+                int[] ints = set as int[]
+                long[] longs = set.collect { it * 1_000_000_000_000L } as long[]
+                double[] doubles = set.collect { it / 7d } as double[]
+                (-102..102).every { k ->
+                    strategy.search(ints, size, k) == SearchStrategy.BINARY.search(ints, size, k) &&
+                    strategy.search(longs, size, k * 1_000_000_000_000L) == SearchStrategy.BINARY.search(longs, size, k * 1_000_000_000_000L) &&
+                    strategy.search(doubles, size, k / 7d) == SearchStrategy.BINARY.search(doubles, size, k / 7d)
+                }
+            }
+        }
+
+        where:
+        strategy << STRATEGIES
+    }
+
+    def 'test searches only look at the first size keys'() {
+        setup:
+        long[] keys = [1L, 5L, 9L, 0L, 0L, 0L]
+
+        expect:
+        strategy.search(keys, 3, 9L) == 2
+        strategy.search(keys, 3, 10L) == Node.insertIndex(3)
+        strategy.search(keys, 3, 0L) == Node.insertIndex(0)
+        strategy.search(keys, 0, 1L) == Node.insertIndex(0)
+        strategy.search([Long.MIN_VALUE, 0L, Long.MAX_VALUE] as long[], 3, Long.MAX_VALUE - 1) == Node.insertIndex(2)
+        strategy.search([Double.NEGATIVE_INFINITY, -0d, 0d, Double.NaN] as double[], 4, 0d) == 2
+        strategy.search([Double.NEGATIVE_INFINITY, -0d, 0d, Double.NaN] as double[], 4, Double.NaN) == 3
+
+        where:
+        strategy << STRATEGIES
+    }
+
+    def 'test trees with every strategy'() {
+        setup:
+        def list = (0..<3000).collect { it }
+        Collections.shuffle(list)
+        store.searchStrategy = strategy
+        def btree = new BplusTree(store)
+
+        when:
+        list.each { btree.put(it.asType(store.keyType), it.asType(store.valueType)) }
+        list.take(2000).each { btree.remove(it.asType(store.keyType)) }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.keySet()*.intValue() == list.drop(2000).sort()
+        list.drop(2000).every { btree.containsKey(it.asType(store.keyType)) }
+        list.take(2000).every { !btree.containsKey(it.asType(store.keyType)) }
+
+        where:
+        [strategy, store] << [STRATEGIES, [{ new ObjectArray(Integer, Integer, 8) }, { new ObjectColumnArray(Integer, Integer, 7) },
+                                           { new LongArray(16) }, { new IntArray(9, 12) }, { new DoubleArray(32) },
+                                           { new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 10) }]].combinations().collect { s, f -> [s, f()] }
+    }
+}
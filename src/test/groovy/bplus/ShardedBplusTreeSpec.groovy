@@ -0,0 +1,259 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+import java.util.concurrent.*
+
+class ShardedBplusTreeSpec extends Specification {
+
+    def 'test keys at a bound go to the shard that starts there'() {
+        setup:
+        def stree = new ShardedBplusTree({ new ObjectArray(Integer, Integer, 4) }, [10, 20, 30])
+
+        when:
+        [Integer.MIN_VALUE, 9, 10, 19, 20, 29, 30, Integer.MAX_VALUE].each { stree.put(it, it) }
+
+        then:
+        stree.shardSizes() as List == [2, 2, 2, 2]
+        [Integer.MIN_VALUE, 9, 10, 19, 20, 29, 30, Integer.MAX_VALUE].every { stree.get(it) == it }
+        stree.headMap(10).keySet() as List == [Integer.MIN_VALUE, 9]
+        stree.headMap(10, true).keySet() as List == [Integer.MIN_VALUE, 9, 10]
+        stree.tailMap(20, false).keySet() as List == [29, 30, Integer.MAX_VALUE]
+        stree.subMap(10, 30).keySet() as List == [10, 19, 20, 29]
+        stree.ceilingKey(20) == 20
+        stree.floorKey(20) == 20
+        stree.higherKey(20) == 29
+        stree.lowerKey(20) == 19
+
+        when:
+        stree.remove(20)
+        stree.put(30, -30)
+
+        then:
+        stree.shardSizes() as List == [2, 2, 1, 2]
+        !stree.containsKey(20)
+        stree.get(30) == -30
+        stree.higherKey(19) == 29
+        stree.lowerKey(29) == 19
+        stree.assertValid()
+    }
+
+    def 'test searches and scans carry on across empty shards'() {
+        setup:
+        def stree = new ShardedBplusTree({ new ObjectArray(Integer, Integer, 4) }, [100, 200, 300, 400])
+        //more keys per shard than a scan copies out at once
+        def keys = (0..<100) + (400..<500)
+        keys.each { stree.put(it, it) }
+
+        expect:
+        stree.shardSizes() as List == [100, 0, 0, 0, 100]
+        stree.higherKey(99) == 400
+        stree.ceilingKey(100) == 400
+        stree.ceilingKey(250) == 400
+        stree.lowerKey(400) == 99
+        stree.floorKey(399) == 99
+        stree.floorKey(300) == 99
+        stree.higherKey(499) == null
+        stree.lowerKey(0) == null
+        stree.keySet() as List == keys
+        stree.descendingKeySet() as List == keys.reverse()
+        stree.values() as List == keys
+        stree.subMap(50, 450).keySet() as List == (50..<100) + (400..<450)
+        stree.descendingMap().subMap(450, true, 50, false).keySet() as List == ((51..<100) + (400..450)).reverse()
+        stree.subMap(100, 400).isEmpty()
+        stree.subMap(100, 400).firstEntry() == null
+        stree.subMap(100, 400).keySet().iterator().hasNext() == false
+
+        when:
+        stree.put(250, 250)
+        def first = stree.tailMap(100).pollFirstEntry()
+
+        then:
+        first.key == 250
+        stree.higherKey(99) == 400
+        stree.keySet() as List == keys
+        stree.assertValid()
+    }
+
+    def 'test bounds from a sample of the keys'() {
+        setup:
+        def sample = (0..<100).toList()
+        Collections.shuffle(sample, new Random(25))
+
+        expect:
+        new ShardedBplusTree({ new ObjectArray(Integer, Integer, 4) }, 4, sample).getBounds() == [25, 50, 75]
+        new ShardedBplusTree({ new ObjectArray(Integer, Integer, 4) }, 1, sample).getShardCount() == 1
+        new ShardedBplusTree({ new ObjectArray(Integer, Integer, 4) }, 4, []).getShardCount() == 1
+        new ShardedBplusTree({ new ObjectArray(Integer, Integer, 4) }, 4, [1, 1, 1, 1, 2]).getBounds() == [1]
+
+        when:
+        def even = new ShardedBplusTree({ new ObjectArray(Integer, Integer, 4) }, 4, sample)
+        (0..<100).each { even.put(it, it) }
+
+        then:
+        even.shardSizes() as List == [25, 25, 25, 25]
+
+        when:
+        def descending = new ShardedBplusTree({ new ObjectArray(Integer, Integer, 4, Comparators.INTEGER_DESCENDING) }, 4, sample)
+        (0..<100).each { descending.put(it, it) }
+
+        then:
+        descending.getBounds() == [74, 49, 24]
+        descending.shardSizes() as List == [25, 25, 25, 25]
+        descending.keySet() as List == (99..0)
+        descending.assertValid()
+
+        when:
+        new ShardedBplusTree({ new ObjectArray(Integer, Integer, 4) }, 0, sample)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def 'test rebalancing evens out skewed shards'() {
+        setup:
+        def stree = new ShardedBplusTree({ new ObjectArray(Integer, Integer, 8) }, [100, 200, 300])
+
+        when:
+        (0..<10000).each { stree.put(it, it) }
+
+        then:
+        stree.shardSizes() as List == [100, 100, 100, 9700]
+
+        when:
+        stree.rebalance()
+
+        then:
+        stree.shardSizes() as List == [2500, 2500, 2500, 2500]
+        stree.getBounds() == [2500, 5000, 7500]
+        stree.keySet() as List == (0..<10000) as List
+        stree.descendingMap().firstKey() == 9999
+        (0..<10000).every { stree[it] == it }
+        stree.assertValid()
+
+        when:
+        stree.headMap(5000).clear()
+        stree.rebalance()
+
+        then:
+        stree.shardSizes() as List == [1250, 1250, 1250, 1250]
+        stree.keySet() as List == (5000..<10000) as List
+        stree.assertValid()
+
+        when:
+        def skewed = new ShardedBplusTree({ new ObjectArray(Integer, Integer, 8) }, [-3, -2, -1])
+        skewed.setSkew(2)
+        (0..<20000).each { skewed.put(it, it) }
+
+        then:
+        skewed.shardSizes().every { it <= 2 * 20000 / 4 }
+        skewed.keySet() as List == (0..<20000) as List
+        skewed.assertValid()
+    }
+
+    def 'test writers and readers while shards are rebalanced'() {
+        setup:
+        int threads = 6
+        def stree = new ShardedBplusTree({ new ObjectArray(Integer, Integer, 6) }, 4, (0..<10).collect { it * 1000 })
+        (0..<30000).step(3).each { stree.put(it, it) }
+        def expected = (0..<threads).collect { new HashMap() }
+        def done = new CountDownLatch(threads - 2)
+
+        when:
+        ConcurrentBplusTreeSpec.run(threads) { t ->
+            def random = new Random(t)
+            if(t == 0) {
+                while(done.count > 0) {
+                    stree.rebalance()
+                }
+            }
+            else if(t == 1) {
+                while(done.count > 0) {
+                    def keys = random.nextBoolean() ? stree.keySet() as List : stree.descendingKeySet().toList().reverse()
+                    assert keys.findAll { it % 3 == 0 } == (0..<30000).step(3)
+                    assert (1..<keys.size()).every { keys[it - 1] < keys[it] }
+                    def q = random.nextInt(10000) * 3
+                    assert stree.get(q) == q
+                    assert stree.ceilingKey(q - 1) == q
+                    assert stree.lowerKey(q + 1) == q
+                }
+            }
+            else {
+                try {
+                    def mine = expected[t]
+                    30000.times {
+                        def k = (random.nextInt(10000) * (threads - 2) + t - 2) * 3 + 1
+                        if(random.nextInt(3) == 0) {
+                            assert stree.remove(k) == mine.remove(k)
+                        }
+                        else {
+                            assert stree.put(k, t) == mine.put(k, t)
+                        }
+                    }
+                }
+                finally {
+                    done.countDown()
+                }
+            }
+        }
+
+        def all = new TreeMap()
+        (0..<30000).step(3).each { all[it] = it }
+        expected.each { all.putAll(it) }
+
+        then:
+        stree.size() == all.size()
+        stree.entrySet().collect { [it.key, it.value] } == all.collect { k, v -> [k, v] }
+        stree.assertValid()
+    }
+
+    def 'test bounds and stores that do not fit'() {
+        when:
+        new ShardedBplusTree({ new ObjectArray(Integer, Integer, 4) }, [5, 5])
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        def store = new ObjectArray(Integer, Integer, 4)
+        new ShardedBplusTree({ store }, [5])
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        def used = new ObjectArray(Integer, Integer, 4)
+        new BplusTree(used).put(1, 1)
+        new ShardedBplusTree({ used }, [])
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        def stree = new ShardedBplusTree({ new ObjectArray(Integer, Integer, 4) }, 3, [7, 7, 7, 7])
+        stree.put(null, 1)
+
+        then:
+        thrown(NullPointerException)
+        stree.getShardCount() == 2
+        stree.getBounds() == [7]
+
+        when:
+        stree.setSkew(0.5)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        (0..<20).each { stree.put(it, it) }
+        stree.subMap(5, 10).headMap(15)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        expect:
+        stree.subMap(5, 10).headMap(8).lastKey() == 7
+        stree.descendingMap().subMap(10, 5).firstKey() == 10
+        stree.shardSizes() as List == [7, 13]
+    }
+}
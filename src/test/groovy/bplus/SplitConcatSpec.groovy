@@ -0,0 +1,122 @@
+package bplus
+
+import spock.lang.*
+import bplus.impl.*
+import java.nio.file.Files
+
+class SplitConcatSpec extends Specification {
+
+    def 'test split then concat at every kind of key'() {
+        setup:
+        def btree = new BplusTree(store)
+        def keys = (0..<3000).collect { it * 2 }
+        keys.each { btree.put(it.asType(store.keyType), it.asType(store.valueType)) }
+
+        expect:
+        [-10, 0, 1, 2, 777, 778, 2999, 3000, 5998, 5999, 7000].every { at ->
+            def right = btree.splitAt(at.asType(store.keyType))
+            assert btree.size() == keys.count { it < at }
+            assert right.size() == keys.count { it >= at }
+            assert btree.keySet()*.intValue() == keys.findAll { it < at }
+            assert right.keySet()*.intValue() == keys.findAll { it >= at }
+            assert RemoveRangeSpec.linked(right.@store) == keys.findAll { it >= at }
+            assert RemoveRangeSpec.valid(btree)
+            assert RemoveRangeSpec.valid(right)
+
+            btree.concat(right)
+            assert right.isEmpty()
+            assert right.size() == 0
+            assert btree.size() == keys.size()
+            assert RemoveRangeSpec.linked(store) == keys
+            assert RemoveRangeSpec.valid(btree)
+            true
+        }
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 4), new ObjectArray(Integer, Integer, 5, 8).with { counted = true; it },
+                  new ObjectColumnArray(Integer, Integer, 7), new IntArray(6, 9).with { counted = true; it },
+                  new LongArray(16), new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 5)]
+    }
+
+    def 'test concat of trees with different heights'() {
+        setup:
+        def store = new ObjectArray(Integer, Integer, 4)
+        store.counted = true
+        def random = new Random(3)
+
+        expect:
+        (0..<100).every {
+            def left = new BplusTree(store.fork())
+            def right = new BplusTree(store.fork())
+            def leftCount = random.nextInt(random.nextBoolean() ? 10 : 2000)
+            def rightCount = random.nextInt(random.nextBoolean() ? 10 : 2000)
+            (0..<leftCount).each { left.put(it, it) }
+            (0..<rightCount).each { right.put(leftCount + it, it) }
+
+            left.concat(right)
+            assert left.size() == leftCount + rightCount
+            assert left.rank(leftCount) == leftCount
+            assert RemoveRangeSpec.linked(left.@store) == (0..<(leftCount + rightCount)) as List
+            assert RemoveRangeSpec.valid(left)
+            true
+        }
+    }
+
+    def 'test the pieces are independent trees'() {
+        setup:
+        def store = new ObjectArray(Integer, Integer, 4)
+        def btree = new BplusTree(store)
+        (0..<1000).each { btree.put(it, it) }
+
+        when:
+        def right = btree.splitAt(500)
+        (1000..<1500).each { right.put(it, it) }
+        (0..<100).each { btree.remove(it) }
+        (500..<600).each { right.remove(it) }
+        btree.put(-1, -1)
+
+        then:
+        btree.keySet() as List == [-1] + (100..<500)
+        right.keySet() as List == (600..<1500)
+        right.firstKey() == 600
+        btree.lastKey() == 499
+        RemoveRangeSpec.valid(btree)
+        RemoveRangeSpec.valid(right)
+
+        when:
+        def rest = right.splitAt(1000)
+        rest.concat(right)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        btree.concat(right)
+        btree.concat(rest)
+
+        then:
+        btree.keySet() as List == [-1] + (100..<500) + (600..<1500)
+        RemoveRangeSpec.valid(btree)
+    }
+
+    def 'test trees that can not share nodes'() {
+        when:
+        new BplusTree(new ObjectArray(Integer, Integer, 4)).concat(new BplusTree(new ObjectArray(Integer, Integer, 4)))
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        def path = Files.createTempFile("bplus", ".db")
+        path.toFile().deleteOnExit()
+        Files.delete(path)
+        def mapped = new MappedFile(path, Codec.INTEGER, Codec.INTEGER, 8)
+        new BplusTree(mapped).splitAt(10)
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        cleanup:
+        mapped?.close()
+    }
+}
@@ -0,0 +1,132 @@
+package bplus.impl
+
+import spock.lang.*
+import bplus.*
+
+class ColumnArraySpec extends Specification {
+
+    def 'test leaf insert and split'() {
+        setup:
+        def store = new LongArray(5)
+        def leaf = store.root.newLeaf()
+
+        when:
+        [10L, 2L, 8L, 4L, 6L].each { leaf.insert(it, it * 10) }
+
+        then:
+        leaf.full
+        leaf.keys() == [2L, 4L, 6L, 8L, 10L]
+        leaf.values() == [20L, 40L, 60L, 80L, 100L]
+        leaf.searchLong(6L) == 2
+        Node.insertIndex(leaf.searchLong(7L)) == 3
+
+        when:
+        def right = leaf.split(5L, 50L)
+
+        then:
+        leaf.keys() == [2L, 4L, 5L]
+        right.keys() == [6L, 8L, 10L]
+    }
+
+    def 'test add/remove random'() {
+        setup:
+        def list = (0..<4096).collect { it }
+        Collections.shuffle(list)
+        def btree = new BplusTree(store)
+
+        when:
+        list.each { btree.put(store.keyType.cast(it.asType(store.keyType)), store.valueType.cast(it.asType(store.valueType))) }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.size() == 4096
+        btree.keySet()*.intValue() == (0..<4096)
+
+        when:
+        list.take(3000).each { btree.remove(it.asType(store.keyType)) }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.keySet()*.intValue() == list.drop(3000).sort()
+
+        where:
+        store << [new LongArray(7, 6), new IntArray(6, 7), new DoubleArray(8), new ObjectColumnArray(Integer, Integer, 5, 4)]
+    }
+
+    def 'test object columns release references'() {
+        setup:
+        def store = new ObjectColumnArray(String, String, 4)
+        def leaf = store.root.newLeaf()
+        ['d', 'b', 'a', 'c'].each { leaf.insert(it, it.toUpperCase()) }
+
+        when:
+        leaf.remove(0)
+        leaf.size(2)
+
+        then:
+        leaf.toMap() == [b: 'B', c: 'C']
+        leaf.keys.findAll { it != null } == ['b', 'c']
+        leaf.values.findAll { it != null } == ['B', 'C']
+    }
+
+    def 'test primitive long api'() {
+        setup:
+        def btree = new BplusTree(new LongArray(8))
+        def list = (0L..<2048L).collect { it }
+        Collections.shuffle(list)
+
+        when:
+        list.each { btree.putLong(it, it * 3) }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.keySet() as List == (0L..<2048L)
+        (0L..<2048L).every { btree.getLong(it) == it * 3 }
+        btree.getLong(5000L, -1L) == -1L
+        btree.containsLong(100L)
+        !btree.containsLong(-100L)
+
+        when:
+        btree.putLong(100L, 7L)
+
+        then:
+        btree.getLong(100L) == 7L
+        btree.get(100L) == 7L
+
+        when:
+        btree.getLong(-1L)
+
+        then:
+        thrown(NoSuchElementException)
+    }
+
+    def 'test primitive int and double api'() {
+        setup:
+        def ints = new BplusTree(new IntArray(4))
+        def doubles = new BplusTree(new DoubleArray(4))
+
+        when:
+        (1000..1).each { ints.putInt(it, -it) }
+        (1000..1).each { doubles.putDouble(it / 4d, it * 2d) }
+
+        then:
+        ints.assertValidKeys()
+        doubles.assertValidKeys()
+        ints.getInt(500) == -500
+        ints.getInt(1001, 0) == 0
+        doubles.getDouble(0.25d) == 2d
+        doubles.getDouble(250d) == 2000d
+        !doubles.containsDouble(0.3d)
+    }
+
+    def 'test primitive api requires primitive store'() {
+        when:
+        new BplusTree(new ObjectArray(Long, Long, 4)).getLong(1L)
+
+        then:
+        thrown(ClassCastException)
+    }
+}
@@ -0,0 +1,87 @@
+package bplus.impl
+
+import spock.lang.*
+import bplus.*
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+class DirectBufferSpec extends Specification {
+
+    static class Fixed implements Codec<String> {
+        final int width
+
+        Fixed(int width) { this.width = width }
+
+        Class<String> type() { String }
+        int size() { width }
+
+        String read(ByteBuffer buf, int pos) {
+            def bytes = new byte[width]
+            (0..<width).each { bytes[it] = buf.get(pos + it) }
+            return new String(bytes, StandardCharsets.US_ASCII).trim()
+        }
+
+        void write(ByteBuffer buf, int pos, String val) {
+            def bytes = val.padRight(width).getBytes(StandardCharsets.US_ASCII)
+            (0..<width).each { buf.put(pos + it, bytes[it]) }
+        }
+    }
+
+    def 'test add/remove random'() {
+        setup:
+        def store = new DirectBuffer(Codec.INTEGER, Codec.INTEGER, 6, 5)
+        def btree = new BplusTree(store)
+        def list = (0..<4096).collect { it }
+        Collections.shuffle(list)
+        def removalList = new ArrayList(list)
+        Collections.shuffle(removalList)
+
+        when:
+        list.each { btree.put(it, it) }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.keySet() as List == (0..<4096)
+        btree.values() as List == (0..<4096)
+
+        when:
+        removalList.take(2048).each { btree.remove(it) }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.keySet() as List == (removalList.drop(2048).sort())
+    }
+
+    def 'test slabs grow with the tree'() {
+        setup:
+        def store = new DirectBuffer(Codec.LONG, Codec.LONG, 16, 16, 4096)
+        def btree = new BplusTree(store)
+
+        when:
+        (1L..10_000L).each { btree.put(it, -it) }
+
+        then:
+        store.slabCount > 1
+        store.slabCount == Math.ceil(store.pageCount / (4096.intdiv(store.pageSize))) as int
+        btree.get(5_000L) == -5_000L
+        btree.size() == 10_000
+    }
+
+    def 'test pluggable codec'() {
+        setup:
+        def store = new DirectBuffer(new Fixed(8), Codec.INTEGER, 4)
+        def btree = new BplusTree(store)
+        def words = ['pear', 'apple', 'fig', 'kiwi', 'lime', 'plum', 'date', 'lemon', 'grape']
+
+        when:
+        words.eachWithIndex { w, i -> btree.put(w, i) }
+
+        then:
+        btree.keySet() as List == words.sort(false)
+        btree.get('kiwi') == 3
+        btree.firstKey() == 'apple'
+        btree.lastKey() == 'plum'
+    }
+}
@@ -0,0 +1,135 @@
+package bplus.impl
+
+import spock.lang.*
+import bplus.*
+import java.nio.file.Files
+
+class MappedFileSpec extends Specification {
+
+    private tempPath() {
+        def path = Files.createTempFile("bplus", ".db")
+        path.toFile().deleteOnExit()
+        Files.delete(path)
+        return path
+    }
+
+    def 'test leaf copy and insert'() {
+        setup:
+        def store = new MappedFile(tempPath(), Codec.INTEGER, Codec.INTEGER, 10)
+        def leaf = store.root.newLeaf()
+        def list = [6, 2, 4, 9, 7, 1, 3, 5, 8, 10]
+
+        when:
+        list.each { num -> leaf.insert(num, num * 10) }
+
+        then:
+        leaf.full
+        leaf.keys() == [1, 2, 3, 4, 5, 6, 7, 8, 9, 10]
+        leaf.values() == [10, 20, 30, 40, 50, 60, 70, 80, 90, 100]
+
+        when:
+        leaf.copy(5, 0, 5).sizeDown(5)
+
+        then:
+        leaf.toMap() == [6:60, 7:70, 8:80, 9:90, 10:100]
+
+        cleanup:
+        store.close()
+    }
+
+    def 'test put, get and remove'() {
+        setup:
+        def path = tempPath()
+        def store = new MappedFile(path, Codec.INTEGER, Codec.LONG, 5, 4)
+        def btree = new BplusTree(store)
+        def list = (0..<2048).collect { it }
+        Collections.shuffle(list)
+
+        when:
+        list.each { btree.put(it, it * 2L) }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        btree.keySet() as List == (0..<2048)
+        (0..<2048).every { btree.get(it) == it * 2L }
+
+        when:
+        list.each { btree.remove(it) }
+
+        then:
+        btree.isEmpty()
+        btree.size() == 0
+
+        cleanup:
+        store.close()
+    }
+
+    def 'test reopen'() {
+        setup:
+        def path = tempPath()
+        def store = new MappedFile(path, Codec.LONG, Codec.DOUBLE, 16)
+        def btree = new BplusTree(store)
+        (1L..4096L).each { btree.put(it, it / 2d) }
+        def height = btree.height()
+        store.close()
+
+        when:
+        store = new MappedFile(path, Codec.LONG, Codec.DOUBLE, 16)
+        btree = new BplusTree(store)
+
+        then:
+        store.entryCount == 4096
+        btree.height() == height
+        btree.get(1L) == 0.5d
+        btree.get(4096L) == 2048d
+        btree.firstKey() == 1L
+        btree.lastKey() == 4096L
+        btree.size() == 4096
+
+        when:
+        btree.put(5000L, 1d)
+        store.close()
+        store = new MappedFile(path, Codec.LONG, Codec.DOUBLE, 16)
+        btree = new BplusTree(store)
+
+        then:
+        btree.get(5000L) == 1d
+        btree.size() == 4097
+
+        cleanup:
+        store.close()
+    }
+
+    def 'test reopen with different layout'() {
+        setup:
+        def path = tempPath()
+        new MappedFile(path, Codec.INTEGER, Codec.INTEGER, 8).close()
+
+        when:
+        new MappedFile(path, Codec.INTEGER, Codec.INTEGER, 16)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def 'test freed pages are reused'() {
+        setup:
+        def store = new MappedFile(tempPath(), Codec.INTEGER, Codec.INTEGER, 4)
+        def btree = new BplusTree(store)
+
+        when:
+        (1..1000).each { btree.put(it, it) }
+        def pages = store.pageCount
+        (1..1000).each { btree.remove(it) }
+        (1..1000).each { btree.put(it, it) }
+
+        then:
+        store.pageCount == pages
+        btree.assertValidKeys()
+        btree.keySet() as List == (1..1000)
+
+        cleanup:
+        store.close()
+    }
+}
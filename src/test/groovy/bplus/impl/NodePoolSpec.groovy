@@ -0,0 +1,80 @@
+package bplus.impl
+
+import spock.lang.*
+import bplus.*
+
+class NodePoolSpec extends Specification {
+
+    def 'test churn recycles nodes'() {
+        setup:
+        def pool = new NodePool(64)
+        store.pool = pool
+        def btree = new BplusTree(store)
+        def list = (0..<4096).collect { it }
+        def kept = []
+
+        when:
+        3.times {
+            Collections.shuffle(list)
+            list.findAll { !(it in kept) }.each { btree.put(it.asType(store.keyType), it.asType(store.valueType)) }
+            Collections.shuffle(list)
+            list.take(3500).each { btree.remove(it.asType(store.keyType)) }
+            kept = list.drop(3500)
+        }
+
+        then:
+        btree.assertValidKeys()
+        btree.assertOrders()
+        pool.hits > 0
+        pool.leafCount <= 64
+        pool.branchCount <= 64
+        btree.keySet()*.intValue() == kept.sort()
+
+        where:
+        store << [new ObjectArray(Integer, Integer, 6), new LongArray(5, 4), new ObjectColumnArray(Integer, Integer, 4)]
+    }
+
+    def 'test released nodes are reused cleared'() {
+        setup:
+        def pool = new NodePool(4)
+        def store = new ObjectArray(Integer, String, 4)
+        store.pool = pool
+        def leaf = store.root.newLeaf()
+        leaf.insert(1, 'one')
+        leaf.insert(2, 'two')
+
+        when:
+        leaf.done()
+
+        then:
+        pool.leafCount == 1
+        leaf.size() == 0
+
+        when:
+        def reused = store.root.newLeaf()
+
+        then:
+        reused.is(leaf)
+        reused.size() == 0
+        reused.keys().isEmpty()
+        pool.hits == 1
+        pool.leafCount == 0
+    }
+
+    def 'test pool discards above capacity'() {
+        setup:
+        def pool = new NodePool(1)
+        def store = new IntArray(4)
+        store.pool = pool
+
+        when:
+        3.times { store.root.newLeaf().done() }
+        store.root.newLeaf().done()
+        store.root.newLeaf().done()
+        [store.root.newLeaf(), store.root.newLeaf()]*.done()
+
+        then:
+        pool.leafCount == 1
+        pool.discards == 1
+    }
+}